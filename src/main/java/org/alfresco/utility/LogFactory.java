@@ -1,5 +1,8 @@
 package org.alfresco.utility;
 
+import java.lang.StackWalker.Option;
+import java.util.EnumSet;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,9 +11,25 @@ import org.slf4j.LoggerFactory;
  */
 public class LogFactory
 {
+    /*
+     * only this method and its caller are needed, so the walker never captures more than two frames
+     */
+    private static final StackWalker CALLER_WALKER = StackWalker.getInstance(EnumSet.of(Option.RETAIN_CLASS_REFERENCE), 2);
+
+    private static final ClassValue<Logger> LOGGERS = new ClassValue<Logger>()
+    {
+        @Override
+        protected Logger computeValue(Class<?> type)
+        {
+            return LoggerFactory.getLogger(type.getName());
+        }
+    };
+
+    /**
+     * @return the logger of the class calling this method
+     */
     public static Logger getLogger()
     {
-        StackTraceElement myCaller = Thread.currentThread().getStackTrace()[2];
-        return LoggerFactory.getLogger(myCaller.getClassName());
+        return LOGGERS.get(CALLER_WALKER.getCallerClass());
     }
 }
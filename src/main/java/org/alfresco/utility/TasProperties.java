@@ -189,6 +189,27 @@ public class TasProperties
     @Value("${display.xport:1}")
     private String displayXport;
 
+    @Value("${cmis.sessionCache.maxSize:100}")
+    private int cmisSessionCacheMaxSize;
+
+    @Value("${cmis.sessionCache.ttlSeconds:1800}")
+    private long cmisSessionCacheTtlSeconds;
+
+    @Value("${dataprep.bulk.concurrency:4}")
+    private int bulkConcurrency;
+
+    @Value("${dataprep.userPool.size:0}")
+    private int userPoolSize;
+
+    @Value("${dataprep.userPool.lowWatermark:5}")
+    private int userPoolLowWatermark;
+
+    @Value("${dataprep.async.virtualThreads:true}")
+    private boolean asyncVirtualThreads;
+
+    @Value("${http.metrics.enabled:true}")
+    private boolean httpMetricsEnabled;
+
     
 	public Boolean showTenantsOnServerHealth()
     {
@@ -769,4 +790,94 @@ public class TasProperties
 		return displayXport;
 	}
 
-}
\ No newline at end of file
+    /**
+     * @return maximum number of CMIS sessions kept in {@link org.alfresco.utility.data.CmisSessionCache}, 0 disables caching
+     */
+    public int getCmisSessionCacheMaxSize()
+    {
+        return cmisSessionCacheMaxSize;
+    }
+
+    public void setCmisSessionCacheMaxSize(int cmisSessionCacheMaxSize)
+    {
+        this.cmisSessionCacheMaxSize = cmisSessionCacheMaxSize;
+    }
+
+    /**
+     * @return time to live of a cached CMIS session in seconds, 0 means no expiration
+     */
+    public long getCmisSessionCacheTtlSeconds()
+    {
+        return cmisSessionCacheTtlSeconds;
+    }
+
+    public void setCmisSessionCacheTtlSeconds(long cmisSessionCacheTtlSeconds)
+    {
+        this.cmisSessionCacheTtlSeconds = cmisSessionCacheTtlSeconds;
+    }
+
+    /**
+     * @return maximum number of parallel requests used by bulk data preparation calls
+     */
+    public int getBulkConcurrency()
+    {
+        return bulkConcurrency;
+    }
+
+    public void setBulkConcurrency(int bulkConcurrency)
+    {
+        this.bulkConcurrency = bulkConcurrency;
+    }
+
+    /**
+     * @return number of random users pre-created by {@link org.alfresco.utility.data.UserPool}, 0 disables the pool
+     */
+    public int getUserPoolSize()
+    {
+        return userPoolSize;
+    }
+
+    public void setUserPoolSize(int userPoolSize)
+    {
+        this.userPoolSize = userPoolSize;
+    }
+
+    /**
+     * @return pool depth under which {@link org.alfresco.utility.data.UserPool} is refilled in background
+     */
+    public int getUserPoolLowWatermark()
+    {
+        return userPoolLowWatermark;
+    }
+
+    public void setUserPoolLowWatermark(int userPoolLowWatermark)
+    {
+        this.userPoolLowWatermark = userPoolLowWatermark;
+    }
+
+    /**
+     * @return true if {@link org.alfresco.utility.data.AsyncTestData} should run on virtual threads when the JVM supports them
+     */
+    public boolean useAsyncVirtualThreads()
+    {
+        return asyncVirtualThreads;
+    }
+
+    public void setAsyncVirtualThreads(boolean asyncVirtualThreads)
+    {
+        this.asyncVirtualThreads = asyncVirtualThreads;
+    }
+
+    /**
+     * @return true if the REST calls of the data services are recorded by {@link org.alfresco.utility.network.InstrumentedHttpClient}
+     */
+    public boolean isHttpMetricsEnabled()
+    {
+        return httpMetricsEnabled;
+    }
+
+    public void setHttpMetricsEnabled(boolean httpMetricsEnabled)
+    {
+        this.httpMetricsEnabled = httpMetricsEnabled;
+    }
+}
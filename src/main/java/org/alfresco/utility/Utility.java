@@ -11,27 +11,27 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.StringReader;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
 import java.util.Scanner;
 
 import org.alfresco.dataprep.CMISUtil.DocumentType;
+import org.alfresco.utility.data.ContentSource;
 import org.alfresco.utility.exception.DataPreparationException;
 import org.alfresco.utility.exception.TestConfigurationException;
 import org.alfresco.utility.exception.TestObjectNotDefinedException;
 import org.alfresco.utility.model.FileModel;
 import org.alfresco.utility.testrail.TestRailExecutorListener;
+import org.alfresco.utility.wait.Wait;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -272,20 +272,14 @@ public class Utility
 
     /**
      * We will wait until the <seconds> are passed from current run
+     * The current thread is parked (see {@link Wait}), so it does not use CPU while waiting.
      * 
      * @param seconds
      */
     public static void waitToLoopTime(int seconds, String... info)
     {
         LOG.info("Wait until {} second(s) are passed. {}", seconds, StringUtils.join(info, ' '));
-        long currentTime;
-        long endTime;
-        currentTime = System.currentTimeMillis();
-        do
-        {
-            endTime = System.currentTimeMillis();
-        }
-        while (endTime - currentTime < (seconds * 1000));
+        Wait.sleepSeconds(seconds);
     }
     
     /**
@@ -433,6 +427,7 @@ public class Utility
 
     /**
      * Create a new {@link File} with specific size (MB)
+     * The content is generated in chunks by {@link ContentSource}, so the size is not limited by the heap.
      * 
      * @param fileName
      * @param sizeMB
@@ -441,34 +436,17 @@ public class Utility
      */
     public static File getFileWithSize(String fileName, int sizeMB)
     {
-        byte[] buffer = getRandomString(1024 * 1024).getBytes();
-        int number_of_lines = sizeMB;
-        try(FileChannel rwChannel = new RandomAccessFile(fileName, "rw").getChannel())
+        ContentSource source = ContentSource.random(sizeMB * 1024L * 1024L);
+        try (OutputStream out = Files.newOutputStream(Paths.get(fileName)))
         {
-            ByteBuffer wrBuf = rwChannel.map(FileChannel.MapMode.READ_WRITE, 0, buffer.length * number_of_lines);
-            for (int i = 0; i < number_of_lines; i++)
-            {
-                wrBuf.put(buffer);
-            }
+            source.writeTo(out);
         }
         catch (IOException e)
         {
             throw new DataPreparationException(e);
         }
-        File file1 = new File(fileName);
-        return file1;
-    }
-
-    private static String getRandomString(int length)
-    {
-        Random RANDOM = new Random();
-        char from[] = "abcdefghijklmnopqrstuvwxyz".toCharArray();
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < length; i++)
-        {
-            result.append(from[RANDOM.nextInt((from.length - 1))]);
-        }
-        return result.toString();
+        LOG.info("Generated {} MB file {} at {} MB/s", sizeMB, fileName, String.format("%.2f", source.getThroughputMBps()));
+        return new File(fileName);
     }
 
     public static String getSystemOrFileProperty(String key, Properties properties)
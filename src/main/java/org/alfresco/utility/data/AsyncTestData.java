@@ -0,0 +1,157 @@
+package org.alfresco.utility.data;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.TasProperties;
+import org.alfresco.utility.model.FileModel;
+import org.alfresco.utility.model.FolderModel;
+import org.alfresco.utility.model.GroupModel;
+import org.alfresco.utility.model.SiteModel;
+import org.alfresco.utility.model.TaskModel;
+import org.alfresco.utility.model.UserModel;
+import org.alfresco.utility.report.log.Step;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Non blocking variant of the data preparation DSL.
+ * Every call runs on a new {@link TestData} instance configured from an immutable {@link DataContext}, so independent
+ * preparation steps can overlap and be joined once:
+ * <code>
+ * CompletableFuture<UserModel> user = asyncTestData.createRandomTestUser();
+ * CompletableFuture<SiteModel> site = asyncTestData.createPublicRandomSite(DataContext.asAdmin());
+ * CompletableFuture<FileModel> file = site.thenCompose(s -> asyncTestData.createContent(DataContext.asAdmin().withSite(s), FileModel.getRandomFileModel(FileType.TEXT_PLAIN)));
+ * CompletableFuture.allOf(user, file).join();
+ * </code>
+ * Calls run on virtual threads when the JVM supports them and <code>dataprep.async.virtualThreads</code> is true, otherwise on
+ * a pool of <code>dataprep.bulk.concurrency</code> threads. Another executor can be set with {@link #setExecutor(Executor)}.
+ * Steps done by a call are recorded on the test that made the call.
+ */
+@Service
+public class AsyncTestData implements DisposableBean
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private TasProperties tasProperties;
+
+    private Executor executor;
+
+    private ExecutorService ownExecutor;
+
+    /**
+     * Run <operation> on a new <type> instance (e.g. {@link DataContent}) configured with <context>
+     */
+    public <D extends TestData<D>, R> CompletableFuture<R> supply(Class<D> type, DataContext context, Function<D, R> operation)
+    {
+        return CompletableFuture.supplyAsync(Step.withCurrentTest(() -> operation.apply(context.applyTo(newData(type)))), getExecutor());
+    }
+
+    public CompletableFuture<UserModel> createRandomTestUser()
+    {
+        return supply(DataUser.class, DataContext.asAdmin(), DataUser::createRandomTestUser);
+    }
+
+    public CompletableFuture<UserModel> createUser(DataContext context, String userName)
+    {
+        return supply(DataUser.class, context, dataUser -> dataUser.createUser(userName));
+    }
+
+    public CompletableFuture<SiteModel> createSite(DataContext context, SiteModel siteModel)
+    {
+        return supply(DataSite.class, context, dataSite -> dataSite.createSite(siteModel));
+    }
+
+    public CompletableFuture<SiteModel> createPublicRandomSite(DataContext context)
+    {
+        return supply(DataSite.class, context, DataSite::createPublicRandomSite);
+    }
+
+    public CompletableFuture<FolderModel> createFolder(DataContext context, FolderModel folderModel)
+    {
+        return supply(DataContent.class, context, dataContent -> dataContent.createFolder(folderModel));
+    }
+
+    public CompletableFuture<FileModel> createContent(DataContext context, FileModel fileModel)
+    {
+        return supply(DataContent.class, context, dataContent -> dataContent.createContent(fileModel));
+    }
+
+    public CompletableFuture<GroupModel> createRandomGroup(DataContext context)
+    {
+        return supply(DataGroup.class, context, DataGroup::createRandomGroup);
+    }
+
+    public CompletableFuture<TaskModel> createNewTaskAndAssignTo(DataContext context, UserModel assignee)
+    {
+        return supply(DataWorkflow.class, context, dataWorkflow -> dataWorkflow.createNewTaskAndAssignTo(assignee));
+    }
+
+    /**
+     * @param executor used by all following calls, it is not shut down by this class
+     */
+    public synchronized void setExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    public synchronized Executor getExecutor()
+    {
+        if (executor == null)
+        {
+            ownExecutor = createDefaultExecutor();
+            executor = ownExecutor;
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void destroy()
+    {
+        if (ownExecutor != null)
+        {
+            ownExecutor.shutdown();
+        }
+    }
+
+    private <D extends TestData<D>> D newData(Class<D> type)
+    {
+        // beans are looked up by name as DataUserAIS is also a DataUser
+        return applicationContext.getBean(StringUtils.uncapitalize(type.getSimpleName()), type);
+    }
+
+    private ExecutorService createDefaultExecutor()
+    {
+        if (tasProperties.useAsyncVirtualThreads())
+        {
+            try
+            {
+                Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                LOG.info("Running asynchronous data preparation on virtual threads");
+                return (ExecutorService) virtualThreadExecutor.invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                LOG.debug("Virtual threads are not available on this JVM");
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, tasProperties.getBulkConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "tas-async-data");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
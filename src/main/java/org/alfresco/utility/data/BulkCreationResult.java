@@ -0,0 +1,116 @@
+package org.alfresco.utility.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.utility.model.TestModel;
+
+/**
+ * Outcome of a bulk creation call like {@link DataContent#createContents(List)} or {@link DataSite#createSites(int, org.alfresco.dataprep.SiteService.Visibility)}.
+ * Items are kept in the same order as requested; a failed item does not abort the rest of the batch.
+ */
+public class BulkCreationResult<T extends TestModel>
+{
+    private final List<T> items;
+    private final Map<Integer, Throwable> failures = new LinkedHashMap<Integer, Throwable>();
+    private long durationMillis;
+
+    public BulkCreationResult(List<T> items)
+    {
+        this.items = new ArrayList<T>(items);
+    }
+
+    void setItem(int index, T item)
+    {
+        items.set(index, item);
+    }
+
+    void addFailure(int index, Throwable cause)
+    {
+        failures.put(index, cause);
+    }
+
+    void setDurationMillis(long durationMillis)
+    {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return all requested items, in the original order. Successfully created items are replaced by the created model, with its node ref (or guid) populated.
+     */
+    public List<T> getItems()
+    {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * @return only the items that were created, in the original order
+     */
+    public List<T> getCreatedItems()
+    {
+        List<T> created = new ArrayList<T>();
+        for (int i = 0; i < items.size(); i++)
+        {
+            if (!failures.containsKey(i))
+            {
+                created.add(items.get(i));
+            }
+        }
+        return created;
+    }
+
+    /**
+     * @return failure cause by index of the item in the original list
+     */
+    public Map<Integer, Throwable> getFailures()
+    {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean isSuccessful(int index)
+    {
+        return !failures.containsKey(index);
+    }
+
+    public boolean hasFailures()
+    {
+        return !failures.isEmpty();
+    }
+
+    public int getSuccessCount()
+    {
+        return items.size() - failures.size();
+    }
+
+    public int getFailureCount()
+    {
+        return failures.size();
+    }
+
+    public long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    /**
+     * @return created items per second
+     */
+    public double getThroughput()
+    {
+        if (durationMillis <= 0)
+        {
+            return getSuccessCount();
+        }
+        return getSuccessCount() * 1000.0 / durationMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("BulkCreationResult[total=%d, created=%d, failed=%d, duration=%dms, throughput=%.2f items/s]", items.size(), getSuccessCount(),
+                getFailureCount(), durationMillis, getThroughput());
+    }
+}
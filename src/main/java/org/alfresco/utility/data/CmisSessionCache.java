@@ -0,0 +1,176 @@
+package org.alfresco.utility.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.dataprep.ContentService;
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.TasProperties;
+import org.alfresco.utility.model.UserModel;
+import org.apache.chemistry.opencmis.client.api.Session;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shared cache of CMIS sessions, keyed by server, tenant and user name.
+ * Switching to a user that was already used (see {@link DataContent#usingUser(UserModel)}) will reuse the
+ * existing session instead of doing a new CMIS handshake.
+ * Entries are evicted in LRU order once <code>cmis.sessionCache.maxSize</code> is reached and expire after
+ * <code>cmis.sessionCache.ttlSeconds</code>. An entry is also dropped if the user password changed or if the
+ * user is deleted with {@link DataUser#deleteUser(UserModel)}.
+ */
+@Service
+public class CmisSessionCache
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private TasProperties tasProperties;
+
+    private final Map<String, CachedSession> sessions = new LinkedHashMap<String, CachedSession>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param user
+     * @return a cached CMIS session for <user>, creating a new one if none is cached or the cached one is not valid anymore
+     */
+    public Session getSession(UserModel user)
+    {
+        String key = keyOf(user);
+        synchronized (sessions)
+        {
+            CachedSession cached = sessions.get(key);
+            if (cached != null)
+            {
+                if (!cached.isExpired(getTtlMillis()) && Objects.equals(cached.password, user.getPassword()))
+                {
+                    hits.incrementAndGet();
+                    return cached.session;
+                }
+                sessions.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        LOG.debug("Creating new CMIS session for {}", key);
+        Session session = contentService.getCMISSession(user.getUsername(), user.getPassword());
+        if (getMaxSize() <= 0)
+        {
+            return session;
+        }
+
+        synchronized (sessions)
+        {
+            sessions.put(key, new CachedSession(session, user.getPassword()));
+            Iterator<CachedSession> eldest = sessions.values().iterator();
+            while (sessions.size() > getMaxSize() && eldest.hasNext())
+            {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Remove the cached session of <user>, if any
+     *
+     * @param user
+     */
+    public void invalidate(UserModel user)
+    {
+        synchronized (sessions)
+        {
+            if (sessions.remove(keyOf(user)) != null)
+            {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached sessions
+     */
+    public void invalidateAll()
+    {
+        synchronized (sessions)
+        {
+            evictions.addAndGet(sessions.size());
+            sessions.clear();
+        }
+    }
+
+    public int size()
+    {
+        synchronized (sessions)
+        {
+            return sessions.size();
+        }
+    }
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("CmisSessionCache[size=%d, hits=%d, misses=%d, evictions=%d]", size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private String keyOf(UserModel user)
+    {
+        return String.format("%s|%s|%s", tasProperties.getFullServerUrl(), user.getDomain(), user.getUsername());
+    }
+
+    private int getMaxSize()
+    {
+        return tasProperties.getCmisSessionCacheMaxSize();
+    }
+
+    private long getTtlMillis()
+    {
+        return tasProperties.getCmisSessionCacheTtlSeconds() * 1000L;
+    }
+
+    private static class CachedSession
+    {
+        private final Session session;
+        private final String password;
+        private final long createdAt = System.currentTimeMillis();
+
+        CachedSession(Session session, String password)
+        {
+            this.session = session;
+            this.password = password;
+        }
+
+        boolean isExpired(long ttlMillis)
+        {
+            return ttlMillis > 0 && System.currentTimeMillis() - createdAt > ttlMillis;
+        }
+    }
+}
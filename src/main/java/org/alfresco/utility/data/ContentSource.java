@@ -0,0 +1,247 @@
+package org.alfresco.utility.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+import org.alfresco.utility.exception.IORuntimeException;
+import org.alfresco.utility.model.FileType;
+import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.ContentStreamImpl;
+
+/**
+ * Content of a known size that is generated or read lazily, one chunk at a time, so uploads of multi gigabyte files
+ * do not need a heap sized to the payload.
+ * Each {@link #openStream()} records the number of bytes read and the time spent, see {@link #getThroughputMBps()}.
+ * Example:
+ * <code>
+ * ContentSource source = ContentSource.random(2L * 1024 * 1024 * 1024);
+ * dataContent.usingSite(testSite).uploadDocument("big.txt", source);
+ * </code>
+ */
+public class ContentSource
+{
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final byte[] LETTERS = "abcdefghijklmnopqrstuvwxyz".getBytes();
+
+    private final long size;
+    private final Long seed;
+    private final File file;
+
+    private volatile long bytesRead;
+    private volatile long readNanos;
+
+    private ContentSource(long size, Long seed, File file)
+    {
+        this.size = size;
+        this.seed = seed;
+        this.file = file;
+    }
+
+    /**
+     * @param size in bytes
+     * @return random lowercase letters, different on each {@link #openStream()}
+     */
+    public static ContentSource random(long size)
+    {
+        return new ContentSource(size, null, null);
+    }
+
+    /**
+     * @param size in bytes
+     * @param seed
+     * @return random lowercase letters, the same ones on each {@link #openStream()}
+     */
+    public static ContentSource random(long size, long seed)
+    {
+        return new ContentSource(size, seed, null);
+    }
+
+    /**
+     * @param file read through a {@link FileChannel}, never loaded in memory
+     */
+    public static ContentSource ofFile(File file)
+    {
+        return new ContentSource(file.length(), null, file);
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return a new stream over the whole content
+     */
+    public InputStream openStream()
+    {
+        bytesRead = 0;
+        readNanos = 0;
+        if (file != null)
+        {
+            try
+            {
+                return new ChunkedStream(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+            }
+            catch (IOException e)
+            {
+                throw new IORuntimeException(e);
+            }
+        }
+        return new ChunkedStream(seed == null ? new SplittableRandom() : new SplittableRandom(seed));
+    }
+
+    /**
+     * @return a CMIS content stream for <fileName> backed by {@link #openStream()}
+     */
+    public ContentStream toContentStream(String fileName)
+    {
+        return new ContentStreamImpl(fileName, BigInteger.valueOf(size), FileType.fromName(fileName).mimeType, openStream());
+    }
+
+    /**
+     * Write the whole content to <target> using a single chunk buffer
+     */
+    public void writeTo(OutputStream target) throws IOException
+    {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream stream = openStream())
+        {
+            int read;
+            while ((read = stream.read(chunk)) != -1)
+            {
+                target.write(chunk, 0, read);
+            }
+        }
+    }
+
+    /**
+     * @return bytes consumed from the last opened stream
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * @return MB (1024 * 1024 bytes) per second between opening the last stream and reading its last byte
+     */
+    public double getThroughputMBps()
+    {
+        if (readNanos <= 0)
+        {
+            return 0;
+        }
+        return (bytesRead / (1024.0 * 1024.0)) / (readNanos / 1_000_000_000.0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("ContentSource[%s, size=%d bytes, read=%d bytes, %.2f MB/s]", file == null ? "random" : file.getPath(), size, bytesRead,
+                getThroughputMBps());
+    }
+
+    private class ChunkedStream extends InputStream
+    {
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private final SplittableRandom random;
+        private final FileChannel channel;
+        private final long start = System.nanoTime();
+        private long position;
+
+        ChunkedStream(SplittableRandom random)
+        {
+            this.random = random;
+            this.channel = null;
+            chunk.limit(0);
+        }
+
+        ChunkedStream(FileChannel channel)
+        {
+            this.random = null;
+            this.channel = channel;
+            chunk.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (!chunk.hasRemaining() && !fill())
+            {
+                return -1;
+            }
+            int count = Math.min(length, chunk.remaining());
+            chunk.get(buffer, offset, count);
+            position += count;
+            bytesRead = position;
+            readNanos = System.nanoTime() - start;
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return chunk.remaining();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (channel != null)
+            {
+                channel.close();
+            }
+        }
+
+        private boolean fill() throws IOException
+        {
+            long remaining = size - position;
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            chunk.clear();
+            chunk.limit((int) Math.min(CHUNK_SIZE, remaining));
+            if (channel != null)
+            {
+                int read = 0;
+                while (chunk.hasRemaining() && read != -1)
+                {
+                    read = channel.read(chunk);
+                }
+                chunk.flip();
+                return chunk.hasRemaining();
+            }
+            while (chunk.hasRemaining())
+            {
+                // 12 letters out of each random long, 5 bits per letter
+                long bits = random.nextLong();
+                for (int i = 0; i < 12 && chunk.hasRemaining(); i++, bits >>>= 5)
+                {
+                    chunk.put(LETTERS[(int) ((bits & 31) % LETTERS.length)]);
+                }
+            }
+            chunk.flip();
+            return true;
+        }
+    }
+}
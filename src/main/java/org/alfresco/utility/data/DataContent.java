@@ -3,17 +3,21 @@ package org.alfresco.utility.data;
 import static org.alfresco.utility.report.log.Step.STEP;
 
 import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.alfresco.dataprep.CMISUtil.DocumentType;
 import org.alfresco.dataprep.ContentActions;
@@ -35,13 +39,17 @@ import org.alfresco.utility.model.FolderModel;
 import org.alfresco.utility.model.SiteModel;
 import org.alfresco.utility.model.TagModel;
 import org.alfresco.utility.model.UserModel;
+import org.alfresco.utility.wait.ConditionPoller;
 import org.apache.chemistry.opencmis.client.api.CmisObject;
 import org.apache.chemistry.opencmis.client.api.Document;
 import org.apache.chemistry.opencmis.client.api.Folder;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.data.ContentStream;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
 import org.apache.chemistry.opencmis.commons.enums.VersioningState;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisStorageException;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ContentStreamImpl;
 import org.apache.commons.io.FilenameUtils;
@@ -92,6 +100,9 @@ public class DataContent extends TestData<DataContent>
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CmisSessionCache sessionCache;
+
     private FileModel customModel;
 
     public ContentActions getContentActions()
@@ -112,7 +123,7 @@ public class DataContent extends TestData<DataContent>
     public DataContent usingUser(UserModel user)
     {
         currentUser = user;
-        session = contentService.getCMISSession(user.getUsername(), user.getPassword());
+        session = sessionCache.getSession(user);
         return this;
     }
 
@@ -360,6 +371,55 @@ public class DataContent extends TestData<DataContent>
         }
     }
 
+    /**
+     * Create all files in current resource, sending up to <code>dataprep.bulk.concurrency</code> requests in parallel
+     * <code>
+     * BulkCreationResult&lt;FileModel&gt; result = dataContent.usingUser(testUser).usingSite(testSite).createContents(files);
+     * </code>
+     * A file that could not be created is reported in the {@link BulkCreationResult} and does not abort the other files.
+     *
+     * @param fileModels
+     * @return the result of each file, in the order of <fileModels>
+     */
+    public BulkCreationResult<FileModel> createContents(List<FileModel> fileModels)
+    {
+        return createInBulk(fileModels, this::createContent);
+    }
+
+    /**
+     * Create all folders in current resource, sending up to <code>dataprep.bulk.concurrency</code> requests in parallel
+     * <code>
+     * BulkCreationResult&lt;FolderModel&gt; result = dataContent.usingUser(testUser).usingSite(testSite).createFolders(folders);
+     * </code>
+     * A folder that could not be created is reported in the {@link BulkCreationResult} and does not abort the other folders.
+     *
+     * @param folderModels
+     * @return the result of each folder, in the order of <folderModels>
+     */
+    public BulkCreationResult<FolderModel> createFolders(List<FolderModel> folderModels)
+    {
+        return createInBulk(folderModels, this::createFolder);
+    }
+
+    private <T extends ContentModel> BulkCreationResult<T> createInBulk(List<T> models, Function<T, T> creator)
+    {
+        STEP(String.format("DATAPREP: Create %d items in %s", models.size(), getCurrentSpace()));
+        BulkCreationResult<T> result = new BulkCreationResult<T>(models);
+        if (models.isEmpty())
+        {
+            return result;
+        }
+
+        // make sure the current user is resolved before the workers start reading it
+        getCurrentUser();
+
+        // CMIS creation (before 5.2) updates the last resource, so it cannot be shared between workers
+        int concurrency = alfrescoHttpClientFactory.getObject().getAlfVersion() >= 5.2 ? tasProperties.getBulkConcurrency() : 1;
+        runInBulk(result, creator, concurrency);
+        LOG.info("Bulk creation in {} finished: {}", getCurrentSpace(), result);
+        return result;
+    }
+
     /**
      * Creates a file using REST API
      * Return the {@link FileModel} object on success creation
@@ -624,34 +684,97 @@ public class DataContent extends TestData<DataContent>
         return !contentService.getNodeRefByPath(getSession(), Utility.convertBackslashToSlash(fullPath)).isEmpty();
     }
 
+    /**
+     * Wait up to {@link Utility#retryCountSeconds} seconds until a resource is deleted
+     *
+     * @param fullPath
+     */
     public void waitUntilContentIsDeleted(String fullPath)
     {
-        int retry = 0;
-        String deletedObject = contentService.getNodeRefByPath(getSession(), fullPath);
-        while (!StringUtils.isEmpty(deletedObject) && retry < Utility.retryCountSeconds)
-        {
-            Utility.waitToLoopTime(1);
-            deletedObject = contentService.getNodeRefByPath(getSession(), fullPath);
-            retry++;
-        }
+        new ConditionPoller("content-deleted", Duration.ofSeconds(Utility.retryCountSeconds))
+                .await(() -> StringUtils.isEmpty(contentService.getNodeRefByPath(getSession(), fullPath)));
     }
 
     /**
      * Wait and retry for 15 seconds checking if a resource is created
+     * The first checks are done after a few milliseconds, see {@link ConditionPoller}
      *
      * @param fullPath
      */
     public void waitUntilContentIsCreated(String fullPath)
     {
         LOG.info("Wait until new content is created up to 15 seconds");
-        int retry = 0;
-        String newObject = contentService.getNodeRefByPath(getSession(), fullPath);
-        while (StringUtils.isEmpty(newObject) && retry < 15)
+        new ConditionPoller("content-created", Duration.ofSeconds(15))
+                .await(() -> !StringUtils.isEmpty(contentService.getNodeRefByPath(getSession(), fullPath)));
+    }
+
+    /**
+     * Wait and retry for 15 seconds checking if all resources are created
+     * Paths are checked together: one children listing per parent folder on each poll instead of one lookup per path.
+     *
+     * @param fullPaths
+     * @return the paths that were still not found after 15 seconds
+     */
+    public Set<String> waitUntilContentsAreCreated(Collection<String> fullPaths)
+    {
+        LOG.info("Wait until {} new contents are created up to 15 seconds", fullPaths.size());
+        return new ConditionPoller("content-created", Duration.ofSeconds(15)).awaitAll(fullPaths, this::getExistingPaths);
+    }
+
+    /**
+     * @param fullPaths
+     * @return the paths from <fullPaths> that exist in repository
+     */
+    private Set<String> getExistingPaths(Set<String> fullPaths)
+    {
+        Map<String, List<String>> pathsByParent = new HashMap<String, List<String>>();
+        for (String fullPath : fullPaths)
         {
-            Utility.waitToLoopTime(1);
-            newObject = contentService.getNodeRefByPath(getSession(), fullPath);
-            retry++;
+            String path = Utility.removeLastSlash(Utility.convertBackslashToSlash(fullPath));
+            int lastSlash = path.lastIndexOf('/');
+            String parent = lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
+            pathsByParent.computeIfAbsent(parent, key -> new ArrayList<String>()).add(fullPath);
         }
+
+        Session session = getSession();
+        OperationContext context = session.createOperationContext();
+        context.setFilterString(PropertyIds.NAME);
+        context.setIncludeAcls(false);
+        context.setIncludeAllowableActions(false);
+        context.setIncludePolicies(false);
+        context.setIncludeRelationships(IncludeRelationships.NONE);
+        context.setRenditionFilterString("cmis:none");
+        context.setCacheEnabled(false);
+        context.setMaxItemsPerPage(1000);
+
+        Set<String> existing = new HashSet<String>();
+        for (Map.Entry<String, List<String>> entry : pathsByParent.entrySet())
+        {
+            Set<String> childNames = new HashSet<String>();
+            try
+            {
+                CmisObject parent = session.getObjectByPath(entry.getKey(), context);
+                if (parent instanceof Folder)
+                {
+                    for (CmisObject child : ((Folder) parent).getChildren(context))
+                    {
+                        childNames.add(child.getName());
+                    }
+                }
+            }
+            catch (CmisObjectNotFoundException e)
+            {
+                // parent not created yet, so none of its children exists
+            }
+            for (String fullPath : entry.getValue())
+            {
+                if (childNames.contains(FilenameUtils.getName(Utility.removeLastSlash(Utility.convertBackslashToSlash(fullPath)))))
+                {
+                    existing.add(fullPath);
+                }
+            }
+        }
+        return existing;
     }
 
     /**
@@ -679,6 +802,7 @@ public class DataContent extends TestData<DataContent>
         {
             LOG.info("Deleting site {} with user {}", site.toString(), getCurrentUser().toString());
             siteService.delete(getCurrentUser().getUsername(), getCurrentUser().getPassword(), getCurrentUser().getDomain(), site.getId());
+            getSiteContainerCache().invalidate(site.getId());
         }
     }
 
@@ -719,7 +843,7 @@ public class DataContent extends TestData<DataContent>
         props.put(PropertyIds.OBJECT_TYPE_ID, "D:cm:dictionaryModel");
         props.put(PropertyIds.NAME, file.getName());
         props.put("cm:modelActive", true);
-        Session session = contentService.getCMISSession(getCurrentUser().getUsername(), getCurrentUser().getPassword());
+        Session session = sessionCache.getSession(getCurrentUser());
         ContentStream contentStream = session.getObjectFactory().createContentStream(file.getName(), file.length(), FilenameUtils.getExtension(file.getPath()),
                 inputStream);
         CmisObject modelInRepo;
@@ -766,7 +890,6 @@ public class DataContent extends TestData<DataContent>
      * @param fileName A name for the content stream.
      * @param content The content.
      * @return The stream.
-     * @throws IORuntimeException if there is an issue creating the stream.
      */
     public ContentStream getContentStream(String fileName, String content)
     {
@@ -774,25 +897,21 @@ public class DataContent extends TestData<DataContent>
         {
             content = "";
         }
-        ContentStream contentStream;
-        try
-        {
-            byte[] byteContent = content.getBytes("UTF-8");
-            InputStream stream = new ByteArrayInputStream(byteContent);
-            DataInputStream dataInputStream = new DataInputStream(stream);
-            byteContent = new byte[content.length()];
-            dataInputStream.readFully(byteContent);
-            ByteArrayInputStream bInput = new ByteArrayInputStream(byteContent);
-            contentStream = new ContentStreamImpl(fileName, BigInteger.valueOf(byteContent.length), FileType.fromName(fileName).mimeType, bInput);
-            bInput.close();
-            dataInputStream.close();
-            stream.close();
-        }
-        catch (IOException e)
-        {
-            throw new IORuntimeException(e);
-        }
-        return contentStream;
+        byte[] byteContent = content.getBytes(StandardCharsets.UTF_8);
+        return new ContentStreamImpl(fileName, BigInteger.valueOf(byteContent.length), FileType.fromName(fileName).mimeType,
+                new ByteArrayInputStream(byteContent));
+    }
+
+    /**
+     * Create a content stream that reads <source> lazily, chunk by chunk, without loading it in memory.
+     *
+     * @param fileName A name for the content stream.
+     * @param source The content.
+     * @return The stream.
+     */
+    public ContentStream getContentStream(String fileName, ContentSource source)
+    {
+        return source.toContentStream(fileName);
     }
 
     public void closeContentStream(ContentStream contentStream)
@@ -1060,6 +1179,45 @@ public class DataContent extends TestData<DataContent>
         userService.emptyTrashcan(user.getUsername(), user.getPassword());
     }
 
+    /**
+     * Upload <source> as a new document named <fileName> in the last resource, streaming it over CMIS.
+     * Use this for large files, the content is never fully loaded in memory.
+     * Example:
+     * <code>
+     * dataContent.usingUser(testUser).usingSite(testSite).uploadDocument("large.txt", ContentSource.random(4L * 1024 * 1024 * 1024));
+     * </code>
+     *
+     * @param fileName
+     * @param source
+     * @return the uploaded file
+     */
+    public FileModel uploadDocument(String fileName, ContentSource source)
+    {
+        STEP(String.format("DATAPREP: Upload %d bytes as %s in %s", source.getSize(), fileName, getLastResource()));
+        Session session = sessionCache.getSession(getCurrentUser());
+        Folder folder = (Folder) session.getObjectByPath(Utility.removeLastSlash(getLastResource()));
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(PropertyIds.OBJECT_TYPE_ID, "cmis:document");
+        properties.put(PropertyIds.NAME, fileName);
+        ContentStream contentStream = getContentStream(fileName, source);
+        try
+        {
+            Document document = folder.createDocument(properties, contentStream, VersioningState.MAJOR);
+            LOG.info("Uploaded {} ({} bytes) at {} MB/s", fileName, source.getBytesRead(), String.format("%.2f", source.getThroughputMBps()));
+
+            FileModel alfrescoFile = new FileModel(fileName);
+            alfrescoFile.setNodeRef(document.getId());
+            alfrescoFile.setNodeRef(alfrescoFile.getNodeRefWithoutVersion());
+            alfrescoFile.setCmisLocation(Utility.buildPath(getLastResource(), fileName));
+            return alfrescoFile;
+        }
+        finally
+        {
+            closeContentStream(contentStream);
+        }
+    }
+
     public FileModel uploadDocument(File fileToUpload)
     {
         contentService.uploadFileInRepository(getCurrentUser().getUsername(), getCurrentUser().getPassword(),
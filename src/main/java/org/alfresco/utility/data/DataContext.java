@@ -0,0 +1,108 @@
+package org.alfresco.utility.data;
+
+import org.alfresco.utility.model.ContentModel;
+import org.alfresco.utility.model.SiteModel;
+import org.alfresco.utility.model.UserModel;
+
+/**
+ * Immutable equivalent of the <code>usingUser(..).usingSite(..).usingResource(..)</code> state of {@link TestData}.
+ * Each <code>with*</code> method returns a new context, so the same context can be shared between concurrent calls of {@link AsyncTestData}.
+ * Example:
+ * <code>
+ * DataContext inSite = DataContext.asUser(testUser).withSite(testSite);
+ * asyncTestData.createContent(inSite, FileModel.getRandomFileModel(FileType.TEXT_PLAIN));
+ * asyncTestData.createFolder(inSite, FolderModel.getRandomFolderModel());
+ * </code>
+ */
+public final class DataContext
+{
+    private static final DataContext ADMIN = new DataContext(null, null, null);
+
+    private final UserModel user;
+    private final SiteModel site;
+    private final ContentModel resource;
+
+    private DataContext(UserModel user, SiteModel site, ContentModel resource)
+    {
+        this.user = user;
+        this.site = site;
+        this.resource = resource;
+    }
+
+    /**
+     * @return context using the admin user defined in default.properties
+     */
+    public static DataContext asAdmin()
+    {
+        return ADMIN;
+    }
+
+    public static DataContext asUser(UserModel user)
+    {
+        return new DataContext(user, null, null);
+    }
+
+    public DataContext withUser(UserModel user)
+    {
+        return new DataContext(user, site, resource);
+    }
+
+    public DataContext withSite(SiteModel site)
+    {
+        return new DataContext(user, site, null);
+    }
+
+    /**
+     * @param resource folder or file used as parent/target, relative to the site if one is set
+     */
+    public DataContext withResource(ContentModel resource)
+    {
+        return new DataContext(user, site, resource);
+    }
+
+    public UserModel getUser()
+    {
+        return user;
+    }
+
+    public SiteModel getSite()
+    {
+        return site;
+    }
+
+    public ContentModel getResource()
+    {
+        return resource;
+    }
+
+    /**
+     * Apply this context on a fresh <data> instance
+     */
+    <D extends TestData<D>> D applyTo(D data)
+    {
+        if (user == null)
+        {
+            data.usingAdmin();
+        }
+        else
+        {
+            data.usingUser(user);
+        }
+        if (site != null)
+        {
+            data.usingSite(site);
+        }
+        if (resource != null)
+        {
+            data.usingResource(resource);
+        }
+        return data;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("DataContext[user=%s, site=%s, resource=%s]", user == null ? "admin" : user.getUsername(), site == null ? null : site.getId(),
+                resource == null ? null : resource.getCmisLocation());
+    }
+}
@@ -2,13 +2,24 @@ package org.alfresco.utility.data;
 
 import static org.alfresco.utility.report.log.Step.STEP;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.alfresco.dataprep.AlfrescoHttpClient;
+import org.alfresco.dataprep.AlfrescoHttpClientFactory;
 import org.alfresco.dataprep.SiteService;
 import org.alfresco.dataprep.SiteService.RMSiteCompliance;
 import org.alfresco.dataprep.SiteService.Visibility;
 import org.alfresco.utility.TasProperties;
 import org.alfresco.utility.exception.DataPreparationException;
 import org.alfresco.utility.model.SiteModel;
+import org.alfresco.utility.model.UserModel;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.json.simple.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
@@ -27,35 +38,113 @@ public class DataSite extends TestData<DataSite>
 {
     @Autowired
     private SiteService siteService;
+
+    @Autowired
+    private AlfrescoHttpClientFactory alfrescoHttpClientFactory;
    
     static String SITE_NOT_CREATED = "Site %s  not created";
 
+    /**
+     * There is only one RM site per server, so only its creation is serialized
+     */
+    private static final Object RM_SITE_LOCK = new Object();
+
     /**
      * Creates a new random site on test server defined in {@link TasProperties} file.
      * 
      * You can also use the {@link #usingUser(org.alfresco.utility.model.UserModel)}
      * 
      * method for defining a new user rather than admin
+     * 
+     * This method can be called from many threads at once on the same instance, as long as the current user is not changed meanwhile.
+     * If the Alfresco version is at least 5.2 then the v1 REST API will be used and the site guid is taken from its response.
      * @param siteModel
      * @return
      * @throws DataPreparationException
      */
-    public synchronized SiteModel createSite(SiteModel siteModel) throws DataPreparationException
-    {    
-        STEP(String.format("Creating site %s with user %s", siteModel.toString(), getCurrentUser().toString()));
-        siteService.create(
-                getCurrentUser().getUsername(), 
-                getCurrentUser().getPassword(), 
-                String.format(RandomStringUtils.randomAlphanumeric(10), EMAIL),
-                siteModel.getId(), 
-                siteModel.getTitle(), 
-                siteModel.getDescription(), 
-                siteModel.getVisibility());
-
-        siteModel.setGuid(siteService.getSiteNodeRef(getCurrentUser().getUsername(), getCurrentUser().getPassword(), siteModel.getId()));
+    public SiteModel createSite(SiteModel siteModel) throws DataPreparationException
+    {
+        UserModel user = getCurrentUser();
+        STEP(String.format("Creating site %s with user %s", siteModel.toString(), user.toString()));
+        AlfrescoHttpClient client = alfrescoHttpClientFactory.getObject();
+        if (client.getAlfVersion() >= 5.2)
+        {
+            createSiteV1Api(client, siteModel, user);
+        }
+        else
+        {
+            siteService.create(
+                    user.getUsername(), 
+                    user.getPassword(), 
+                    String.format(RandomStringUtils.randomAlphanumeric(10), EMAIL),
+                    siteModel.getId(), 
+                    siteModel.getTitle(), 
+                    siteModel.getDescription(), 
+                    siteModel.getVisibility());
+
+            siteModel.setGuid(siteService.getSiteNodeRef(user.getUsername(), user.getPassword(), siteModel.getId()));
+        }
+        // a site with the same id may have been deleted and created again, its container is looked up on first use
+        getSiteContainerCache().invalidate(siteModel.getId());
         return siteModel;
     }
 
+    /**
+     * Create a site using v1 REST API, setting the guid returned in the response on <siteModel>
+     */
+    private void createSiteV1Api(AlfrescoHttpClient client, SiteModel siteModel, UserModel user)
+    {
+        String reqUrl = client.getApiVersionUrl() + "sites";
+        HttpPost post = new HttpPost(reqUrl);
+        JSONObject body = new JSONObject();
+        body.put("id", siteModel.getId());
+        body.put("title", siteModel.getTitle());
+        if (siteModel.getDescription() != null)
+        {
+            body.put("description", siteModel.getDescription());
+        }
+        body.put("visibility", siteModel.getVisibility().name());
+        post.setEntity(client.setMessageBody(body));
+
+        LOG.info("POST: '{}'", reqUrl);
+        HttpResponse response = client.execute(user.getUsername(), user.getPassword(), post);
+        if (HttpStatus.SC_CREATED == response.getStatusLine().getStatusCode())
+        {
+            JSONObject entryResponse = client.readStream(response.getEntity());
+            JSONObject entryValueMap = (JSONObject) entryResponse.get("entry");
+            siteModel.setGuid(entryValueMap.get("guid").toString());
+        }
+        else
+        {
+            throw new DataPreparationException(String.format(SITE_NOT_CREATED, siteModel.getId()) + ". Request response: "
+                    + client.getParameterFromJSON(response, "briefSummary", "error"));
+        }
+    }
+
+    /**
+     * Create <count> random sites with <visibility> in parallel, using up to <code>dataprep.bulk.concurrency</code> threads
+     * <code>
+     * List&lt;SiteModel&gt; sites = dataSite.usingUser(testUser).createSites(10, Visibility.PUBLIC).getCreatedItems();
+     * </code>
+     * 
+     * @param count
+     * @param visibility
+     * @return the result of each site creation; a failed site does not abort the others
+     */
+    public BulkCreationResult<SiteModel> createSites(int count, Visibility visibility)
+    {
+        STEP(String.format("DATAPREP: Create %d %s sites with user %s", count, visibility, getCurrentUser().getUsername()));
+        List<SiteModel> sites = new ArrayList<SiteModel>();
+        for (int i = 0; i < count; i++)
+        {
+            sites.add(new SiteModel(RandomData.getRandomName("site"), visibility));
+        }
+        BulkCreationResult<SiteModel> result = new BulkCreationResult<SiteModel>(sites);
+        runInBulk(result, this::createSite, tasProperties.getBulkConcurrency());
+        LOG.info("Bulk site creation finished: {}", result);
+        return result;
+    }
+
     /**
      * Create public site immediately
      * 
@@ -170,6 +259,23 @@ public class DataSite extends TestData<DataSite>
     {
         STEP(String.format("DATAPREP: Delete site %s", siteModel.getId()));
         siteService.delete(getCurrentUser().getUsername(), getCurrentUser().getPassword(), siteModel.getId());
+        getSiteContainerCache().invalidate(siteModel.getId());
+    }
+
+    /**
+     * Load the documentLibrary node id of all <sites> in the shared cache, so that following
+     * {@link #usingSite(SiteModel)} calls do not need a request to server
+     * 
+     * @param sites
+     */
+    public void prefetchSiteContainers(Collection<SiteModel> sites)
+    {
+        List<String> siteIds = new ArrayList<String>();
+        for (SiteModel site : sites)
+        {
+            siteIds.add(site.getId());
+        }
+        getSiteContainerCache().prefetch(siteIds);
     }
 
     /**
@@ -188,17 +294,21 @@ public class DataSite extends TestData<DataSite>
      * Create a new RM Site
      * Using {@link #assertExtensionAmpExists} we assert if the RM AMP is first applied on the test server.
      */
-    public synchronized SiteModel createRMSite(RMSiteCompliance compliance)
+    public SiteModel createRMSite(RMSiteCompliance compliance)
     {
         String rmSiteName = "rm";
-        boolean rmCreated =siteService.createRMSite(getCurrentUser().getUsername(), getCurrentUser().getPassword(), rmSiteName, "create by TAS -> createRMSite method", compliance);        
-        Assert.assertTrue(rmCreated,"RM Site created Successfully.");
-        
-        /*
-         * We want to be sure that the RM was created
-         */
-        String rmSiteNodeRef = siteService.getSiteNodeRef(getCurrentUser().getUsername(), getCurrentUser().getPassword(), rmSiteName);
-        Assert.assertNotNull(rmSiteNodeRef,"RM Site created Successfully. Site Node Ref captured.");
+        String rmSiteNodeRef;
+        synchronized (RM_SITE_LOCK)
+        {
+            boolean rmCreated =siteService.createRMSite(getCurrentUser().getUsername(), getCurrentUser().getPassword(), rmSiteName, "create by TAS -> createRMSite method", compliance);        
+            Assert.assertTrue(rmCreated,"RM Site created Successfully.");
+            
+            /*
+             * We want to be sure that the RM was created
+             */
+            rmSiteNodeRef = siteService.getSiteNodeRef(getCurrentUser().getUsername(), getCurrentUser().getPassword(), rmSiteName);
+            Assert.assertNotNull(rmSiteNodeRef,"RM Site created Successfully. Site Node Ref captured.");
+        }
         
         /*
          * let's return the same SiteModel so we can use it in tests.
@@ -29,6 +29,12 @@ public class DataUser extends TestData<DataUser>
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CmisSessionCache sessionCache;
+
+    @Autowired
+    private UserPool userPool;
+
     static String USER_NOT_CREATED = "User %s  not created";
 
     /**
@@ -126,16 +132,35 @@ public class DataUser extends TestData<DataUser>
     /**
      * Creates a new random user.
      * If no user is specified with {@link #usingUser(UserModel)} then the random user is created with admin
+     * and, when <code>dataprep.userPool.size</code> is set, it is taken from the pre-created {@link UserPool}
      * 
      * @return
      * @throws DataPreparationException
      */
     public UserModel createRandomTestUser() throws DataPreparationException
     {
+        if (userPool.isEnabled() && getCurrentUser().getUsername().equals(getAdminUser().getUsername()))
+        {
+            // an empty pool falls back to the usual creation, on this thread
+            UserModel pooledUser = userPool.acquire(() -> createUser(RandomData.getRandomName("User")));
+            pooledUser.setDomain(getCurrentUser().getDomain());
+            return pooledUser;
+        }
         String user = RandomData.getRandomName("User");
         return createUser(user);
     }
 
+    /**
+     * Give back a user taken with {@link #createRandomTestUser()} so it can be handed out again
+     * after its trashcan is emptied and its site memberships removed
+     * 
+     * @param user
+     */
+    public void releaseTestUser(UserModel user)
+    {
+        userPool.release(user);
+    }
+
     /**
      * Creates a new random user using a prefix for user name.
      * If no user is specified with {@link #usingUser(UserModel)} then the random user is created with admin
@@ -253,6 +278,7 @@ public class DataUser extends TestData<DataUser>
         STEP(String.format("DATAPREP: Deleting %s user",userToDelete.getUsername()));
         LOG.info("Delete user {}", userToDelete.getUsername());
         boolean deleted = userService.delete(getAdminUser().getUsername(), getAdminUser().getPassword(), userToDelete.getUsername());
+        sessionCache.invalidate(userToDelete);
         if (!deleted)
         {
             throw new DataPreparationException(String.format("Failed to delete user '%s'.", userToDelete.getUsername()));
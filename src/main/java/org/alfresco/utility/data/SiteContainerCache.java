@@ -0,0 +1,161 @@
+package org.alfresco.utility.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.alfresco.dataprep.AlfrescoHttpClient;
+import org.alfresco.dataprep.AlfrescoHttpClientFactory;
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.TasProperties;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shared cache of the documentLibrary container node id of each site, used by {@link TestData#usingSite(String)}.
+ * Entries are added on first lookup or by {@link DataSite#prefetchSiteContainers(java.util.Collection)}, and removed when a site is
+ * created or deleted with {@link DataSite}.
+ */
+@Service
+public class SiteContainerCache
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    @Autowired
+    private AlfrescoHttpClientFactory alfrescoHttpClientFactory;
+
+    @Autowired
+    private TasProperties tasProperties;
+
+    private final Map<String, String> documentLibraryNodeIds = new ConcurrentHashMap<String, String>();
+
+    /**
+     * @param siteId
+     * @return documentLibrary node id of the site, requested from server only if it is not cached yet
+     */
+    public String getDocumentLibraryNodeId(String siteId)
+    {
+        String key = keyOf(siteId);
+        String nodeId = documentLibraryNodeIds.get(key);
+        if (nodeId == null)
+        {
+            nodeId = requestDocumentLibraryNodeId(siteId);
+            documentLibraryNodeIds.put(key, nodeId);
+        }
+        return nodeId;
+    }
+
+    /**
+     * Load the documentLibrary node id of all <siteIds> not cached yet.
+     * The REST API has no call returning the containers of many sites, so the lookups are sent in parallel
+     * using up to <code>dataprep.bulk.concurrency</code> connections.
+     * 
+     * @param siteIds
+     */
+    public void prefetch(Collection<String> siteIds)
+    {
+        List<String> missing = new ArrayList<String>();
+        for (String siteId : siteIds)
+        {
+            if (!documentLibraryNodeIds.containsKey(keyOf(siteId)) && !missing.contains(siteId))
+            {
+                missing.add(siteId);
+            }
+        }
+        if (missing.isEmpty())
+        {
+            return;
+        }
+
+        LOG.info("Prefetching documentLibrary node id of {} site(s)", missing.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(tasProperties.getBulkConcurrency(), missing.size())));
+        try
+        {
+            List<Future<String>> lookups = new ArrayList<Future<String>>();
+            for (String siteId : missing)
+            {
+                lookups.add(executor.submit(() -> getDocumentLibraryNodeId(siteId)));
+            }
+            for (int i = 0; i < lookups.size(); i++)
+            {
+                try
+                {
+                    lookups.get(i).get();
+                }
+                catch (ExecutionException e)
+                {
+                    LOG.error("Could not prefetch documentLibrary of site {}: {}", missing.get(i), e.getCause().getMessage());
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void put(String siteId, String documentLibraryNodeId)
+    {
+        documentLibraryNodeIds.put(keyOf(siteId), documentLibraryNodeId);
+    }
+
+    public void invalidate(String siteId)
+    {
+        documentLibraryNodeIds.remove(keyOf(siteId));
+    }
+
+    public void invalidateAll()
+    {
+        documentLibraryNodeIds.clear();
+    }
+
+    public int size()
+    {
+        return documentLibraryNodeIds.size();
+    }
+
+    private String keyOf(String siteId)
+    {
+        return String.format("%s|%s", tasProperties.getFullServerUrl(), siteId);
+    }
+
+    /**
+     * Returns doclib node id for a given site
+     *
+     * @return NodeId
+     * @param siteId
+     */
+    private String requestDocumentLibraryNodeId(String siteId)
+    {
+        AlfrescoHttpClient client = this.alfrescoHttpClientFactory.getObject();
+        String reqUrl = client.getApiVersionUrl() + "sites/" + siteId + "/containers/documentLibrary";
+
+        HttpGet get = new HttpGet(reqUrl);
+        HttpResponse response = client.execute(tasProperties.getAdminUser(), tasProperties.getAdminPassword(), get);
+
+        if (200 == response.getStatusLine().getStatusCode())
+        {
+            JSONObject jsonObject = new JSONObject(client.readStream(response.getEntity()));
+            return jsonObject.getJSONObject("entry").getString("id");
+        }
+        else
+        {
+            throw new RuntimeException(
+                    "Could not set Doclib nodeId. Request response: " + client.getParameterFromJSON(response, "briefSummary", new String[] { "error" }));
+        }
+    }
+}
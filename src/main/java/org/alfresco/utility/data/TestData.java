@@ -2,13 +2,18 @@ package org.alfresco.utility.data;
 
 import static org.alfresco.utility.report.log.Step.STEP;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import javax.management.openmbean.CompositeData;
 
-import org.alfresco.dataprep.AlfrescoHttpClient;
-import org.alfresco.dataprep.AlfrescoHttpClientFactory;
 import org.alfresco.utility.LogFactory;
 import org.alfresco.utility.TasProperties;
 import org.alfresco.utility.Utility;
@@ -19,18 +24,17 @@ import org.alfresco.utility.model.ContentModel;
 import org.alfresco.utility.model.FileModel;
 import org.alfresco.utility.model.FolderModel;
 import org.alfresco.utility.model.SiteModel;
+import org.alfresco.utility.model.TestModel;
 import org.alfresco.utility.model.UserModel;
 import org.alfresco.utility.network.JmxBuilder;
+import org.alfresco.utility.report.log.Step;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
 import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.testng.Assert;
@@ -73,7 +77,7 @@ public abstract class TestData<Data> implements DSL<Data>
     protected TasProperties tasProperties;
 
     @Autowired
-    private AlfrescoHttpClientFactory alfrescoHttpClientFactory;
+    private SiteContainerCache siteContainerCache;
 
     public static String PASSWORD = "password";
     public static String EMAIL = "%s@tas-automation.org";
@@ -386,28 +390,76 @@ public abstract class TestData<Data> implements DSL<Data>
     }
 
     /**
-     * Returns doclib node id for a given site
-     *
-     * @return NodeId
-     * @param siteId
+     * Apply <creator> on each item of <result> using up to <concurrency> threads, recording failures and duration in <result>.
+     * The model returned by <creator> replaces the requested one in <result>, as some creators return a new model.
+     * The creator must only read the state of this object (current user, current space, etc.) as it is shared by all threads.
+     * 
+     * @param result
+     * @param creator
+     * @param concurrency
      */
-    private String getSiteDocLibNodeId(String siteId)
+    protected <T extends TestModel> void runInBulk(BulkCreationResult<T> result, Function<T, T> creator, int concurrency)
     {
-        AlfrescoHttpClient client = this.alfrescoHttpClientFactory.getObject();
-        String reqUrl = client.getApiVersionUrl() + "sites/" + siteId + "/containers/documentLibrary";
-
-        HttpGet get = new HttpGet(reqUrl);
-        HttpResponse response = client.execute(tasProperties.getAdminUser(), tasProperties.getAdminPassword(), get);
+        List<T> models = result.getItems();
+        if (models.isEmpty())
+        {
+            return;
+        }
 
-        if (200 == response.getStatusLine().getStatusCode())
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, models.size())));
+        try
         {
-            JSONObject jsonObject = new JSONObject(client.readStream(response.getEntity()));
-            return jsonObject.getJSONObject("entry").getString("id");
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (T model : models)
+            {
+                futures.add(executor.submit(Step.withCurrentTest(() -> creator.apply(model))::get));
+            }
+            for (int i = 0; i < futures.size(); i++)
+            {
+                try
+                {
+                    T created = futures.get(i).get();
+                    if (created != null)
+                    {
+                        result.setItem(i, created);
+                    }
+                }
+                catch (ExecutionException e)
+                {
+                    LOG.error("Could not create item {} of bulk request: {}", i, e.getCause().getMessage());
+                    result.addFailure(i, e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    result.addFailure(i, e);
+                }
+            }
         }
-        else
+        finally
         {
-            throw new RuntimeException(
-                    "Could not set Doclib nodeId. Request response: " + client.getParameterFromJSON(response, "briefSummary", new String[] { "error" }));
+            executor.shutdownNow();
         }
+        result.setDurationMillis(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return the shared cache of site documentLibrary node ids
+     */
+    protected SiteContainerCache getSiteContainerCache()
+    {
+        return siteContainerCache;
+    }
+
+    /**
+     * Returns doclib node id for a given site, see {@link SiteContainerCache}
+     *
+     * @return NodeId
+     * @param siteId
+     */
+    private String getSiteDocLibNodeId(String siteId)
+    {
+        return siteContainerCache.getDocumentLibraryNodeId(siteId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package org.alfresco.utility.data;
+
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.alfresco.dataprep.AlfrescoHttpClient;
+import org.alfresco.dataprep.AlfrescoHttpClientFactory;
+import org.alfresco.dataprep.UserService;
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.TasProperties;
+import org.alfresco.utility.exception.DataPreparationException;
+import org.alfresco.utility.model.UserModel;
+import org.alfresco.utility.report.metrics.LatencyHistogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pool of pre-created random users used by {@link DataUser#createRandomTestUser()}.
+ * When <code>dataprep.userPool.size</code> is greater than 0, that many users are created in background as soon as the Spring context
+ * starts. Tests get them without waiting for a HTTP call; when the pool goes below <code>dataprep.userPool.lowWatermark</code> it is
+ * refilled in background. Users given back with {@link #release(UserModel)} have their trashcan emptied and site memberships removed
+ * before being handed out again. When the pool is disabled, no background thread is started.
+ */
+@Service
+public class UserPool implements InitializingBean, DisposableBean
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AlfrescoHttpClientFactory alfrescoHttpClientFactory;
+
+    @Autowired
+    private TasProperties tasProperties;
+
+    private final Queue<UserModel> availableUsers = new ConcurrentLinkedQueue<UserModel>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    private ExecutorService worker;
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tas-user-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOG.info("Pre-creating {} users for the user pool", getSize());
+        refill();
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (worker != null)
+        {
+            worker.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return getSize() > 0;
+    }
+
+    /**
+     * @param onMiss creates the user when the pool is empty, on the calling thread
+     * @return a pre-created user, or the one of <onMiss> if the pool is empty
+     */
+    public UserModel acquire(Supplier<UserModel> onMiss)
+    {
+        long start = System.nanoTime();
+        UserModel user = availableUsers.poll();
+        if (user != null)
+        {
+            depth.decrementAndGet();
+            STEP(String.format("DATAPREP: Using pre-created user %s", user.getUsername()));
+        }
+        else
+        {
+            misses.incrementAndGet();
+            user = onMiss.get();
+        }
+        waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        acquired.incrementAndGet();
+
+        if (depth.get() < tasProperties.getUserPoolLowWatermark())
+        {
+            refill();
+        }
+        return user;
+    }
+
+    /**
+     * Give back a user taken with {@link #acquire()}. The user is cleaned in background and then can be handed out again.
+     * 
+     * @param user
+     */
+    public void release(UserModel user)
+    {
+        if (worker == null || depth.get() >= getSize())
+        {
+            return;
+        }
+        worker.execute(() -> {
+            try
+            {
+                resetUser(user);
+                user.setUserRole(null);
+                availableUsers.offer(user);
+                depth.incrementAndGet();
+            }
+            catch (RuntimeException e)
+            {
+                LOG.warn("Dropping user {} from the pool, it could not be reset: {}", user.getUsername(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return number of users ready to be handed out
+     */
+    public int getDepth()
+    {
+        return depth.get();
+    }
+
+    public long getAcquiredCount()
+    {
+        return acquired.get();
+    }
+
+    /**
+     * @return number of users that had to be created on demand because the pool was empty
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return time tests waited to get a user
+     */
+    public LatencyHistogram getWaitTime()
+    {
+        return waitTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("UserPool[depth=%d, acquired=%d, misses=%d, wait: %s]", getDepth(), getAcquiredCount(), getMissCount(), waitTime);
+    }
+
+    private int getSize()
+    {
+        return tasProperties.getUserPoolSize();
+    }
+
+    private void refill()
+    {
+        if (worker == null || !refilling.compareAndSet(false, true))
+        {
+            return;
+        }
+        worker.execute(() -> {
+            try
+            {
+                while (depth.get() < getSize() && !Thread.currentThread().isInterrupted())
+                {
+                    availableUsers.offer(createUser());
+                    depth.incrementAndGet();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                LOG.error("Could not refill the user pool: {}", e.getMessage());
+            }
+            finally
+            {
+                refilling.set(false);
+            }
+        });
+    }
+
+    /**
+     * Creates a user in background with the admin user, {@link DataUser#createRandomTestUser()} sets its domain when it is handed out
+     */
+    private UserModel createUser()
+    {
+        String userName = RandomData.getRandomName("User");
+        UserModel newUser = new UserModel(userName, TestData.PASSWORD);
+        LOG.info("Create user {} for the user pool", newUser.toString());
+        newUser.setFirstName(String.format("FN-%s", userName));
+        newUser.setLastName(String.format("LN-%s", userName));
+        Boolean created = userService.create(tasProperties.getAdminUser(), tasProperties.getAdminPassword(), userName, TestData.PASSWORD,
+                String.format(TestData.EMAIL, userName), newUser.getFirstName(), newUser.getLastName());
+        if (!created)
+            throw new DataPreparationException(String.format(DataUser.USER_NOT_CREATED, newUser.toString()));
+        return newUser;
+    }
+
+    /**
+     * Empty the trashcan of <user> and remove all its site memberships
+     */
+    private void resetUser(UserModel user)
+    {
+        userService.emptyTrashcan(user.getUsername(), user.getPassword());
+
+        AlfrescoHttpClient client = alfrescoHttpClientFactory.getObject();
+        String sitesUrl = client.getApiVersionUrl() + "people/" + user.getUsername() + "/sites";
+        HttpResponse response = client.execute(tasProperties.getAdminUser(), tasProperties.getAdminPassword(), new HttpGet(sitesUrl + "?maxItems=1000"));
+        if (HttpStatus.SC_OK != response.getStatusLine().getStatusCode())
+        {
+            throw new DataPreparationException(String.format("Could not list sites of user %s", user.getUsername()));
+        }
+        JSONObject list = (JSONObject) client.readStream(response.getEntity()).get("list");
+        for (Object item : (JSONArray) list.get("entries"))
+        {
+            String siteId = ((JSONObject) ((JSONObject) item).get("entry")).get("id").toString();
+            HttpResponse deleted = client.executeAndRelease(tasProperties.getAdminUser(), tasProperties.getAdminPassword(),
+                    new HttpDelete(sitesUrl + "/" + siteId));
+            if (HttpStatus.SC_NO_CONTENT != deleted.getStatusLine().getStatusCode())
+            {
+                throw new DataPreparationException(String.format("Could not remove user %s from site %s", user.getUsername(), siteId));
+            }
+        }
+    }
+}
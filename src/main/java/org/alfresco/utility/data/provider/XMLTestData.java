@@ -3,8 +3,17 @@ package org.alfresco.utility.data.provider;
 import static org.alfresco.utility.Utility.checkObjectIsInitialized;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -23,6 +32,7 @@ import org.alfresco.utility.model.QueryModel;
 import org.alfresco.utility.model.SiteModel;
 import org.alfresco.utility.model.TestModel;
 import org.alfresco.utility.model.UserModel;
+import org.alfresco.utility.report.log.Step;
 import org.slf4j.Logger;
 
 /**
@@ -38,6 +48,7 @@ public class XMLTestData extends XMLCollection
     private List<QueryModel> queries;
     private List<XMLSiteData> sites = new ArrayList<XMLSiteData>();
     private List<XMLUserData> users;
+    private volatile Map<String, XMLUserData> usersById;
 
     @XmlElementWrapper
     @XmlElement(name = "query")
@@ -73,6 +84,15 @@ public class XMLTestData extends XMLCollection
     public void setUsers(List<XMLUserData> users)
     {
         this.users = users;
+        this.usersById = indexById(users);
+    }
+
+    /**
+     * JAXB fills the <users> list after {@link #setUsers(List)}, so the index is built again once the whole file is read
+     */
+    void afterUnmarshal(Unmarshaller unmarshaller, Object parent)
+    {
+        this.usersById = indexById(users);
     }
 
     /**
@@ -104,27 +124,100 @@ public class XMLTestData extends XMLCollection
     {
         for (XMLSiteData site : getSites())
         {
-            if (dataSite.usingAdmin().isSiteCreated(site.getModel()))
+            createSite(site, dataSite, dataContent, dataUser);
+            createFilesStructure(site.getFiles(), site.getModel(), dataContent);
+            createFolderStructure(site.getFolders(), site.getFullLocation(), dataContent);
+        }
+    }
+
+    /**
+     * Same as {@link #createSitesStructure(DataSite, DataContent, DataUser)} but the independent parts of the structure are created in parallel:
+     * all sites at once, then sibling files and folders as soon as their parent exists in repository.
+     * Each worker thread uses its own {@link DataSite}, {@link DataContent} and {@link DataUser} obtained from the suppliers, so pass
+     * something like <code>() -> applicationContext.getBean(DataContent.class)</code>.
+     * 
+     * @param dataSites
+     * @param dataContents
+     * @param dataUsers
+     * @param maxConcurrency maximum number of requests sent in parallel to the server
+     */
+    public void createSitesStructure(Supplier<DataSite> dataSites, Supplier<DataContent> dataContents, Supplier<DataUser> dataUsers, int maxConcurrency)
+    {
+        LOG.info("Creating Sites structure using {} parallel workers", maxConcurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency));
+        StructureWorkers workers = new StructureWorkers(Step.withCurrentTest(executor), dataSites, dataContents, dataUsers);
+        try
+        {
+            List<CompletableFuture<Void>> siteTasks = new ArrayList<CompletableFuture<Void>>();
+            for (XMLSiteData site : getSites())
             {
-                LOG.info("Skipping Site: {}. This site already exists in repository!", site.getFullLocation());
+                siteTasks.add(CompletableFuture
+                        .runAsync(() -> createSite(site, workers.dataSite.get(), workers.dataContent.get(), workers.dataUser.get()), workers.executor)
+                        .thenCompose(created -> createStructureAsync(site.getFiles(), site.getModel(), site.getFolders(), site.getFullLocation(), workers)));
             }
-            else
-            // create site with the user provided in XML file
+            CompletableFuture.allOf(siteTasks.toArray(new CompletableFuture[0])).join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
             {
-                /*
-                 * get the user model of the site
-                 */
-                LOG.info("Creating Site: {}", site.getFullLocation());
-
-                UserModel user = getUserBy(dataContent.getAdminUser(), site.getCreatedBy());
-                dataSite.usingUser(user).createSite(site.getModel());
+                throw (RuntimeException) e.getCause();
             }
-            addMembers(site.getMembers(), site.getModel(), dataUser);
-            createFilesStructure(site.getFiles(), site.getModel(), dataContent);
-            createFolderStructure(site.getFolders(), site.getFullLocation(), dataContent);
+            if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw new DataPreparationException((Exception) e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
         }
     }
 
+    /**
+     * Creates files and folders under <parent> in parallel, each folder scheduling its own children once created
+     */
+    private CompletableFuture<Void> createStructureAsync(List<XMLFileData> files, TestModel parent, List<XMLFolderData> folders, String location,
+            StructureWorkers workers)
+    {
+        List<CompletableFuture<Void>> children = new ArrayList<CompletableFuture<Void>>();
+        for (XMLFileData file : files)
+        {
+            children.add(CompletableFuture.runAsync(() -> createFile(file, parent, workers.dataContent.get()), workers.executor));
+        }
+        for (XMLFolderData folder : folders)
+        {
+            children.add(CompletableFuture.supplyAsync(() -> createFolder(folder, location, workers.dataContent.get()), workers.executor)
+                    .thenCompose(folderInRepo -> createStructureAsync(folder.getFiles(), folderInRepo, folder.getFolders(), folderInRepo.getCmisLocation(),
+                            workers)));
+        }
+        return CompletableFuture.allOf(children.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Creates the site (if it does not exist) and adds its members
+     */
+    private void createSite(XMLSiteData site, DataSite dataSite, DataContent dataContent, DataUser dataUser)
+    {
+        if (dataSite.usingAdmin().isSiteCreated(site.getModel()))
+        {
+            LOG.info("Skipping Site: {}. This site already exists in repository!", site.getFullLocation());
+        }
+        else
+        // create site with the user provided in XML file
+        {
+            /*
+             * get the user model of the site
+             */
+            LOG.info("Creating Site: {}", site.getFullLocation());
+
+            UserModel user = getUserBy(dataContent.getAdminUser(), site.getCreatedBy());
+            dataSite.usingUser(user).createSite(site.getModel());
+        }
+        addMembers(site.getMembers(), site.getModel(), dataUser);
+    }
+
     /**
      * Creates folder structure
      * 
@@ -137,36 +230,45 @@ public class XMLTestData extends XMLCollection
         // create structure in site
         for (XMLFolderData folder : folderStructure)
         {
-            /*
-             * get the user model of the folder
-             */
-            UserModel userFolder = getUserBy(dataContent.getAdminUser(), folder.getCreatedBy());
+            FolderModel folderInRepo = createFolder(folder, location, dataContent);
 
-            FolderModel folderInRepo;
+            createFilesStructure(folder.getFiles(), folderInRepo, dataContent);
+            createFolderStructure(folder.getFolders(), folderInRepo.getCmisLocation(), dataContent);
+        }
+    }
 
-            /*
-             * create a custom folder model
-             */
-            if (folder.isCustomModel())
-            {
-                LOG.info("Creating Custom Folder: {}", folder.getModel().toString());
-                folderInRepo = (FolderModel) dataContent.usingUser(userFolder).setCurrentSpace(location).createCustomContent(folder.getModel(),
-                        folder.getCustomModel().getName(), folder.getCustomModel().getObjectTypeProperties());
-            }
-            else // create a basic folder model using standard CMIS object type id
-            {
+    /**
+     * Creates one folder (without its children) in <location>
+     */
+    private FolderModel createFolder(XMLFolderData folder, String location, DataContent dataContent)
+    {
+        /*
+         * get the user model of the folder
+         */
+        UserModel userFolder = getUserBy(dataContent.getAdminUser(), folder.getCreatedBy());
 
-                // Note that folders may be created in the wrong location if using the v1 REST API as we are not setting LastNodeId.
-                folderInRepo = dataContent.usingUser(userFolder).setCurrentSpace(location).createFolder(folder.getModel(), false);
-            }
+        FolderModel folderInRepo;
 
-            addAspects(folder, folder.getAspects(), dataContent);
-            addComments(folderInRepo.getCmisLocation(), folder.getComments(), dataContent);
-            addTags(folderInRepo.getCmisLocation(), folder.getTags(), dataContent);
+        /*
+         * create a custom folder model
+         */
+        if (folder.isCustomModel())
+        {
+            LOG.info("Creating Custom Folder: {}", folder.getModel().toString());
+            folderInRepo = (FolderModel) dataContent.usingUser(userFolder).setCurrentSpace(location).createCustomContent(folder.getModel(),
+                    folder.getCustomModel().getName(), folder.getCustomModel().getObjectTypeProperties());
+        }
+        else // create a basic folder model using standard CMIS object type id
+        {
 
-            createFilesStructure(folder.getFiles(), folderInRepo, dataContent);
-            createFolderStructure(folder.getFolders(), folderInRepo.getCmisLocation(), dataContent);
+            // Note that folders may be created in the wrong location if using the v1 REST API as we are not setting LastNodeId.
+            folderInRepo = dataContent.usingUser(userFolder).setCurrentSpace(location).createFolder(folder.getModel(), false);
         }
+
+        addAspects(folder, folder.getAspects(), dataContent);
+        addComments(folderInRepo.getCmisLocation(), folder.getComments(), dataContent);
+        addTags(folderInRepo.getCmisLocation(), folder.getTags(), dataContent);
+        return folderInRepo;
     }
 
     /**
@@ -181,40 +283,48 @@ public class XMLTestData extends XMLCollection
         // create files
         for (XMLFileData file : filesStructure)
         {
-            /*
-             * get the user model of the folder
-             */
-            UserModel userFile = getUserBy(dataContent.getAdminUser(), file.getCreatedBy());
-            FileModel contentInRepo = null;
-            if (parentFolder instanceof FolderModel)
+            createFile(file, parentFolder, dataContent);
+        }
+    }
+
+    /**
+     * Creates one file in <parentFolder>, that can be a {@link FolderModel} or a {@link SiteModel}
+     */
+    private void createFile(XMLFileData file, TestModel parentFolder, DataContent dataContent)
+    {
+        /*
+         * get the user model of the folder
+         */
+        UserModel userFile = getUserBy(dataContent.getAdminUser(), file.getCreatedBy());
+        FileModel contentInRepo = null;
+        if (parentFolder instanceof FolderModel)
+        {
+            FolderModel parentFolderInCmis = (FolderModel) parentFolder;
+            if (file.isCustomModel())
             {
-                FolderModel parentFolderInCmis = (FolderModel) parentFolder;
-                if (file.isCustomModel())
-                {
-                    dataContent.usingUser(userFile).usingResource(parentFolderInCmis).setCurrentSpace(parentFolderInCmis.getCmisLocation());
-                    contentInRepo = (FileModel) dataContent.createCustomContent(file.getModel(), file.getCustomModel().getName(),
-                            file.getCustomModel().getObjectTypeProperties());
-                }
-                else
-                {
-                    dataContent.usingUser(userFile).usingResource(parentFolderInCmis).setCurrentSpace(parentFolderInCmis.getCmisLocation());
-                    contentInRepo = dataContent.usingUser(userFile).createContent(file.getModel());
-                }
+                dataContent.usingUser(userFile).usingResource(parentFolderInCmis).setCurrentSpace(parentFolderInCmis.getCmisLocation());
+                contentInRepo = (FileModel) dataContent.createCustomContent(file.getModel(), file.getCustomModel().getName(),
+                        file.getCustomModel().getObjectTypeProperties());
             }
-
-            if (parentFolder instanceof SiteModel)
+            else
             {
-                if (file.isCustomModel())
-                    contentInRepo = (FileModel) dataContent.usingUser(userFile).usingSite((SiteModel) parentFolder).createCustomContent(file.getModel(),
-                            file.getCustomModel().getName(), file.getCustomModel().getObjectTypeProperties());
-                else
-                    contentInRepo = dataContent.usingUser(userFile).usingSite((SiteModel) parentFolder).createContent(file.getModel());
+                dataContent.usingUser(userFile).usingResource(parentFolderInCmis).setCurrentSpace(parentFolderInCmis.getCmisLocation());
+                contentInRepo = dataContent.usingUser(userFile).createContent(file.getModel());
             }
+        }
 
-            addAspects(file, file.getAspects(), dataContent);
-            addComments(contentInRepo.getCmisLocation(), file.getComments(), dataContent);
-            addTags(contentInRepo.getCmisLocation(), file.getTags(), dataContent);
+        if (parentFolder instanceof SiteModel)
+        {
+            if (file.isCustomModel())
+                contentInRepo = (FileModel) dataContent.usingUser(userFile).usingSite((SiteModel) parentFolder).createCustomContent(file.getModel(),
+                        file.getCustomModel().getName(), file.getCustomModel().getObjectTypeProperties());
+            else
+                contentInRepo = dataContent.usingUser(userFile).usingSite((SiteModel) parentFolder).createContent(file.getModel());
         }
+
+        addAspects(file, file.getAspects(), dataContent);
+        addComments(contentInRepo.getCmisLocation(), file.getComments(), dataContent);
+        addTags(contentInRepo.getCmisLocation(), file.getTags(), dataContent);
     }
 
     /**
@@ -284,23 +394,40 @@ public class XMLTestData extends XMLCollection
         /*
          * get the user model of the site
          */
-        UserModel user = null;
-        for (XMLUserData u : users)
-        {
-            if (u.getId().equals(userIdFromXMLFile))
-            {
-                user = u.getModel();
-                break;
-            }
-        }
-
+        XMLUserData user = getUsersById().get(userIdFromXMLFile);
         if (user == null)
         {
             String info = String.format("You want to use user with ID [%s] but this wasn't specified in <users> section in your xml file.", userIdFromXMLFile);
             throw new DataPreparationException(info);
         }
 
-        return user;
+        return user.getModel();
+    }
+
+    /**
+     * @return index of <users> by their id, built by {@link #setUsers(List)} or after unmarshalling
+     */
+    private Map<String, XMLUserData> getUsersById()
+    {
+        if (usersById == null)
+        {
+            usersById = indexById(users);
+        }
+        return usersById;
+    }
+
+    private static Map<String, XMLUserData> indexById(List<XMLUserData> users)
+    {
+        Map<String, XMLUserData> index = new HashMap<String, XMLUserData>();
+        if (users != null)
+        {
+            for (XMLUserData u : users)
+            {
+                // keep the first user with a given id, as the previous lookup did
+                index.putIfAbsent(u.getId(), u);
+            }
+        }
+        return index;
     }
 
     @Override
@@ -429,4 +556,23 @@ public class XMLTestData extends XMLCollection
         checkObjectIsInitialized(dataFound, "It seems you don't have a Test Data with ID " + id + " in your input xml file.");
         return dataFound;
     }
+
+    /**
+     * Executor and per thread data preparation beans used by the parallel structure creation
+     */
+    private static class StructureWorkers
+    {
+        private final Executor executor;
+        private final ThreadLocal<DataSite> dataSite;
+        private final ThreadLocal<DataContent> dataContent;
+        private final ThreadLocal<DataUser> dataUser;
+
+        StructureWorkers(Executor executor, Supplier<DataSite> dataSites, Supplier<DataContent> dataContents, Supplier<DataUser> dataUsers)
+        {
+            this.executor = executor;
+            this.dataSite = ThreadLocal.withInitial(dataSites);
+            this.dataContent = ThreadLocal.withInitial(dataContents);
+            this.dataUser = ThreadLocal.withInitial(dataUsers);
+        }
+    }
 }
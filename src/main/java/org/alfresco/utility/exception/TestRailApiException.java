@@ -0,0 +1,30 @@
+package org.alfresco.utility.exception;
+
+/**
+ * Thrown when TestRail API returns an HTTP status other than 200
+ */
+public class TestRailApiException extends Exception
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public TestRailApiException(int status, String error)
+    {
+        super(String.format("TestRail API returned HTTP %d (%s)", status, error));
+        this.status = status;
+    }
+
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return true if the same request might succeed if is sent again later (i.e. HTTP 429 or 5xx)
+     */
+    public boolean isRetryable()
+    {
+        return status == 429 || status >= 500;
+    }
+}
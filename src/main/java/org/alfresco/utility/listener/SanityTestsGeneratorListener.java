@@ -2,18 +2,15 @@
 package org.alfresco.utility.listener;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.report.TestInventory;
 import org.slf4j.Logger;
 import org.testng.ISuite;
 import org.testng.ISuiteListener;
-import org.testng.ITestNGMethod;
-import org.testng.internal.TestNGMethod;
 
 /**
  * Listener class to generate a XML tests suite file, based on given TestGroups added as parameters. To run this
@@ -36,37 +33,19 @@ public class SanityTestsGeneratorListener implements ISuiteListener
         List<String> projects = resolveTestGroups(suite);
         String xmlFileName = resolveXMLFileName(suite);
 
-        Collection<ITestNGMethod> testsOnRuntime = suite.getAllMethods();
-        LOG.info("Total number of tests: " + testsOnRuntime.size());
-
-        Map<String, Collection<ITestNGMethod>> groupsOfTests = suite.getMethodsByGroups();
-
-        Map<String, List<String>> testClasses = new HashMap<String, List<String>>();
-        Iterator<ITestNGMethod> iterator;
+        TestInventory inventory = TestInventory.of(suite.getAllMethods());
+        LOG.info("Total number of tests: " + inventory.size());
 
+        Map<String, List<String>> testClasses = new LinkedHashMap<String, List<String>>();
         for (String key : projects)
         {
-            if (groupsOfTests.keySet().contains(key))
+            if (inventory.getGroups().contains(key))
             {
-                LOG.info("Total number of tests for TestGroup = '" + key + "' is " + groupsOfTests.get(key).size());
-                iterator = groupsOfTests.get(key).iterator();
-
-                while (iterator.hasNext())
+                LOG.info("Total number of tests for TestGroup = '" + key + "' is " + inventory.query().inGroups(key).count());
+                // add the class name and the method name to the map
+                for (Map.Entry<String, List<String>> testClass : inventory.getMethodsByClass(key).entrySet())
                 {
-                    TestNGMethod test = (TestNGMethod) iterator.next();
-
-                    // add the class name and the method name to the map
-                    String className = test.getConstructorOrMethod().getMethod().getDeclaringClass().getName();
-                    if (testClasses.containsKey(className))
-                    {
-                        testClasses.get(className).add(test.getMethodName());
-                    }
-                    else
-                    {
-                        List<String> methods = new ArrayList<String>();
-                        methods.add(test.getMethodName());
-                        testClasses.put(className, methods);
-                    }
+                    testClasses.computeIfAbsent(testClass.getKey(), name -> new ArrayList<String>()).addAll(testClass.getValue());
                 }
             }
         }
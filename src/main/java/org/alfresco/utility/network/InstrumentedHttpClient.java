@@ -0,0 +1,252 @@
+package org.alfresco.utility.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.alfresco.dataprep.AlfrescoHttpClient;
+import org.alfresco.utility.report.metrics.MetricsRegistry;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * {@link AlfrescoHttpClient} that records every request in a {@link MetricsRegistry}, labelled by HTTP method and endpoint template
+ * (i.e. <code>nodes/{id}/children</code> instead of the actual node id):
+ * <ul>
+ * <li><code>tas_http_request_duration</code>: time until the response status is received</li>
+ * <li><code>tas_http_requests_total</code>: number of requests per status code (<code>error</code> if no response was received)</li>
+ * <li><code>tas_http_request_bytes_total</code> and <code>tas_http_response_bytes_total</code>: bytes sent and received</li>
+ * <li><code>tas_http_retries_total</code>: requests repeated by the same thread right after failing with an error, 429 or 5xx</li>
+ * </ul>
+ * Use {@link InstrumentedHttpClientFactory} to get one.
+ */
+public class InstrumentedHttpClient extends AlfrescoHttpClient
+{
+    private static final Pattern API_PREFIX = Pattern.compile("^.*?/(api/-default-/public/[^/]+/versions/\\d+|service|s)/");
+    private static final Pattern ID_SEGMENT = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}(;[0-9.]+)?|\\d+");
+    private static final Pattern NODE_REF = Pattern.compile("(workspace|archive|versionStore)/[^/]+/[^/]+");
+    private static final Set<String> COLLECTIONS = new HashSet<String>(Arrays.asList("nodes", "people", "sites", "groups", "members", "tasks",
+            "processes", "comments", "tags", "ratings", "favorites", "favorite-sites", "renditions", "versions", "shared-links", "deleted-nodes",
+            "site-membership-requests", "containers", "downloads", "activities", "networks", "preferences", "items", "variables", "candidates",
+            "process-definitions", "deployments", "audit-applications", "audit-entries", "person", "node", "site", "memberships"));
+
+    /** guards against counting twice when one of the execute methods delegates to the other */
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadLocal<String> LAST_FAILED_REQUEST = new ThreadLocal<String>();
+
+    private final MetricsRegistry registry;
+
+    public InstrumentedHttpClient(String scheme, String host, int port, int sharePort, MetricsRegistry registry)
+    {
+        super(scheme, host, port, sharePort);
+        this.registry = registry;
+    }
+
+    @Override
+    public HttpResponse execute(String userName, String password, HttpRequestBase request)
+    {
+        return instrument(request, true, () -> super.execute(userName, password, request));
+    }
+
+    @Override
+    public HttpResponse executeAndRelease(String userName, String password, HttpRequestBase request)
+    {
+        return instrument(request, false, () -> super.executeAndRelease(userName, password, request));
+    }
+
+    /**
+     * @param path request path, with or without the server and query string
+     * @return the path relative to the API root, with ids replaced by <code>{id}</code>. Example:
+     *         <code>/alfresco/api/-default-/public/alfresco/versions/1/nodes/2f1e.../children?maxItems=10</code> gives
+     *         <code>nodes/{id}/children</code>
+     */
+    public static String toEndpointTemplate(String path)
+    {
+        if (path == null || path.isEmpty())
+        {
+            return "/";
+        }
+        String template = URI.create(path.replace(" ", "%20")).getRawPath();
+        template = API_PREFIX.matcher(template).replaceFirst("");
+        if (template.startsWith("/alfresco/"))
+        {
+            template = template.substring("/alfresco/".length());
+        }
+        template = NODE_REF.matcher(template).replaceAll("{id}");
+
+        StringBuilder endpoint = new StringBuilder();
+        String previous = "";
+        for (String segment : template.split("/"))
+        {
+            if (segment.isEmpty())
+            {
+                continue;
+            }
+            boolean isId = (COLLECTIONS.contains(previous) && !COLLECTIONS.contains(segment) && !segment.startsWith("-"))
+                    || ID_SEGMENT.matcher(segment).matches();
+            if (endpoint.length() > 0)
+            {
+                endpoint.append('/');
+            }
+            endpoint.append(isId ? "{id}" : segment);
+            previous = isId ? "" : segment;
+        }
+        return endpoint.length() == 0 ? "/" : endpoint.toString();
+    }
+
+    private HttpResponse instrument(HttpRequestBase request, boolean countResponseStream, RequestCall call)
+    {
+        int[] depth = DEPTH.get();
+        if (depth[0] > 0)
+        {
+            return call.execute();
+        }
+
+        String method = request.getMethod();
+        String endpoint = toEndpointTemplate(request.getURI() == null ? null : request.getURI().toString());
+        String requestKey = method + " " + request.getURI();
+        if (requestKey.equals(LAST_FAILED_REQUEST.get()))
+        {
+            registry.counter("tas_http_retries_total", "method", method, "endpoint", endpoint).increment();
+        }
+        long requestBytes = requestBytesOf(request);
+        if (requestBytes > 0)
+        {
+            registry.counter("tas_http_request_bytes_total", "method", method, "endpoint", endpoint).add(requestBytes);
+        }
+
+        depth[0]++;
+        long start = System.nanoTime();
+        String status = "error";
+        try
+        {
+            HttpResponse response = call.execute();
+            int statusCode = response.getStatusLine().getStatusCode();
+            status = String.valueOf(statusCode);
+            countResponseBytes(response, countResponseStream, registry.counter("tas_http_response_bytes_total", "method", method, "endpoint", endpoint));
+            if (statusCode == 429 || statusCode >= 500)
+            {
+                LAST_FAILED_REQUEST.set(requestKey);
+            }
+            else
+            {
+                LAST_FAILED_REQUEST.remove();
+            }
+            return response;
+        }
+        catch (RuntimeException e)
+        {
+            LAST_FAILED_REQUEST.set(requestKey);
+            throw e;
+        }
+        finally
+        {
+            depth[0]--;
+            registry.histogram("tas_http_request_duration", "method", method, "endpoint", endpoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            registry.counter("tas_http_requests_total", "method", method, "endpoint", endpoint, "status", status).increment();
+        }
+    }
+
+    private long requestBytesOf(HttpRequestBase request)
+    {
+        if (request instanceof HttpEntityEnclosingRequest)
+        {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null)
+            {
+                return Math.max(0, entity.getContentLength());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Use the Content-Length of the response if known, otherwise count the bytes as the caller reads the body
+     */
+    private void countResponseBytes(HttpResponse response, boolean countResponseStream, LongAdder bytes)
+    {
+        Header contentLength = response.getFirstHeader("Content-Length");
+        if (contentLength != null)
+        {
+            try
+            {
+                bytes.add(Long.parseLong(contentLength.getValue().trim()));
+                return;
+            }
+            catch (NumberFormatException e)
+            {
+                // count the stream instead
+            }
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null)
+        {
+            return;
+        }
+        if (entity.getContentLength() >= 0)
+        {
+            bytes.add(entity.getContentLength());
+        }
+        else if (countResponseStream && entity.isStreaming())
+        {
+            response.setEntity(new CountingEntity(entity, bytes));
+        }
+    }
+
+    private interface RequestCall
+    {
+        HttpResponse execute();
+    }
+
+    private static class CountingEntity extends HttpEntityWrapper
+    {
+        private final LongAdder bytes;
+
+        CountingEntity(HttpEntity entity, LongAdder bytes)
+        {
+            super(entity);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            return new FilterInputStream(super.getContent())
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    int b = super.read();
+                    if (b >= 0)
+                    {
+                        bytes.increment();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException
+                {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0)
+                    {
+                        bytes.add(read);
+                    }
+                    return read;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.alfresco.utility.network;
+
+import org.alfresco.dataprep.AlfrescoHttpClient;
+import org.alfresco.dataprep.AlfrescoHttpClientFactory;
+import org.alfresco.utility.TasProperties;
+import org.alfresco.utility.report.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Takes precedence over the dataprep <code>alfrescoHttpClientFactory</code> wherever an {@link AlfrescoHttpClientFactory} is autowired, so
+ * the data services of this library get an {@link InstrumentedHttpClient} from {@link #getObject()} without any change.
+ * The client is built from <code>alfresco.scheme</code>, <code>alfresco.server</code>, <code>alfresco.port</code> and the port of
+ * <code>share.url</code>. Set <code>http.metrics.enabled=false</code> to get a plain {@link AlfrescoHttpClient}.
+ */
+@Service
+@Primary
+public class InstrumentedHttpClientFactory extends AlfrescoHttpClientFactory
+{
+    @Autowired
+    private TasProperties tasProperties;
+
+    @Override
+    public AlfrescoHttpClient getObject()
+    {
+        int sharePort = tasProperties.getShareUrl().getPort() > 0 ? tasProperties.getShareUrl().getPort() : tasProperties.getPort();
+        if (!tasProperties.isHttpMetricsEnabled())
+        {
+            return new AlfrescoHttpClient(tasProperties.getScheme(), tasProperties.getServer(), tasProperties.getPort(), sharePort);
+        }
+        return new InstrumentedHttpClient(tasProperties.getScheme(), tasProperties.getServer(), tasProperties.getPort(), sharePort,
+                MetricsRegistry.getDefault());
+    }
+}
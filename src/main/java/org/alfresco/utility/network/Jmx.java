@@ -1,11 +1,69 @@
 package org.alfresco.utility.network;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
 public interface Jmx
 {
     Object writeProperty(String objectName, String attributeName, Object attributeValue) throws Exception;
 
     Object readProperty(String objectName, String attributeName) throws Exception;
 
+    /**
+     * Read several attributes of several MBeans in one go (one getAttributes call per MBean via JMX, one bulk request via Jolokia).
+     * The default implementation calls {@link #readProperty(String, String)} for each attribute.
+     *
+     * @param attributes attribute names to read, grouped by MBean
+     * @return attribute values grouped by MBean; attributes that cannot be read are left out
+     */
+    default Map<ObjectName, Map<String, Object>> readProperties(Map<ObjectName, List<String>> attributes) throws Exception
+    {
+        Map<ObjectName, Map<String, Object>> values = new LinkedHashMap<ObjectName, Map<String, Object>>();
+        for (Map.Entry<ObjectName, List<String>> object : attributes.entrySet())
+        {
+            Map<String, Object> objectValues = new LinkedHashMap<String, Object>();
+            for (String attributeName : object.getValue())
+            {
+                try
+                {
+                    objectValues.put(attributeName, readProperty(object.getKey().toString(), attributeName));
+                }
+                catch (Exception e)
+                {
+                    // left out, like the attributes a bulk read cannot return
+                }
+            }
+            values.put(object.getKey(), objectValues);
+        }
+        return values;
+    }
+
+    /**
+     * Update several attributes of several MBeans in one go, each MBean is refreshed (stop/start) only once after all its attributes are set.
+     * The default implementation calls {@link #writeProperty(String, String, Object)} for each attribute, so it refreshes the MBean as
+     * often as that method does.
+     *
+     * @param attributes new attribute values, grouped by MBean
+     * @return the values of the updated attributes read back after the refresh, grouped by MBean
+     */
+    default Map<ObjectName, Map<String, Object>> writeProperties(Map<ObjectName, Map<String, Object>> attributes) throws Exception
+    {
+        Map<ObjectName, Map<String, Object>> values = new LinkedHashMap<ObjectName, Map<String, Object>>();
+        for (Map.Entry<ObjectName, Map<String, Object>> object : attributes.entrySet())
+        {
+            Map<String, Object> objectValues = new LinkedHashMap<String, Object>();
+            for (Map.Entry<String, Object> attribute : object.getValue().entrySet())
+            {
+                objectValues.put(attribute.getKey(), writeProperty(object.getKey().toString(), attribute.getKey(), attribute.getValue()));
+            }
+            values.put(object.getKey(), objectValues);
+        }
+        return values;
+    }
+
     public boolean isJMXEnabled();
 
     Object executeJMXMethod(String objectName, String methodName, Object ... pArgs) throws Exception;
@@ -1,11 +1,17 @@
 package org.alfresco.utility.network;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.*;
+import javax.management.remote.JMXConnectionNotification;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
@@ -20,6 +26,10 @@ import org.springframework.stereotype.Service;
 /**
  * Handles JMX calls to server
  * use {@link JmxBuilder} to define this service
+ * -
+ * The same JMX connection is reused for all calls. It is dropped as soon as the connector reports it as failed or closed, or when a call
+ * fails with an {@link IOException}. Reads and attribute updates are then retried once on a new connection; operations (invoke, including
+ * the stop/start refresh) are not, because they may have already run on the server.
  */
 @Service
 public class JmxClient implements Jmx
@@ -30,6 +40,8 @@ public class JmxClient implements Jmx
     static Logger LOG = LogFactory.getLogger();
 
     private JMXConnector jmxConnector;
+    private MBeanServerConnection mBeanServerConnection;
+    private final Map<String, ObjectName> objectNames = new ConcurrentHashMap<String, ObjectName>();
 
     public enum JmxPropertyOperation
     {
@@ -49,19 +61,46 @@ public class JmxClient implements Jmx
     @Override
     public Object readProperty(String objectName, String attributeName) throws Exception
     {
-        JMXConnector connector = createJmxConnection();
-        MBeanServerConnection mBSC = connector.getMBeanServerConnection();
-        ObjectName objectJmx = new ObjectName(objectName);
+        ObjectName objectJmx = getObjectName(objectName);
 
-        Object value = mBSC.getAttribute(objectJmx, attributeName);
-        LOG.info("JMX Object [{}] with attribute [{}] has value [{}]", objectJmx, attributeName, value.toString());
+        Object value = execute(mBSC -> mBSC.getAttribute(objectJmx, attributeName));
+        LOG.info("JMX Object [{}] with attribute [{}] has value [{}]", objectJmx, attributeName, value);
         return value;
     }
 
+    /**
+     * Get the values of several server properties with one getAttributes call per object
+     * Example:
+     * readProperties(Collections.singletonMap(new ObjectName("Alfresco:Name=FileServerConfig"), Arrays.asList("CIFSServerEnabled", "FTPServerEnabled")))
+     * 
+     * @param attributes
+     * @return
+     */
+    @Override
+    public Map<ObjectName, Map<String, Object>> readProperties(Map<ObjectName, List<String>> attributes) throws Exception
+    {
+        return execute(mBSC -> {
+            Map<ObjectName, Map<String, Object>> values = new LinkedHashMap<ObjectName, Map<String, Object>>();
+            for (Map.Entry<ObjectName, List<String>> entry : attributes.entrySet())
+            {
+                values.put(entry.getKey(), getAttributes(mBSC, entry.getKey(), entry.getValue()));
+            }
+            LOG.info("JMX Objects {} have values {}", attributes.keySet(), values);
+            return values;
+        });
+    }
+
     public void closeConnection() throws IOException
     {
-        if (jmxConnector != null)
-            jmxConnector.close();
+        JMXConnector connector;
+        synchronized (this)
+        {
+            connector = jmxConnector;
+            jmxConnector = null;
+            mBeanServerConnection = null;
+        }
+        if (connector != null)
+            connector.close();
     }
 
     /**
@@ -77,16 +116,42 @@ public class JmxClient implements Jmx
     @Override
     public Object writeProperty(String objectName, String attributeName, Object attributeValue) throws Exception
     {
-        JMXConnector connector = createJmxConnection();
-        MBeanServerConnection mBSC = connector.getMBeanServerConnection();
-        ObjectName objectJmx = new ObjectName(objectName);
+        ObjectName objectJmx = getObjectName(objectName);
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(attributeName, attributeValue);
 
-        mBSC.setAttribute(ObjectName.getInstance(objectName), new Attribute(attributeName, attributeValue));
-        LOG.info("Updating object [{}.{}] with value [{}] via JmxClient", objectName, attributeName, attributeValue);
-        
-        refreshServerProperty(objectName, JmxPropertyOperation.stop);
-        refreshServerProperty(objectName, JmxPropertyOperation.start);
-        return mBSC.getAttribute(objectJmx, attributeName);
+        Map<ObjectName, Map<String, Object>> values = new HashMap<ObjectName, Map<String, Object>>();
+        values.put(objectJmx, attributes);
+        return writeProperties(values).get(objectJmx).get(attributeName);
+    }
+
+    /**
+     * Set several property values on server side, each object is refreshed (stop/start) only once after all its attributes are set.
+     * 
+     * @param attributes
+     * @return the values read back after the refresh
+     */
+    @Override
+    public Map<ObjectName, Map<String, Object>> writeProperties(Map<ObjectName, Map<String, Object>> attributes) throws Exception
+    {
+        Map<ObjectName, Map<String, Object>> values = new LinkedHashMap<ObjectName, Map<String, Object>>();
+        for (Map.Entry<ObjectName, Map<String, Object>> entry : attributes.entrySet())
+        {
+            ObjectName objectJmx = entry.getKey();
+            execute(mBSC -> {
+                setAttributes(mBSC, objectJmx, entry.getValue());
+                return null;
+            });
+            LOG.info("Updating object [{}] with values {} via JmxClient", objectJmx, entry.getValue());
+
+            executeOnce(mBSC -> {
+                refreshServerProperty(mBSC, objectJmx, JmxPropertyOperation.stop);
+                refreshServerProperty(mBSC, objectJmx, JmxPropertyOperation.start);
+                return null;
+            });
+            values.put(objectJmx, execute(mBSC -> getAttributes(mBSC, objectJmx, new ArrayList<String>(entry.getValue().keySet()))));
+        }
+        return values;
     }
 
     /**
@@ -95,10 +160,8 @@ public class JmxClient implements Jmx
      */
     public String getStringNameFromJmxObject(String objectName) throws Exception
     {
-        JMXConnector connector = getJmxConnection();
-        MBeanServerConnection mBSC = connector.getMBeanServerConnection();
         ObjectName wasObjectName = new ObjectName("*" + objectName + "*,cell=*,node=*,process=*");
-        Set<?> set = mBSC.queryMBeans(wasObjectName, null);
+        Set<ObjectInstance> set = execute(mBSC -> mBSC.queryMBeans(wasObjectName, null));
         ObjectInstance oi = (ObjectInstance) set.toArray()[0];
         ObjectName oName = oi.getObjectName();
 
@@ -106,15 +169,20 @@ public class JmxClient implements Jmx
     }
 
     /**
-     * Get JMX connection
+     * Get the JMX connection, a new one is created if there is none yet or if the previous one was closed or has failed
      * 
      * @return
      * @throws IOException
      * @throws JmxException
      */
-    private JMXConnector getJmxConnection() throws IOException, JmxException
+    private synchronized MBeanServerConnection getMBeanServerConnection() throws IOException, JmxException
     {
-        return createJmxConnection();
+        if (mBeanServerConnection != null)
+            return mBeanServerConnection;
+
+        jmxConnector = createJmxConnection();
+        mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+        return mBeanServerConnection;
     }
 
     /**
@@ -126,18 +194,129 @@ public class JmxClient implements Jmx
      */
     private JMXConnector createJmxConnection() throws JmxException, IOException
     {
-        if (jmxConnector == null)
+        JMXServiceURL jmxUrl = new JMXServiceURL(properties.getJmxUrl());
+        Map<String, String[]> env = new HashMap<>();
+        env.put(JMXConnector.CREDENTIALS, new String[] { properties.getJmxUser(), properties.getJmxPassword() });
+
+        LOG.info("Create JMX Connection using [{}] with username [{}] and password [{}] ", properties.getJmxUrl(), properties.getJmxUser(),
+                properties.getJmxPassword());
+        JMXConnector connector = JMXConnectorFactory.connect(jmxUrl, env);
+        connector.addConnectionNotificationListener((notification, handback) -> {
+            if (JMXConnectionNotification.FAILED.equals(notification.getType()) || JMXConnectionNotification.CLOSED.equals(notification.getType()))
+            {
+                synchronized (this)
+                {
+                    if (jmxConnector == handback)
+                    {
+                        LOG.warn("JMX connection [{}] is {}", ((JMXConnectionNotification) notification).getConnectionId(), notification.getType());
+                        jmxConnector = null;
+                        mBeanServerConnection = null;
+                    }
+                }
+            }
+        }, null, connector);
+        return connector;
+    }
+
+    /**
+     * Close <connection> if it is still the current one, so that the next call opens a new connection
+     */
+    private synchronized void dropConnection(MBeanServerConnection connection)
+    {
+        if (connection != mBeanServerConnection)
+            return;
+
+        try
         {
-            JMXServiceURL jmxUrl = new JMXServiceURL(properties.getJmxUrl());
-            Map<String, String[]> env = new HashMap<>();
-            env.put(JMXConnector.CREDENTIALS, new String[] { properties.getJmxUser(), properties.getJmxPassword() });
+            jmxConnector.close();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Cannot close JMX connection: {}", e.getMessage());
+        }
+        jmxConnector = null;
+        mBeanServerConnection = null;
+    }
 
-            LOG.info("Create JMX Connection using [{}] with username [{}] and password [{}] ", properties.getJmxUrl(), properties.getJmxUser(),
-                    properties.getJmxPassword());
-            jmxConnector = JMXConnectorFactory.connect(jmxUrl, env);
+    /**
+     * Run <operation> on the current JMX connection, if the connection is lost the operation is retried once on a new connection.
+     * Only use it for reads and attribute updates, that can safely run twice.
+     */
+    private <T> T execute(JmxOperation<T> operation) throws Exception
+    {
+        MBeanServerConnection mBSC = getMBeanServerConnection();
+        try
+        {
+            return operation.execute(mBSC);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("JMX call failed, reconnecting: {}", e.getMessage());
+            dropConnection(mBSC);
+            return operation.execute(getMBeanServerConnection());
+        }
+    }
+
+    /**
+     * Run <operation> on the current JMX connection without retrying it: an {@link IOException} while reading the reply does not mean the
+     * operation did not run on the server. The connection is dropped, so the next call opens a new one.
+     */
+    private <T> T executeOnce(JmxOperation<T> operation) throws Exception
+    {
+        MBeanServerConnection mBSC = getMBeanServerConnection();
+        try
+        {
+            return operation.execute(mBSC);
+        }
+        catch (IOException e)
+        {
+            dropConnection(mBSC);
+            throw e;
+        }
+    }
+
+    private ObjectName getObjectName(String objectName) throws MalformedObjectNameException
+    {
+        ObjectName objectJmx = objectNames.get(objectName);
+        if (objectJmx == null)
+        {
+            objectJmx = ObjectName.getInstance(objectName);
+            objectNames.put(objectName, objectJmx);
+        }
+        return objectJmx;
+    }
+
+    private Map<String, Object> getAttributes(MBeanServerConnection mBSC, ObjectName objectJmx, List<String> attributeNames) throws Exception
+    {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (Attribute attribute : mBSC.getAttributes(objectJmx, attributeNames.toArray(new String[attributeNames.size()])).asList())
+        {
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        return values;
+    }
+
+    private void setAttributes(MBeanServerConnection mBSC, ObjectName objectJmx, Map<String, Object> attributes) throws Exception
+    {
+        AttributeList attributeList = new AttributeList();
+        for (Map.Entry<String, Object> attribute : attributes.entrySet())
+        {
+            attributeList.add(new Attribute(attribute.getKey(), attribute.getValue()));
+        }
+
+        Set<String> updated = new HashSet<String>();
+        for (Attribute attribute : mBSC.setAttributes(objectJmx, attributeList).asList())
+        {
+            updated.add(attribute.getName());
+        }
+        for (Attribute attribute : attributeList.asList())
+        {
+            if (!updated.contains(attribute.getName()))
+            {
+                // setAttributes silently skips the attributes it cannot set, setAttribute throws the actual error
+                mBSC.setAttribute(objectJmx, attribute);
+            }
         }
-        
-        return jmxConnector;
     }
 
     /**
@@ -152,19 +331,27 @@ public class JmxClient implements Jmx
      */
     public void refreshServerProperty(String objectName, JmxPropertyOperation operation) throws Exception
     {
-        JMXConnector connector = createJmxConnection();
-        MBeanServerConnection mBSC = connector.getMBeanServerConnection();
-        ObjectName objectJmx = new ObjectName(objectName);
+        ObjectName objectJmx = getObjectName(objectName);
+        executeOnce(mBSC -> {
+            refreshServerProperty(mBSC, objectJmx, operation);
+            return null;
+        });
+    }
 
+    private void refreshServerProperty(MBeanServerConnection mBSC, ObjectName objectJmx, JmxPropertyOperation operation) throws IOException
+    {
         try
         {
             mBSC.invoke(objectJmx, operation.toString(), new Object[] {}, new String[] {});
         }
+        catch (IOException e)
+        {
+            throw e;
+        }
         catch(Exception e)
         {
             LOG.error(String.format("Object [%s] does not have operation [%s]", objectJmx, operation.toString()));
         }
-
     }
 
     @Override
@@ -173,7 +360,7 @@ public class JmxClient implements Jmx
         boolean isAlive = false;
         try
         {
-            createJmxConnection();
+            execute(mBSC -> mBSC.getMBeanCount());
             isAlive = true;
         }
         catch (Exception e)
@@ -197,12 +384,10 @@ public class JmxClient implements Jmx
     @Override
     public Object executeJMXMethod(String objectName, String methodName, Object ... pArgs) throws Exception
     {
-        JMXConnector connector = getJmxConnection();
-        MBeanServerConnection mBSC = connector.getMBeanServerConnection();
-        ObjectName objectJmx = new ObjectName(objectName);
+        ObjectName objectJmx = getObjectName(objectName);
 
         LOG.info("Executing methodName {} on objectName {}  via JmxClient", methodName, objectName);
-        return mBSC.invoke(objectJmx, methodName, pArgs, new String[]{});
+        return executeOnce(mBSC -> mBSC.invoke(objectJmx, methodName, pArgs, new String[]{}));
     }
 
     /**
@@ -217,12 +402,15 @@ public class JmxClient implements Jmx
      */
     public Object executeJMXMethod(String objectName, String methodName, String signature[], Object ... pArgs) throws Exception
     {
-        JMXConnector connector = getJmxConnection();
-        MBeanServerConnection mBSC = connector.getMBeanServerConnection();
-        ObjectName objectJmx = new ObjectName(objectName);
+        ObjectName objectJmx = getObjectName(objectName);
 
         LOG.info("Executing methodName {} with signature {} on objectName {}  via JmxClient", methodName, signature, objectName);
-        return mBSC.invoke(objectJmx, methodName, pArgs, signature);
+        return executeOnce(mBSC -> mBSC.invoke(objectJmx, methodName, pArgs, signature));
+    }
+
+    private interface JmxOperation<T>
+    {
+        T execute(MBeanServerConnection mBSC) throws Exception;
     }
 
 }
\ No newline at end of file
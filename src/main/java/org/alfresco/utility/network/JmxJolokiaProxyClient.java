@@ -1,6 +1,10 @@
 package org.alfresco.utility.network;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanException;
@@ -11,15 +15,18 @@ import javax.management.ReflectionException;
 import org.alfresco.utility.LogFactory;
 import org.alfresco.utility.TasProperties;
 import org.alfresco.utility.exception.EnvironmentConfigurationException;
+import org.alfresco.utility.exception.JmxException;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
 import org.jolokia.client.J4pClient;
+import org.jolokia.client.exception.J4pBulkRemoteException;
 import org.jolokia.client.exception.J4pRemoteException;
 import org.jolokia.client.request.J4pExecRequest;
 import org.jolokia.client.request.J4pExecResponse;
+import org.jolokia.client.request.J4pMBeanRequest;
 import org.jolokia.client.request.J4pReadRequest;
 import org.jolokia.client.request.J4pReadResponse;
 import org.jolokia.client.request.J4pRequest;
@@ -54,15 +61,125 @@ public class JmxJolokiaProxyClient implements Jmx
         return response.getValue().toString();
     }
 
+    /**
+     * Read all <attributes> with a single Jolokia bulk request
+     */
+    @Override
+    public Map<ObjectName, Map<String, Object>> readProperties(Map<ObjectName, List<String>> attributes) throws Exception
+    {
+        List<J4pRequest> requests = new ArrayList<J4pRequest>();
+        for (Map.Entry<ObjectName, List<String>> entry : attributes.entrySet())
+        {
+            requests.add(new J4pReadRequest(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()])));
+        }
+
+        List<?> results = executeBulkRequest(requests);
+        Map<ObjectName, Map<String, Object>> values = new LinkedHashMap<ObjectName, Map<String, Object>>();
+        for (int i = 0; i < results.size(); i++)
+        {
+            if (results.get(i) instanceof J4pReadResponse)
+            {
+                J4pReadResponse response = (J4pReadResponse) results.get(i);
+                values.put(response.getRequest().getObjectName(), getValues(response));
+            }
+            else
+            {
+                LOG.error("Cannot read JMX Object [{}] via JmxJolokia: {}", ((J4pReadRequest) requests.get(i)).getObjectName(),
+                        ((Exception) results.get(i)).getMessage());
+            }
+        }
+        LOG.info("JMX Objects {} have values {}", attributes.keySet(), values);
+        return values;
+    }
+
     @Override
     public Object writeProperty(String objectName, String attributeName, Object attributeValue) throws Exception
     {
-        J4pWriteRequest requestW = new J4pWriteRequest(objectName, attributeName, attributeValue, "");
-        J4pResponse<J4pWriteRequest> response = getClient().execute(requestW);
+        ObjectName objectJmx = new ObjectName(objectName);
+        List<J4pRequest> requests = new ArrayList<J4pRequest>();
+        requests.add(new J4pWriteRequest(objectJmx, attributeName, attributeValue));
+        addRefreshRequests(requests, objectJmx);
+
+        List<?> results = executeBulkRequest(requests);
         LOG.info("Updating objectName {}.{} with value {} via JmxJolokia", objectName, attributeName, attributeValue);
-        refreshServerProperty(objectName, JmxClient.JmxPropertyOperation.stop);
-        refreshServerProperty(objectName, JmxClient.JmxPropertyOperation.start);
-        return response.getValue();
+        return checkWriteResults(requests, results).get(0).getValue();
+    }
+
+    /**
+     * Update all <attributes>, refresh each object (stop/start) and read the new values back, all with a single Jolokia bulk request
+     */
+    @Override
+    public Map<ObjectName, Map<String, Object>> writeProperties(Map<ObjectName, Map<String, Object>> attributes) throws Exception
+    {
+        List<J4pRequest> requests = new ArrayList<J4pRequest>();
+        for (Map.Entry<ObjectName, Map<String, Object>> entry : attributes.entrySet())
+        {
+            for (Map.Entry<String, Object> attribute : entry.getValue().entrySet())
+            {
+                requests.add(new J4pWriteRequest(entry.getKey(), attribute.getKey(), attribute.getValue()));
+            }
+            addRefreshRequests(requests, entry.getKey());
+            requests.add(new J4pReadRequest(entry.getKey(), entry.getValue().keySet().toArray(new String[entry.getValue().size()])));
+        }
+
+        List<?> results = executeBulkRequest(requests);
+        checkWriteResults(requests, results);
+        LOG.info("Updating objects {} via JmxJolokia", attributes);
+
+        Map<ObjectName, Map<String, Object>> values = new LinkedHashMap<ObjectName, Map<String, Object>>();
+        for (Object result : results)
+        {
+            if (result instanceof J4pReadResponse)
+            {
+                J4pReadResponse response = (J4pReadResponse) result;
+                values.put(response.getRequest().getObjectName(), getValues(response));
+            }
+        }
+        return values;
+    }
+
+    private void addRefreshRequests(List<J4pRequest> requests, ObjectName objectJmx)
+    {
+        requests.add(new J4pExecRequest(objectJmx, JmxClient.JmxPropertyOperation.stop.toString()));
+        requests.add(new J4pExecRequest(objectJmx, JmxClient.JmxPropertyOperation.start.toString()));
+    }
+
+    /**
+     * Objects without stop/start operations are accepted (as in {@link JmxClient}), but a failed write is an error
+     *
+     * @return the responses of the write requests
+     */
+    @SuppressWarnings("unchecked")
+    private List<J4pResponse<J4pWriteRequest>> checkWriteResults(List<J4pRequest> requests, List<?> results)
+    {
+        List<J4pResponse<J4pWriteRequest>> writeResponses = new ArrayList<J4pResponse<J4pWriteRequest>>();
+        for (int i = 0; i < results.size(); i++)
+        {
+            J4pRequest request = requests.get(i);
+            if (results.get(i) instanceof J4pRemoteException)
+            {
+                String error = ((J4pRemoteException) results.get(i)).getMessage();
+                if (request instanceof J4pWriteRequest)
+                    throw new JmxException(String.format("Cannot update attribute [%s] of [%s]: %s", ((J4pWriteRequest) request).getAttribute(),
+                            ((J4pWriteRequest) request).getObjectName(), error));
+                LOG.error("JMX request [{}] on Object [{}] failed: {}", request.getType(), ((J4pMBeanRequest) request).getObjectName(), error);
+            }
+            else if (request instanceof J4pWriteRequest)
+            {
+                writeResponses.add((J4pResponse<J4pWriteRequest>) results.get(i));
+            }
+        }
+        return writeResponses;
+    }
+
+    private Map<String, Object> getValues(J4pReadResponse response)
+    {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (String attribute : response.getRequest().getAttributes())
+        {
+            values.put(attribute, response.getValue(attribute));
+        }
+        return values;
     }
 
     /**
@@ -97,6 +214,27 @@ public class JmxJolokiaProxyClient implements Jmx
         return response;
     }
 
+    /**
+     * Send <requests> as one Jolokia bulk request
+     *
+     * @return one result per request, in the same order: either a {@link J4pResponse} or the {@link J4pRemoteException} of a failed request
+     */
+    private List<?> executeBulkRequest(List<J4pRequest> requests) throws Exception
+    {
+        try
+        {
+            return getClient().execute(requests);
+        }
+        catch (J4pBulkRemoteException e)
+        {
+            return e.getResults();
+        }
+        catch (J4pRemoteException e)
+        {
+            throw new EnvironmentConfigurationException("It seems Jolokia agent was not installed on test environment or missconfigured. Error thrown: " + e.getMessage());
+        }
+    }
+
     public J4pClient getClient()
     {
         if (client == null)
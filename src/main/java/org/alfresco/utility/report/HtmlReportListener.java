@@ -1,24 +1,36 @@
 package org.alfresco.utility.report;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.alfresco.utility.LogFactory;
 import org.alfresco.utility.Utility;
 import org.alfresco.utility.exception.TestConfigurationException;
 import org.alfresco.utility.report.Bug.Status;
+import org.alfresco.utility.report.metrics.PerformanceBaseline;
+import org.alfresco.utility.report.metrics.Regression;
 import org.alfresco.utility.web.AbstractWebTest;
 import org.slf4j.Logger;
 import org.testng.IReporter;
@@ -48,6 +60,14 @@ import com.relevantcodes.extentreports.LogStatus;
  *                  <listeners>
  *                  <listener class-name="org.alfresco.tester.report.ReportListenerAdapter"></listener>
  *                  </listeners>
+ * Test nodes of each suite are built in parallel on a few threads and added to the report ordered by start time.
+ * Log files are read in chunks and, depending on <code>reports.logs.mode</code>, are inlined whole (<code>inline</code>, default),
+ * truncated to the last <code>reports.logs.tailSizeMB</code> MB (<code>tail</code>) or only linked (<code>link</code>).
+ * ExtentReports takes the runner output as a single String, so <code>inline</code> keeps the whole log in memory: use
+ * <code>tail</code> or <code>link</code> for large logs.
+ * Passed tests and REST endpoints that are slower than their {@link PerformanceBaseline} are reported as warnings in the
+ * PERFORMANCE-REGRESSION category.
+ * 
  * @author Paul Brodner
  */
 public class HtmlReportListener implements IReporter
@@ -56,14 +76,23 @@ public class HtmlReportListener implements IReporter
     static Properties log4jProperties;
     static Properties defaultProperties;
     private ExtentReports extent = null;
+    private ExecutorService nodeBuilder;
+
+    public static final String LOGS_INLINE = "inline";
+    public static final String LOGS_TAIL = "tail";
+    public static final String LOGS_LINK = "link";
+
+    private static final int LOG_CHUNK_SIZE = 64 * 1024;
+    private static final String PERFORMANCE_REGRESSION = "PERFORMANCE-REGRESSION";
+
+    private static final Map<Method, Optional<Bug>> bugAnnotations = new ConcurrentHashMap<Method, Optional<Bug>>();
 
     @Override
     public void generateReport(List<XmlSuite> xmlSuites, List<ISuite> suites, String outputDirectory)
     {
         try
         {
-            log4jProperties = Utility.getProperties(HtmlReportListener.class, "log4j.properties");
-            defaultProperties = Utility.getProperties(HtmlReportListener.class, Utility.getEnvironmentPropertyFile());
+            loadProperties();
             extent = ReportManager.getReporter();
         }
         catch (TestConfigurationException | URISyntaxException e1)
@@ -72,29 +101,41 @@ public class HtmlReportListener implements IReporter
             return;
         }
 
-        for (ISuite suite : suites)
+        AtomicInteger threadCount = new AtomicInteger();
+        nodeBuilder = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "tas-html-report-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
         {
-            Map<String, ISuiteResult> result = suite.getResults();
-
-            for (ISuiteResult r : result.values())
+            for (ISuite suite : suites)
             {
-                ITestContext context = r.getTestContext();
-                // buildTestNodes(context.getSkippedConfigurations(), LogStatus.FATAL);
-                buildTestNodes(context.getFailedConfigurations(), LogStatus.FATAL);
-                buildTestNodes(context.getPassedTests(), LogStatus.PASS);
-                buildTestNodes(context.getFailedTests(), LogStatus.FAIL);
-                buildTestNodes(context.getSkippedTests(), LogStatus.SKIP);
+                Map<String, ISuiteResult> result = suite.getResults();
+
+                for (ISuiteResult r : result.values())
+                {
+                    ITestContext context = r.getTestContext();
+                    // buildTestNodes(context.getSkippedConfigurations(), LogStatus.FATAL);
+                    buildTestNodes(context.getFailedConfigurations(), LogStatus.FATAL);
+                    buildTestNodes(context.getPassedTests(), LogStatus.PASS);
+                    buildTestNodes(context.getFailedTests(), LogStatus.FAIL);
+                    buildTestNodes(context.getSkippedTests(), LogStatus.SKIP);
+                }
             }
         }
+        finally
+        {
+            nodeBuilder.shutdownNow();
+        }
+        buildEndpointRegressionsNode();
 
-        if (defaultProperties.getProperty("testManagement.enabled").equals("true"))
+        if ("true".equals(defaultProperties.getProperty("testManagement.enabled")))
         {
-            String contentTestRail = getLogsContent(getLogsLocation("log4j.appender.testrailLog.File", log4jProperties));
-            extent.setTestRunnerOutput(String.format("<pre>%s </pre>", contentTestRail));
+            extent.setTestRunnerOutput(getLogsContent(getLogsLocation("log4j.appender.testrailLog.File", log4jProperties)));
         }
 
-        String content = getLogsContent(getLogsLocation("log4j.appender.file.File", log4jProperties));
-        extent.setTestRunnerOutput(String.format("<pre>%s </pre>", content));
+        extent.setTestRunnerOutput(getLogsContent(getLogsLocation("log4j.appender.file.File", log4jProperties)));
 
         try
         {
@@ -112,108 +153,194 @@ public class HtmlReportListener implements IReporter
         return String.format("<a href=\"https://alfresco.atlassian.net/browse/%s\" target=\"_blank\">%s</a>", issueID, issueID);
     }
 
+    /**
+     * Properties are read once per JVM, they do not change between suites
+     */
+    private static synchronized void loadProperties() throws TestConfigurationException
+    {
+        if (defaultProperties == null)
+        {
+            log4jProperties = Utility.getProperties(HtmlReportListener.class, "log4j.properties");
+            defaultProperties = Utility.getProperties(HtmlReportListener.class, Utility.getEnvironmentPropertyFile());
+        }
+    }
+
+    private static Bug getBugAnnotation(ITestResult result)
+    {
+        return bugAnnotations.computeIfAbsent(result.getMethod().getConstructorOrMethod().getMethod(), method -> Optional.ofNullable(method.getAnnotation(Bug.class)))
+                .orElse(null);
+    }
+
     private void buildTestNodes(IResultMap tests, LogStatus status)
     {
         if (extent == null)
             return;
 
-        ExtentTest test;
-
         if (tests.size() > 0)
         {
-            for (ITestResult result : tests.getAllResults())
+            List<ITestResult> results = new ArrayList<ITestResult>(tests.getAllResults());
+            results.sort(Comparator.comparingLong(ITestResult::getStartMillis));
+            List<Future<ExtentTest>> nodes = new ArrayList<Future<ExtentTest>>();
+            for (ITestResult result : results)
+            {
+                nodes.add(nodeBuilder.submit(() -> buildTestNode(result, status)));
+            }
+            // nodes are added in the order of the results, whichever thread finished first
+            for (int i = 0; i < nodes.size(); i++)
             {
-                /**
-                 * BUG section, taking in consideration TestNG tests that are marked with @Bug annotation
-                 */
-                Bug bugAnnotated = result.getMethod().getConstructorOrMethod().getMethod().getAnnotation(Bug.class);
-                String testName = "";
-                Object[] objs = result.getParameters();
-                if (objs.length > 0)
+                try
                 {
-                    // test has @DataProvider
-                    testName = objs[0].toString();
+                    ExtentTest test = nodes.get(i).get();
+                    synchronized (extent)
+                    {
+                        extent.endTest(test);
+                    }
                 }
-                else
+                catch (ExecutionException e)
                 {
-                    testName = result.getMethod().getMethodName();
+                    LOG.error("Cannot add test {} to the HTML report: {}", results.get(i).getName(), e.getCause().getMessage());
                 }
-
-                if (bugAnnotated != null)
+                catch (InterruptedException e)
                 {
-                    test = extent.startTest(
-                            String.format("%s # %s (BUG: %s)", result.getInstance().getClass().getSimpleName(), testName, trackerUrl(bugAnnotated.id())));
-                    if (bugAnnotated.status().equals(Status.OPENED))
-                    {
-                        test.assignCategory("BUGS");
-                        if (bugAnnotated.description().isEmpty() && status != LogStatus.SKIP)
-                        {
-                            test.log(status, String.format("This test is failing due to this issue %s", trackerUrl(bugAnnotated.id())));
-                        }
-                        else if (!bugAnnotated.description().isEmpty() && status != LogStatus.SKIP)
-                        {
-                            test.log(status, String.format("This test is failing due to this issue %s. <b>Description:</b> %s", trackerUrl(bugAnnotated.id()),
-                                    bugAnnotated.description()));
-                        }
-                        if (status == LogStatus.PASS)
-                        {
-                            test.log(status,
-                                    String.format(
-                                            "Currently, test with opened bug %s is passed. Please check if this issue is passed and update the @Bug status to FIXED.",
-                                            trackerUrl(bugAnnotated.id())));
-                        }
-                    }
-                    else
-                    {
-                        if (status == LogStatus.PASS)
-                        {
-                            test.assignCategory("FIXED-BUGS");
-                            test.log(status,
-                                    String.format("Currently, test passed. But it failed in a regression due to this issue %s", trackerUrl(bugAnnotated.id())));
-                        }
-                    }
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the node of <result>, not yet added to the report
+     */
+    private ExtentTest buildTestNode(ITestResult result, LogStatus status)
+    {
+        ExtentTest test;
 
+        /**
+         * BUG section, taking in consideration TestNG tests that are marked with @Bug annotation
+         */
+        Bug bugAnnotated = getBugAnnotation(result);
+        String testName = "";
+        Object[] objs = result.getParameters();
+        if (objs.length > 0)
+        {
+            // test has @DataProvider
+            testName = objs[0].toString();
+        }
+        else
+        {
+            testName = result.getMethod().getMethodName();
+        }
+
+        if (bugAnnotated != null)
+        {
+            test = startTest(
+                    String.format("%s # %s (BUG: %s)", result.getInstance().getClass().getSimpleName(), testName, trackerUrl(bugAnnotated.id())));
+            if (bugAnnotated.status().equals(Status.OPENED))
+            {
+                test.assignCategory("BUGS");
+                if (bugAnnotated.description().isEmpty() && status != LogStatus.SKIP)
+                {
+                    test.log(status, String.format("This test is failing due to this issue %s", trackerUrl(bugAnnotated.id())));
                 }
-                else
+                else if (!bugAnnotated.description().isEmpty() && status != LogStatus.SKIP)
                 {
-                    test = extent.startTest(String.format("%s # %s", result.getTestClass().getRealClass().getSimpleName(), testName));
-                    test.assignCategory("WITHOUT-BUGS");
+                    test.log(status, String.format("This test is failing due to this issue %s. <b>Description:</b> %s", trackerUrl(bugAnnotated.id()),
+                            bugAnnotated.description()));
                 }
-
-                if (status == LogStatus.SKIP && result.getTestContext().getFailedConfigurations().size() > 0)
+                if (status == LogStatus.PASS)
+                {
+                    test.log(status,
+                            String.format(
+                                    "Currently, test with opened bug %s is passed. Please check if this issue is passed and update the @Bug status to FIXED.",
+                                    trackerUrl(bugAnnotated.id())));
+                }
+            }
+            else
+            {
+                if (status == LogStatus.PASS)
                 {
+                    test.assignCategory("FIXED-BUGS");
                     test.log(status,
-                            "Test is skipped due to a configuration test method like a @BeforeClass method. Filter the tests by 'FATAL' error to analyze the root cause.");
+                            String.format("Currently, test passed. But it failed in a regression due to this issue %s", trackerUrl(bugAnnotated.id())));
                 }
+            }
+
+        }
+        else
+        {
+            test = startTest(String.format("%s # %s", result.getTestClass().getRealClass().getSimpleName(), testName));
+            test.assignCategory("WITHOUT-BUGS");
+        }
 
-                test.setStartedTime(getTime(result.getStartMillis()));
-                test.setEndedTime(getTime(result.getEndMillis()));
+        if (status == LogStatus.SKIP && result.getTestContext().getFailedConfigurations().size() > 0)
+        {
+            test.log(status,
+                    "Test is skipped due to a configuration test method like a @BeforeClass method. Filter the tests by 'FATAL' error to analyze the root cause.");
+        }
 
-                for (String group : result.getMethod().getGroups())
-                    test.assignCategory(group);
+        test.setStartedTime(getTime(result.getStartMillis()));
+        test.setEndedTime(getTime(result.getEndMillis()));
 
-                if (result.getThrowable() != null)
-                {
-                    if (result.getInstance() instanceof AbstractWebTest)
-                    {
-                        String screenshotsDir = defaultProperties.getProperty("screenshots.dir");
-                        String screenshotsPath = Paths.get(defaultProperties.getProperty("reports.path"), screenshotsDir).toString();
-                        File screenshot = Paths.get(screenshotsPath, testName + ".png").toFile();
-                        if (screenshot.exists())
-                            test.log(status, String.format("Screenshot below: %s",
-                                    test.addScreenCapture(Paths.get(screenshotsDir, testName + ".png").toFile().getPath())));
-                    }
+        for (String group : result.getMethod().getGroups())
+            test.assignCategory(group);
+
+        if (result.getThrowable() != null)
+        {
+            if (result.getInstance() instanceof AbstractWebTest)
+            {
+                String screenshotsDir = defaultProperties.getProperty("screenshots.dir");
+                String screenshotsPath = Paths.get(defaultProperties.getProperty("reports.path"), screenshotsDir).toString();
+                File screenshot = Paths.get(screenshotsPath, testName + ".png").toFile();
+                if (screenshot.exists())
+                    test.log(status, String.format("Screenshot below: %s",
+                            test.addScreenCapture(Paths.get(screenshotsDir, testName + ".png").toFile().getPath())));
+            }
                    
-                    // also log the errors
-                    test.log(status, result.getThrowable());
-                }
-                else
-                {
-                    test.log(status, "Test " + status.toString().toLowerCase() + "ed");
-                }
-                extent.endTest(test);
+            // also log the errors
+            test.log(status, result.getThrowable());
+        }
+        else
+        {
+            test.log(status, "Test " + status.toString().toLowerCase() + "ed");
+        }
+
+        if (status == LogStatus.PASS)
+        {
+            Regression regression = PerformanceBaseline.getDefault().check(PerformanceBaseline.testKey(result), result.getEndMillis() - result.getStartMillis());
+            if (regression != null)
+            {
+                test.assignCategory(PERFORMANCE_REGRESSION);
+                test.log(LogStatus.WARNING, "Performance regression: " + regression);
             }
         }
+        return test;
+    }
+
+    private void buildEndpointRegressionsNode()
+    {
+        List<Regression> regressions = PerformanceBaseline.getDefault().getRegressions(PerformanceBaseline.ENDPOINT_PREFIX);
+        if (extent == null || regressions.isEmpty())
+            return;
+
+        ExtentTest test = startTest("Performance regressions # REST endpoints");
+        test.assignCategory(PERFORMANCE_REGRESSION);
+        for (Regression regression : regressions)
+        {
+            test.log(LogStatus.WARNING, regression.toString());
+        }
+        synchronized (extent)
+        {
+            extent.endTest(test);
+        }
+    }
+
+    private ExtentTest startTest(String testName)
+    {
+        synchronized (extent)
+        {
+            return extent.startTest(testName);
+        }
     }
 
     private Date getTime(long millis)
@@ -223,37 +350,58 @@ public class HtmlReportListener implements IReporter
         return calendar.getTime();
     }
 
+    /**
+     * @return HTML with the content of <filePath> or a link to it, see <code>reports.logs.mode</code>
+     */
     private String getLogsContent(String filePath)
     {
-        String content = "";
-        try
+        if (filePath == null)
         {
-            List<String> lines = new ArrayList<String>();
-            BufferedReader reader = null;
+            return "<pre> </pre>";
+        }
+        Path path = Paths.get(filePath);
+        String mode = defaultProperties.getProperty("reports.logs.mode", LOGS_INLINE);
+        if (LOGS_LINK.equalsIgnoreCase(mode))
+        {
+            return String.format("<a href=\"%s\" target=\"_blank\">%s</a>", path.toAbsolutePath().toUri(), path.getFileName());
+        }
 
-            reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.ISO_8859_1);
-            lines = reader.lines().collect(Collectors.toList());
-            content = String.join("\n", lines);
+        StringBuilder content = new StringBuilder("<pre>");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long start = 0;
+            if (LOGS_TAIL.equalsIgnoreCase(mode))
+            {
+                long maxBytes = Long.parseLong(defaultProperties.getProperty("reports.logs.tailSizeMB", "10")) * 1024 * 1024;
+                start = Math.max(0, channel.size() - maxBytes);
+            }
+            if (start > 0)
+            {
+                content.append(String.format("... first %d bytes skipped, full log: %s ...%n", start, path.toAbsolutePath()));
+            }
+            channel.position(start);
+            ByteBuffer chunk = ByteBuffer.allocate(LOG_CHUNK_SIZE);
+            while (channel.read(chunk) != -1)
+            {
+                chunk.flip();
+                // single byte charset, a chunk boundary never splits a character
+                content.append(StandardCharsets.ISO_8859_1.decode(chunk));
+                chunk.clear();
+            }
         }
         catch (IOException e)
         {
             LOG.error(String.format("Cannot read log file due tos: %s", e.getMessage()));
         }
-        return content;
+        return content.append(" </pre>").toString();
     }
 
     private String getLogsLocation(String key, Properties properties)
     {
-        String log4jPath = ".";
-        Properties log4jProperties = new Properties();
-        try
-        {
-            log4jProperties = Utility.getProperties(getClass(), "log4j.properties");
-            log4jPath = log4jProperties.getProperty(key);
-        }
-        catch (TestConfigurationException e1)
+        String log4jPath = properties.getProperty(key);
+        if (log4jPath == null)
         {
-            LOG.error("Cannot read '{}' key from log4j.properties file. Error: {}", key, e1.getMessage());
+            LOG.error("Cannot read '{}' key from log4j.properties file.", key);
         }
         return log4jPath;
     }
@@ -0,0 +1,172 @@
+package org.alfresco.utility.report;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+
+/**
+ * Reads the TestNG, {@link Bug} and TestRail annotations of a class from its bytecode, without loading the class
+ */
+class TestClassScanner extends ClassVisitor
+{
+    private static final String TEST = "Lorg/testng/annotations/Test;";
+    private static final String TESTNG_ANNOTATIONS = "Lorg/testng/annotations/";
+    private static final String BUG = "Lorg/alfresco/utility/report/Bug;";
+    private static final String TEST_RAIL = "Lorg/alfresco/utility/testrail/annotation/TestRail;";
+
+    String className;
+    String superClassName;
+    boolean concrete;
+    /** attributes of the class level @Test, null if there is none */
+    Map<String, List<String>> classTest;
+    final List<ScannedMethod> methods = new ArrayList<ScannedMethod>();
+
+    private TestClassScanner()
+    {
+        super(SpringAsmInfo.ASM_VERSION);
+    }
+
+    /**
+     * @return the annotations of the class in <bytecode>
+     */
+    static TestClassScanner scan(InputStream bytecode) throws IOException
+    {
+        TestClassScanner scanner = new TestClassScanner();
+        new ClassReader(bytecode).accept(scanner, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return scanner;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces)
+    {
+        className = name.replace('/', '.');
+        superClassName = superName == null ? null : superName.replace('/', '.');
+        concrete = (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE | Opcodes.ACC_ANNOTATION | Opcodes.ACC_ENUM)) == 0;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible)
+    {
+        if (TEST.equals(descriptor))
+        {
+            classTest = new LinkedHashMap<String, List<String>>();
+            return new AttributesVisitor(classTest, null);
+        }
+        return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions)
+    {
+        if (name.startsWith("<") || (access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0)
+        {
+            return null;
+        }
+        ScannedMethod method = new ScannedMethod(name, descriptor, access);
+        methods.add(method);
+        return new MethodVisitor(SpringAsmInfo.ASM_VERSION)
+        {
+            @Override
+            public AnnotationVisitor visitAnnotation(String annotation, boolean visible)
+            {
+                if (TEST.equals(annotation))
+                {
+                    method.test = new LinkedHashMap<String, List<String>>();
+                    return new AttributesVisitor(method.test, null);
+                }
+                if (BUG.equals(annotation))
+                {
+                    method.bug = new LinkedHashMap<String, List<String>>();
+                    return new AttributesVisitor(method.bug, null);
+                }
+                if (TEST_RAIL.equals(annotation))
+                {
+                    method.testRail = new LinkedHashMap<String, List<String>>();
+                    return new AttributesVisitor(method.testRail, null);
+                }
+                if (annotation.startsWith(TESTNG_ANNOTATIONS))
+                {
+                    // @BeforeClass, @DataProvider... are never tests, even with a class level @Test
+                    method.configuration = true;
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Method of a scanned class with the attributes of its annotations
+     */
+    static class ScannedMethod
+    {
+        final String name;
+        final String descriptor;
+        final int access;
+        Map<String, List<String>> test;
+        Map<String, List<String>> bug;
+        Map<String, List<String>> testRail;
+        boolean configuration;
+
+        ScannedMethod(String name, String descriptor, int access)
+        {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.access = access;
+        }
+
+        boolean isPublicInstanceMethod()
+        {
+            return (access & Opcodes.ACC_PUBLIC) != 0 && (access & (Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT)) == 0;
+        }
+    }
+
+    /**
+     * Collects annotation attributes as strings, array values and enum constants included
+     */
+    private static class AttributesVisitor extends AnnotationVisitor
+    {
+        private final Map<String, List<String>> attributes;
+        private final String arrayName;
+
+        AttributesVisitor(Map<String, List<String>> attributes, String arrayName)
+        {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.attributes = attributes;
+            this.arrayName = arrayName;
+        }
+
+        @Override
+        public void visit(String name, Object value)
+        {
+            add(name, String.valueOf(value));
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value)
+        {
+            add(name, value);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name)
+        {
+            attributes.put(name, new ArrayList<String>());
+            return new AttributesVisitor(attributes, name);
+        }
+
+        private void add(String name, String value)
+        {
+            attributes.computeIfAbsent(arrayName != null ? arrayName : name, key -> new ArrayList<String>()).add(value);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package org.alfresco.utility.report;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.model.TestGroup;
+import org.alfresco.utility.report.TestClassScanner.ScannedMethod;
+import org.alfresco.utility.testrail.ExecutionType;
+import org.alfresco.utility.testrail.annotation.TestRail;
+import org.slf4j.Logger;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.testng.ITestNGMethod;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * In-memory index of test methods by group, with their {@link Bug} and {@link TestRail} annotations.
+ * Build it once, from the methods of a TestNG suite ({@link #of(Collection)}) or from the bytecode of the test classes of some packages
+ * without loading them ({@link #scan(String...)}), then query it as often as needed:
+ * <code>
+ * TestInventory inventory = TestInventory.scan("org.alfresco.rest");
+ * inventory.query().inGroups(TestGroup.REST_API, TestGroup.SANITY).withBug().count();
+ * inventory.getMethodsByClass(TestGroup.SANITY);
+ * </code>
+ * Each group is a bit set over the tests, so counting queries cost a few bit operations even for tens of thousands of tests.
+ */
+public class TestInventory
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    public static final String[] CSV_HEADER = { "TASRegression", "total", "totalbugs", "sanity", "sanitybugs", "core", "curebugs", "full", "fullbugs" };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final List<TestMethod> tests;
+    private final Map<String, BitSet> groups = new HashMap<String, BitSet>();
+    private final BitSet bugs = new BitSet();
+    private final BitSet testRail = new BitSet();
+
+    public TestInventory(List<TestMethod> tests)
+    {
+        this.tests = Collections.unmodifiableList(new ArrayList<TestMethod>(tests));
+        for (int i = 0; i < this.tests.size(); i++)
+        {
+            TestMethod test = this.tests.get(i);
+            for (String group : test.getGroups())
+            {
+                groups.computeIfAbsent(group, key -> new BitSet()).set(i);
+            }
+            bugs.set(i, test.hasBug());
+            testRail.set(i, test.hasTestRail());
+        }
+    }
+
+    /**
+     * @return inventory of the test methods of a TestNG suite, see {@link org.testng.ISuite#getAllMethods()}
+     */
+    public static TestInventory of(Collection<ITestNGMethod> methods)
+    {
+        List<TestMethod> tests = new ArrayList<TestMethod>(methods.size());
+        for (ITestNGMethod method : methods)
+        {
+            Method javaMethod = method.getConstructorOrMethod().getMethod();
+            Bug bug = javaMethod.getAnnotation(Bug.class);
+            TestRail testRail = javaMethod.getAnnotation(TestRail.class);
+            List<String> executionTypes = new ArrayList<String>();
+            if (testRail != null)
+            {
+                for (ExecutionType executionType : testRail.executionType())
+                {
+                    executionTypes.add(executionType.name());
+                }
+            }
+            tests.add(new TestMethod(javaMethod.getDeclaringClass().getName(), method.getMethodName(), Arrays.asList(method.getGroups()),
+                    bug == null ? null : bug.id(), bug == null ? null : bug.status().name(), testRail == null ? null : Arrays.asList(testRail.section()),
+                    executionTypes));
+        }
+        return new TestInventory(tests);
+    }
+
+    /**
+     * Scan the bytecode of the classes of <packages> (and sub-packages) found on the class path. Classes are read in parallel and are
+     * not loaded, so static initializers and Spring contexts of the tests are not triggered.
+     *
+     * @param packages like <code>org.alfresco.rest</code>
+     */
+    public static TestInventory scan(String... packages) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        List<Resource> resources = new ArrayList<Resource>();
+        for (String packageName : packages)
+        {
+            resources.addAll(Arrays.asList(resolver.getResources("classpath*:" + packageName.replace('.', '/') + "/**/*.class")));
+        }
+
+        Map<String, TestClassScanner> classes;
+        try
+        {
+            classes = resources.parallelStream().map(TestInventory::read)
+                    .collect(Collectors.toConcurrentMap(scanner -> scanner.className, scanner -> scanner, (first, duplicate) -> first));
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+
+        List<TestMethod> tests = new ArrayList<TestMethod>();
+        for (TestClassScanner scanned : new TreeMap<String, TestClassScanner>(classes).values())
+        {
+            if (scanned.concrete)
+            {
+                addTests(scanned, classes, tests);
+            }
+        }
+        LOG.info("Indexed {} tests of {} classes in {}ms", tests.size(), classes.size(), System.currentTimeMillis() - start);
+        return new TestInventory(tests);
+    }
+
+    public int size()
+    {
+        return tests.size();
+    }
+
+    public List<TestMethod> getTests()
+    {
+        return tests;
+    }
+
+    public Set<String> getGroups()
+    {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    /**
+     * @return a new query over all tests of this inventory
+     */
+    public Query query()
+    {
+        BitSet all = new BitSet(tests.size());
+        all.set(0, tests.size());
+        return new Query(all);
+    }
+
+    /**
+     * @return method names of the tests that are in all <groups>, by class name, as needed to write a suite xml file
+     */
+    public Map<String, List<String>> getMethodsByClass(String... groups)
+    {
+        Map<String, List<String>> methods = new LinkedHashMap<String, List<String>>();
+        for (TestMethod test : query().inGroups(groups).list())
+        {
+            methods.computeIfAbsent(test.getClassName(), key -> new ArrayList<String>()).add(test.getMethodName());
+        }
+        return methods;
+    }
+
+    /**
+     * @return for <project> group: total, bugs, sanity, sanity bugs, core, core bugs, full, full bugs and tests without phase group.
+     *         A test is counted in the first phase of sanity, core and full it belongs to.
+     */
+    public int[] countPhases(String project)
+    {
+        Query sanity = query().inGroups(project, TestGroup.SANITY);
+        Query core = query().inGroups(project, TestGroup.CORE).notInGroups(TestGroup.SANITY);
+        Query full = query().inGroups(project, TestGroup.FULL).notInGroups(TestGroup.SANITY, TestGroup.CORE);
+        return new int[] { query().inGroups(project).count(), query().inGroups(project).withBug().count(), sanity.count(), sanity.withBug().count(),
+                core.count(), core.withBug().count(), full.count(), full.withBug().count(),
+                query().inGroups(project).notInGroups(TestGroup.SANITY, TestGroup.CORE, TestGroup.FULL).count() };
+    }
+
+    /**
+     * Write the phase counts of each project that has tests, with {@link #CSV_HEADER}
+     */
+    public void writeCsv(Writer writer, List<String> projects) throws IOException
+    {
+        writer.append(String.join(",", CSV_HEADER)).append('\n');
+        for (String project : projects)
+        {
+            if (!groups.containsKey(project))
+            {
+                continue;
+            }
+            int[] counts = countPhases(project);
+            writer.append(project);
+            for (int i = 0; i < CSV_HEADER.length - 1; i++)
+            {
+                writer.append(',').append(String.valueOf(counts[i]));
+            }
+            writer.append('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the totals and the phase counts of each project that has tests as a JSON object
+     */
+    public void writeJson(OutputStream out, List<String> projects) throws IOException
+    {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8))
+        {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeNumberField("total", size());
+            generator.writeNumberField("bugs", bugs.cardinality());
+            generator.writeNumberField("testRail", testRail.cardinality());
+            generator.writeArrayFieldStart("projects");
+            for (String project : projects)
+            {
+                if (!groups.containsKey(project))
+                {
+                    continue;
+                }
+                int[] counts = countPhases(project);
+                generator.writeStartObject();
+                generator.writeStringField("name", project);
+                for (int i = 1; i < CSV_HEADER.length; i++)
+                {
+                    generator.writeNumberField(CSV_HEADER[i], counts[i - 1]);
+                }
+                generator.writeNumberField("nophase", counts[CSV_HEADER.length - 1]);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private static TestClassScanner read(Resource resource)
+    {
+        try (InputStream bytecode = resource.getInputStream())
+        {
+            return TestClassScanner.scan(bytecode);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Add the tests of <scanned> and of its scanned super classes, the same way TestNG finds them
+     */
+    private static void addTests(TestClassScanner scanned, Map<String, TestClassScanner> classes, List<TestMethod> tests)
+    {
+        List<String> concreteClassGroups = attribute(scanned.classTest, "groups");
+        Set<String> seen = new LinkedHashSet<String>();
+        for (TestClassScanner declaring = scanned; declaring != null; declaring = classes.get(declaring.superClassName))
+        {
+            for (ScannedMethod method : declaring.methods)
+            {
+                if (!seen.add(method.name + method.descriptor))
+                {
+                    // overridden in a sub class
+                    continue;
+                }
+                boolean isTest = method.test != null
+                        || (declaring.classTest != null || scanned.classTest != null) && method.isPublicInstanceMethod() && !method.configuration;
+                if (!isTest || "false".equals(first(method.test, "enabled")))
+                {
+                    continue;
+                }
+                Set<String> testGroups = new LinkedHashSet<String>(attribute(method.test, "groups"));
+                testGroups.addAll(attribute(declaring.classTest, "groups"));
+                testGroups.addAll(concreteClassGroups);
+                tests.add(new TestMethod(scanned.className, method.name, new ArrayList<String>(testGroups), first(method.bug, "id"),
+                        method.bug == null ? null : first(method.bug, "status") == null ? Bug.Status.OPENED.name() : first(method.bug, "status"),
+                        method.testRail == null ? null : attribute(method.testRail, "section"),
+                        method.testRail == null ? Collections.<String> emptyList()
+                                : method.testRail.containsKey("executionType") ? attribute(method.testRail, "executionType")
+                                        : Collections.singletonList(ExecutionType.REGRESSION.name())));
+            }
+        }
+    }
+
+    private static List<String> attribute(Map<String, List<String>> attributes, String name)
+    {
+        if (attributes == null || !attributes.containsKey(name))
+        {
+            return Collections.emptyList();
+        }
+        return attributes.get(name);
+    }
+
+    private static String first(Map<String, List<String>> attributes, String name)
+    {
+        List<String> values = attribute(attributes, name);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Selection of tests, each call narrows it
+     */
+    public class Query
+    {
+        private final BitSet selected;
+
+        private Query(BitSet selected)
+        {
+            this.selected = selected;
+        }
+
+        /**
+         * Keep the tests that are in all <groups>
+         */
+        public Query inGroups(String... groupNames)
+        {
+            BitSet result = (BitSet) selected.clone();
+            for (String group : groupNames)
+            {
+                BitSet members = groups.get(group);
+                if (members == null)
+                {
+                    result.clear();
+                    break;
+                }
+                result.and(members);
+            }
+            return new Query(result);
+        }
+
+        /**
+         * Keep the tests that are in none of <groups>
+         */
+        public Query notInGroups(String... groupNames)
+        {
+            BitSet result = (BitSet) selected.clone();
+            for (String group : groupNames)
+            {
+                BitSet members = groups.get(group);
+                if (members != null)
+                {
+                    result.andNot(members);
+                }
+            }
+            return new Query(result);
+        }
+
+        /**
+         * Keep the tests with a {@link Bug} annotation
+         */
+        public Query withBug()
+        {
+            BitSet result = (BitSet) selected.clone();
+            result.and(bugs);
+            return new Query(result);
+        }
+
+        /**
+         * Keep the tests with a {@link TestRail} annotation
+         */
+        public Query withTestRail()
+        {
+            BitSet result = (BitSet) selected.clone();
+            result.and(testRail);
+            return new Query(result);
+        }
+
+        public int count()
+        {
+            return selected.cardinality();
+        }
+
+        public List<TestMethod> list()
+        {
+            List<TestMethod> result = new ArrayList<TestMethod>(selected.cardinality());
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1))
+            {
+                result.add(tests.get(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A test method with its groups and annotations
+     */
+    public static class TestMethod
+    {
+        private final String className;
+        private final String methodName;
+        private final List<String> groups;
+        private final String bugId;
+        private final String bugStatus;
+        private final List<String> testRailSections;
+        private final List<String> executionTypes;
+
+        public TestMethod(String className, String methodName, List<String> groups, String bugId, String bugStatus, List<String> testRailSections,
+                List<String> executionTypes)
+        {
+            this.className = className;
+            this.methodName = methodName;
+            this.groups = Collections.unmodifiableList(new ArrayList<String>(groups));
+            this.bugId = bugId;
+            this.bugStatus = bugStatus;
+            this.testRailSections = testRailSections == null ? null : Collections.unmodifiableList(new ArrayList<String>(testRailSections));
+            this.executionTypes = Collections.unmodifiableList(new ArrayList<String>(executionTypes));
+        }
+
+        public String getClassName()
+        {
+            return className;
+        }
+
+        public String getMethodName()
+        {
+            return methodName;
+        }
+
+        public List<String> getGroups()
+        {
+            return groups;
+        }
+
+        public boolean hasBug()
+        {
+            return bugId != null;
+        }
+
+        public String getBugId()
+        {
+            return bugId;
+        }
+
+        /**
+         * @return name of the {@link Bug.Status}, null without {@link Bug} annotation
+         */
+        public String getBugStatus()
+        {
+            return bugStatus;
+        }
+
+        public boolean hasTestRail()
+        {
+            return testRailSections != null;
+        }
+
+        /**
+         * @return {@link TestRail#section()}, null without {@link TestRail} annotation
+         */
+        public List<String> getTestRailSections()
+        {
+            return testRailSections;
+        }
+
+        /**
+         * @return names of the {@link TestRail#executionType()}
+         */
+        public List<String> getExecutionTypes()
+        {
+            return executionTypes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return className + "#" + methodName;
+        }
+    }
+}
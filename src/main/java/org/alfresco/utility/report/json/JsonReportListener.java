@@ -1,5 +1,7 @@
 package org.alfresco.utility.report.json;
 
+import java.util.Properties;
+
 import org.alfresco.utility.LogFactory;
 import org.alfresco.utility.Utility;
 import org.alfresco.utility.exception.TestConfigurationException;
@@ -14,6 +16,7 @@ public class JsonReportListener implements ITestListener
 
     JsonSuite suite;
     String jsonPathFile = null;
+    String jsonFormat = JsonSuite.FORMAT_JSON;
 
     @Override
     public void onTestStart(ITestResult result)
@@ -23,25 +26,25 @@ public class JsonReportListener implements ITestListener
     @Override
     public void onTestSuccess(ITestResult result)
     {
-        suite.getTestClass().addTest(result);
+        addTest(result);
     }
 
     @Override
     public void onTestFailure(ITestResult result)
     {
-        suite.getTestClass().addTest(result);
+        addTest(result);
     }
 
     @Override
     public void onTestSkipped(ITestResult result)
     {
-        suite.getTestClass().addTest(result);
+        addTest(result);
     }
 
     @Override
     public void onTestFailedButWithinSuccessPercentage(ITestResult result)
     {
-        suite.getTestClass().addTest(result);
+        addTest(result);
     }
 
     @Override
@@ -50,19 +53,33 @@ public class JsonReportListener implements ITestListener
         if (jsonPathFile == null)
             try
             {
-                jsonPathFile = Utility.getProperties(getClass(), Utility.getEnvironmentPropertyFile()).getProperty("reports.path");
+                Properties properties = Utility.getProperties(getClass(), Utility.getEnvironmentPropertyFile());
+                jsonPathFile = properties.getProperty("reports.path");
+                jsonFormat = properties.getProperty("reports.json.format", JsonSuite.FORMAT_JSON);
             }
             catch (TestConfigurationException e)
             {
                 LOG.error("CANNOT Read environment properties file for reports.path: {} ", e.getMessage());
             }
 
-        suite = new JsonSuite(context, jsonPathFile);
+        try
+        {
+            suite = new JsonSuite(context, jsonPathFile, jsonFormat);
+        }
+        catch (Exception e)
+        {
+            suite = null;
+            LOG.error("CANNOT CREATE JSON Test File: {} ", e.getMessage());
+        }
     }
 
     @Override
     public void onFinish(ITestContext context)
     {
+        if (suite == null)
+        {
+            return;
+        }
         try
         {
             suite.setFinishedAt(context.getEndDate().toString());
@@ -74,4 +91,19 @@ public class JsonReportListener implements ITestListener
         }
     }
 
+    private void addTest(ITestResult result)
+    {
+        if (suite == null)
+        {
+            return;
+        }
+        try
+        {
+            suite.addTest(result);
+        }
+        catch (Exception e)
+        {
+            LOG.error("CANNOT ADD {} to JSON Test File: {} ", result.getMethod().getMethodName(), e.getMessage());
+        }
+    }
 }
@@ -1,29 +1,121 @@
 package org.alfresco.utility.report.json;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 import org.alfresco.utility.Utility;
+import org.alfresco.utility.report.metrics.PerformanceBaseline;
+import org.alfresco.utility.report.metrics.Regression;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.testng.ITestContext;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
-
+import org.testng.ITestResult;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * JSON report of one TestNG test, written to disk while the tests are executed.
+ * Each test result is flushed as soon as it is added, so memory does not grow with the number of tests:
+ * <ul>
+ * <li>in JSON format the closing brackets are written after every test and overwritten by the next one, so the file is valid even if the run
+ * crashes</li>
+ * <li>in NDJSON format each line is one test, with the suite and class names</li>
+ * </ul>
+ * Tests slower than their {@link PerformanceBaseline} have a <code>regression</code> object, and the slow REST endpoints are listed in
+ * <code>endpointRegressions</code> when the report is complete.
+ */
 public class JsonSuite
 {
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] TAIL = "]},\"finishedAt\":null}".getBytes(StandardCharsets.UTF_8);
+
     private String name;
-    private JsonClass testClass;
-    private String jsonPathFile;
+    private String className;
     private String startedAt;
     private String finishedAt;
+    private final boolean ndjson;
+    private final File file;
+
+    private FileChannel channel;
+    private JsonGenerator generator;
 
-    public JsonSuite(ITestContext context, String jsonPathFile)
+    public JsonSuite(ITestContext context, String jsonPathFile) throws IOException
     {
-        this.jsonPathFile = jsonPathFile;
+        this(context, jsonPathFile, FORMAT_JSON);
+    }
+
+    /**
+     * @param context
+     * @param jsonPathFile folder of the report
+     * @param format {@link #FORMAT_JSON} or {@link #FORMAT_NDJSON}
+     * @throws IOException if the report file cannot be created
+     */
+    public JsonSuite(ITestContext context, String jsonPathFile, String format) throws IOException
+    {
+        Utility.checkObjectIsInitialized(jsonPathFile, "jsonPathFile");
         setName(context.getCurrentXmlTest().getSuite().getName());
         setStartedAt(context.getStartDate().toString());
-        setTestClass(new JsonClass(context.getCurrentXmlTest().getClasses().get(0).getName()));
+        className = context.getCurrentXmlTest().getClasses().get(0).getName();
+        ndjson = FORMAT_NDJSON.equalsIgnoreCase(format);
+
+        Files.createDirectories(Paths.get(jsonPathFile));
+        file = Paths.get(jsonPathFile, String.format("%s-%s.%s", getName(), System.currentTimeMillis(), ndjson ? FORMAT_NDJSON : FORMAT_JSON)).toFile();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream out = Channels.newOutputStream(channel);
+        generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        if (ndjson)
+        {
+            generator.setRootValueSeparator(null);
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("name", getName());
+        generator.writeStringField("startedAt", getStartedAt());
+        generator.writeObjectFieldStart("testClass");
+        generator.writeStringField("className", className);
+        generator.writeArrayFieldStart("tests");
+        flushWithTail();
+    }
+
+    /**
+     * Write the result of a test to the report file
+     */
+    public synchronized void addTest(ITestResult result) throws IOException
+    {
+        if (generator == null)
+        {
+            return;
+        }
+        JsonTest test = new JsonTest(result);
+        if (ndjson)
+        {
+            generator.writeStartObject();
+            generator.writeStringField("suite", getName());
+            generator.writeStringField("className", className);
+            test.writeFields(generator);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+            return;
+        }
+        generator.writeStartObject();
+        test.writeFields(generator);
+        generator.writeEndObject();
+        flushWithTail();
     }
 
     public String getName()
@@ -36,14 +128,14 @@ public class JsonSuite
         this.name = name;
     }
 
-    public JsonClass getTestClass()
+    public String getClassName()
     {
-        return testClass;
+        return className;
     }
 
-    public void setTestClass(JsonClass testClass)
+    public File getFile()
     {
-        this.testClass = testClass;
+        return file;
     }
 
     public String toString()
@@ -71,14 +163,71 @@ public class JsonSuite
         this.finishedAt = finishedAt;
     }
 
-    public void writeToDisk() throws Exception
+    /**
+     * Complete the report with the finish time and close the file
+     */
+    public synchronized void writeToDisk() throws IOException
     {
-        Utility.checkObjectIsInitialized(jsonPathFile, "jsonPathFile");
-        ObjectMapper mapper = new ObjectMapper();
-                         
-        File out = Paths.get(jsonPathFile, String.format("%s-%s.json", getName(),System.currentTimeMillis() )).toFile();
+        if (generator == null)
+        {
+            return;
+        }
+        try
+        {
+            List<Regression> endpointRegressions = PerformanceBaseline.getDefault().getRegressions(PerformanceBaseline.ENDPOINT_PREFIX);
+            if (ndjson)
+            {
+                if (!endpointRegressions.isEmpty())
+                {
+                    generator.writeStartObject();
+                    generator.writeStringField("suite", getName());
+                    writeEndpointRegressions(endpointRegressions);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+            else
+            {
+                generator.writeEndArray();
+                generator.writeEndObject();
+                writeEndpointRegressions(endpointRegressions);
+                generator.writeStringField("finishedAt", getFinishedAt());
+                generator.writeEndObject();
+            }
+            generator.flush();
+            channel.truncate(channel.position());
+        }
+        finally
+        {
+            generator.close();
+            generator = null;
+            channel = null;
+        }
+    }
 
-        mapper.writeValue(out, this);
+    private void writeEndpointRegressions(List<Regression> regressions) throws IOException
+    {
+        generator.writeArrayFieldStart("endpointRegressions");
+        for (Regression regression : regressions)
+        {
+            JsonTest.writeRegression(generator, regression);
+        }
+        generator.writeEndArray();
+    }
 
+    /**
+     * Flush what was generated and write the closing brackets after it, the next write starts over the closing brackets
+     */
+    private void flushWithTail() throws IOException
+    {
+        generator.flush();
+        long position = channel.position();
+        ByteBuffer tail = ByteBuffer.wrap(TAIL);
+        while (tail.hasRemaining())
+        {
+            channel.write(tail);
+        }
+        channel.truncate(channel.position());
+        channel.position(position);
     }
 }
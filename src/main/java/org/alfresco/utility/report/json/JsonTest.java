@@ -1,27 +1,37 @@
 package org.alfresco.utility.report.json;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.alfresco.utility.report.metrics.PerformanceBaseline;
+import org.alfresco.utility.report.metrics.Regression;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.testng.ITestResult;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 public class JsonTest
 {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
     private String name;
     private String startedAt;
     private String finishedAt;
     private String description;
     private String exception;
+    private Throwable throwable;
     private String status;
     private List<String> groups = new ArrayList<String>();
+    private Regression regression;
 
     @JsonProperty(value = "isConfig")
     private boolean isConfig;
@@ -34,20 +44,65 @@ public class JsonTest
         setStatus(getHumanReadableStatus(result.getStatus()));
         setGroups(Arrays.asList(result.getMethod().getGroups()));
         
-        if (!result.isSuccess())
+        if (!result.isSuccess() && result.getThrowable() != null && result.getThrowable().getStackTrace() != null)
+        {
+            // the stack trace is rendered only when needed
+            throwable = result.getThrowable();
+        }
+        if (result.isSuccess())
+        {
+            regression = PerformanceBaseline.getDefault().check(PerformanceBaseline.testKey(result), result.getEndMillis() - result.getStartMillis());
+        }
+    }
+
+    /**
+     * Write the fields of this test in the current JSON object of <generator>
+     */
+    public void writeFields(JsonGenerator generator) throws IOException
+    {
+        generator.writeStringField("name", getName());
+        generator.writeStringField("startedAt", getStartedAt());
+        generator.writeStringField("finishedAt", getFinishedAt());
+        generator.writeStringField("description", getDescription());
+        generator.writeStringField("exception", getException());
+        generator.writeStringField("status", getStatus());
+        generator.writeArrayFieldStart("groups");
+        for (String group : getGroups())
+        {
+            generator.writeString(group);
+        }
+        generator.writeEndArray();
+        generator.writeBooleanField("isConfig", isConfig);
+        if (regression != null)
         {
-            if (result.getThrowable() != null)
-            {
-                if (result.getThrowable().getStackTrace() != null)
-                {
-                    StringWriter sw = new StringWriter();
-                    result.getThrowable().printStackTrace(new PrintWriter(sw));
-                    setException(sw.toString());
-                }
-            }
+            generator.writeFieldName("regression");
+            writeRegression(generator, regression);
         }
     }
 
+    /**
+     * Write <regression> as a JSON object
+     */
+    static void writeRegression(JsonGenerator generator, Regression regression) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("name", regression.getName());
+        generator.writeNumberField("durationMillis", Math.round(regression.getCurrentMillis()));
+        generator.writeNumberField("baselineMillis", Math.round(regression.getBaselineMillis()));
+        generator.writeNumberField("thresholdMillis", Math.round(regression.getThresholdMillis()));
+        generator.writeNumberField("slowdownPercent", Math.round(regression.getSlowdownPercent()));
+        generator.writeNumberField("baselineRuns", regression.getRuns());
+        generator.writeEndObject();
+    }
+
+    /**
+     * @return the performance regression of this test, null if it is not slower than usual
+     */
+    public Regression getRegression()
+    {
+        return regression;
+    }
+
     public String getName()
     {
         return name;
@@ -90,6 +145,12 @@ public class JsonTest
 
     public String getException()
     {
+        if (exception == null && throwable != null)
+        {
+            StringWriter sw = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(sw));
+            exception = sw.toString();
+        }
         return exception;
     }
 
@@ -115,7 +176,7 @@ public class JsonTest
 
     private String dateFormat(long miliseconds)
     {
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(miliseconds);
+        return DATE_FORMAT.format(Instant.ofEpochMilli(miliseconds));
     }
 
     private String getHumanReadableStatus(int value)
@@ -12,37 +12,35 @@ public class LogsListener implements ITestListener
     public void onTestStart(ITestResult result)
     {
         XmlLogWritter.LOG.info("Starting test: " + result.getMethod().getMethodName());
-        // Step.testSteps.clear();
     }
 
     @Override
     public void onTestSuccess(ITestResult result)
     {
-        logWritter.addTestExecution(result, Step.testSteps);
+        logWritter.addTestExecution(result);
     }
 
     @Override
     public void onTestFailure(ITestResult result)
     {
-        logWritter.addTestExecution(result, Step.testSteps);
+        logWritter.addTestExecution(result);
     }
 
     @Override
     public void onTestSkipped(ITestResult result)
     {
-        logWritter.addTestExecution(result, Step.testSteps);
+        logWritter.addTestExecution(result);
     }
 
     @Override
     public void onTestFailedButWithinSuccessPercentage(ITestResult result)
     {
-        logWritter.addTestExecution(result, Step.testSteps);
+        logWritter.addTestExecution(result);
     }
 
     @Override
     public void onStart(ITestContext context)
     {
-        Step.testSteps.clear();
         logWritter.generateXmlFile(context);
     }
 
@@ -50,6 +48,7 @@ public class LogsListener implements ITestListener
     public void onFinish(ITestContext context)
     {
         logWritter.setFinish(context);
+        Step.clearClassSteps(context);
     }
 
 }
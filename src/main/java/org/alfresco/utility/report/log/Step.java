@@ -1,19 +1,35 @@
 package org.alfresco.utility.report.log;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import org.alfresco.utility.LogFactory;
-import org.testng.annotations.BeforeClass;
-import org.testng.annotations.Test;
+import org.slf4j.Logger;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
+import org.testng.Reporter;
 
+/**
+ * Records the steps of the running test.
+ * The step is attached to the {@link ITestResult} that TestNG binds to the current thread (see {@link Reporter#getCurrentTestResult()}):
+ * steps done in a <code>@Test</code> method are kept on its own result, so parallel methods and invocations do not share any state;
+ * steps done in <code>@BeforeClass</code> are kept per test class on the {@link ITestContext} that runs it and reported as "pre" steps of
+ * each test of that class; {@link LogsListener} removes them when the context finishes.
+ */
 public class Step
 {
+    static Logger LOG = LogFactory.getLogger();
+
+    public static final String STEPS_ATTRIBUTE = "testSteps";
+    public static final String STEP_TIMES_ATTRIBUTE = "testStepStartNanos";
+    public static final String CLASS_STEPS_ATTRIBUTE = "testClassSteps";
+
     private String value;
-    public static Map<String, ArrayList<String>> testSteps = Collections.synchronizedMap(new HashMap<String, ArrayList<String>>());
 
     public String getValue()
     {
@@ -27,52 +43,197 @@ public class Step
 
     public static void STEP(String stepValue)
     {
-        LogFactory.getLogger().info("STEPS:" + stepValue);
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+        LOG.info("STEPS:" + stepValue);
+        ITestResult currentResult = Reporter.getCurrentTestResult();
+        if (currentResult == null || currentResult.getMethod() == null)
+        {
+            return;
+        }
+        if (currentResult.getMethod().isTest())
+        {
+            List<String> steps = stepsOf(currentResult);
+            synchronized (steps)
+            {
+                steps.add(stepValue);
+                stepTimesOf(currentResult).add(System.nanoTime());
+            }
+        }
+        else if (currentResult.getMethod().isBeforeClassConfiguration())
+        {
+            Map<String, List<String>> classSteps = classStepsOf(currentResult.getTestContext());
+            if (classSteps != null)
+            {
+                classSteps.computeIfAbsent(currentResult.getTestClass().getName(), className -> Collections.synchronizedList(new ArrayList<String>()))
+                        .add(stepValue);
+            }
+        }
+    }
+
+    /**
+     * @return steps done by the <code>@Test</code> method of <result>
+     */
+    public static List<String> getSteps(ITestResult result)
+    {
+        @SuppressWarnings("unchecked")
+        List<String> steps = (List<String>) result.getAttribute(STEPS_ATTRIBUTE);
+        return copyOf(steps);
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which each step of {@link #getSteps(ITestResult)} started, in the same order
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Long> getStepStartNanos(ITestResult result)
+    {
+        List<Long> times = (List<Long>) result.getAttribute(STEP_TIMES_ATTRIBUTE);
+        List<String> steps = (List<String>) result.getAttribute(STEPS_ATTRIBUTE);
+        if (times == null || steps == null)
+        {
+            return Collections.emptyList();
+        }
+        synchronized (steps)
+        {
+            return new ArrayList<Long>(times);
+        }
+    }
 
-        for (StackTraceElement stack : stackTrace)
+    /**
+     * @return steps done in <code>@BeforeClass</code> of the class of <result>
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> getClassSteps(ITestResult result)
+    {
+        ITestContext context = result.getTestContext();
+        if (context == null)
         {
+            return Collections.emptyList();
+        }
+        Map<String, List<String>> classSteps = (Map<String, List<String>>) context.getAttribute(CLASS_STEPS_ATTRIBUTE);
+        return classSteps == null ? Collections.<String> emptyList() : copyOf(classSteps.get(result.getTestClass().getName()));
+    }
+
+    /**
+     * Forget the <code>@BeforeClass</code> steps recorded in <context>, other contexts running in parallel keep theirs
+     */
+    public static void clearClassSteps(ITestContext context)
+    {
+        context.removeAttribute(CLASS_STEPS_ATTRIBUTE);
+    }
 
-            Class<?> newClass = null;
-            String methodNameKey = null;
+    /**
+     * @return <task> running with the test of the calling thread, so steps done on another thread are still recorded on this test
+     */
+    public static <T> Supplier<T> withCurrentTest(Supplier<T> task)
+    {
+        ITestResult currentResult = Reporter.getCurrentTestResult();
+        if (currentResult == null)
+        {
+            return task;
+        }
+        return () -> {
+            ITestResult previous = Reporter.getCurrentTestResult();
+            Reporter.setCurrentTestResult(currentResult);
             try
             {
-                newClass = Class.forName(stack.getClassName());
-                if ((newClass.toString().endsWith("Test") || newClass.toString().endsWith("Tests")) && (newClass.toString().contains("org.alfresco")))
+                return task.get();
+            }
+            finally
+            {
+                Reporter.setCurrentTestResult(previous);
+            }
+        };
+    }
+
+    /**
+     * @return executor running all its tasks with the test of the calling thread
+     */
+    public static Executor withCurrentTest(Executor executor)
+    {
+        ITestResult currentResult = Reporter.getCurrentTestResult();
+        if (currentResult == null)
+        {
+            return executor;
+        }
+        return task -> executor.execute(() -> {
+            ITestResult previous = Reporter.getCurrentTestResult();
+            Reporter.setCurrentTestResult(currentResult);
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                Reporter.setCurrentTestResult(previous);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> classStepsOf(ITestContext context)
+    {
+        if (context == null)
+        {
+            return null;
+        }
+        Map<String, List<String>> classSteps = (Map<String, List<String>>) context.getAttribute(CLASS_STEPS_ATTRIBUTE);
+        if (classSteps == null)
+        {
+            synchronized (context)
+            {
+                classSteps = (Map<String, List<String>>) context.getAttribute(CLASS_STEPS_ATTRIBUTE);
+                if (classSteps == null)
                 {
-                    Method method  = null;
-                    try
-                    {
-                        method = newClass.getDeclaredMethod(stack.getMethodName());
-                    }
-                    catch (NoSuchMethodException ex)
-                    {
-                        // doNothing when method has params
-                    }
-                    if (method != null && method.getAnnotation(BeforeClass.class) != null)
-                    {
-                        methodNameKey = stack.getClassName();
-                    }
-                    if (method != null && method.getAnnotation(Test.class) != null)
-                    {
-                        methodNameKey = stack.getMethodName();
-                    }
-                    if(methodNameKey == null)
-                    {
-                        continue;
-                    }
-                    if (!testSteps.containsKey(methodNameKey))
-                    {
-                        testSteps.put(methodNameKey, new ArrayList<String>());
-                    }
-                    testSteps.get(methodNameKey).add(stepValue);
-                    break;
+                    classSteps = new ConcurrentHashMap<String, List<String>>();
+                    context.setAttribute(CLASS_STEPS_ATTRIBUTE, classSteps);
                 }
             }
-            catch (Exception e)
+        }
+        return classSteps;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> stepsOf(ITestResult result)
+    {
+        List<String> steps = (List<String>) result.getAttribute(STEPS_ATTRIBUTE);
+        if (steps == null)
+        {
+            synchronized (result)
             {
-                e.printStackTrace();
+                steps = (List<String>) result.getAttribute(STEPS_ATTRIBUTE);
+                if (steps == null)
+                {
+                    steps = Collections.synchronizedList(new ArrayList<String>());
+                    result.setAttribute(STEPS_ATTRIBUTE, steps);
+                }
             }
         }
+        return steps;
+    }
+
+    /**
+     * Only used while holding the lock of the steps list of <result>
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Long> stepTimesOf(ITestResult result)
+    {
+        List<Long> times = (List<Long>) result.getAttribute(STEP_TIMES_ATTRIBUTE);
+        if (times == null)
+        {
+            times = new ArrayList<Long>();
+            result.setAttribute(STEP_TIMES_ATTRIBUTE, times);
+        }
+        return times;
+    }
+
+    private static List<String> copyOf(List<String> steps)
+    {
+        if (steps == null)
+        {
+            return Collections.emptyList();
+        }
+        synchronized (steps)
+        {
+            return new ArrayList<String>(steps);
+        }
     }
 }
@@ -0,0 +1,105 @@
+package org.alfresco.utility.report.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.ITestResult;
+
+/**
+ * Copy of a test result, taken on the TestNG callback thread and written later by the {@link XmlLogWritter} thread.
+ * The fields are copied, except the failure: the Throwable itself is kept and its stack trace is only rendered by the writer thread,
+ * so the test thread does not pay for it. A failure changed after the test ends (e.g. a suppressed exception added) shows up in the log.
+ */
+public final class TestRecord
+{
+    private final String name;
+    private final String status;
+    private final long startMillis;
+    private final long endMillis;
+    private final List<String> preSteps;
+    private final List<String> steps;
+    /** kept as is, rendered by {@link #getError()} */
+    private final Throwable throwable;
+
+    private TestRecord(ITestResult result)
+    {
+        name = result.getMethod().getMethodName();
+        status = statusOf(result.getStatus());
+        startMillis = result.getStartMillis();
+        endMillis = result.getEndMillis();
+        preSteps = Collections.unmodifiableList(Step.getClassSteps(result));
+        steps = Collections.unmodifiableList(Step.getSteps(result));
+        throwable = !result.isSuccess() && result.getThrowable() != null && result.getThrowable().getStackTrace() != null ? result.getThrowable() : null;
+    }
+
+    public static TestRecord of(ITestResult result)
+    {
+        return new TestRecord(result);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getStatus()
+    {
+        return status;
+    }
+
+    public long getStartMillis()
+    {
+        return startMillis;
+    }
+
+    public long getEndMillis()
+    {
+        return endMillis;
+    }
+
+    /**
+     * @return steps of the <code>@BeforeClass</code> methods of the test class
+     */
+    public List<String> getPreSteps()
+    {
+        return preSteps;
+    }
+
+    public List<String> getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return the stack trace of the failure, null if the test did not fail with an exception
+     */
+    public String getError()
+    {
+        if (throwable == null)
+        {
+            return null;
+        }
+        // rendered by the writer thread, not on the test thread
+        StringWriter sw = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    private static String statusOf(int status)
+    {
+        switch (status)
+        {
+            case ITestResult.SUCCESS:
+            case ITestResult.SUCCESS_PERCENTAGE_FAILURE:
+                return "PASSED";
+            case ITestResult.FAILURE:
+                return "FAILED";
+            case ITestResult.SKIP:
+                return "SKIPPED";
+            default:
+                return "";
+        }
+    }
+}
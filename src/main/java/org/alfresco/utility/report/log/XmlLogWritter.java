@@ -1,24 +1,31 @@
 package org.alfresco.utility.report.log;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.alfresco.utility.LogFactory;
 import org.alfresco.utility.Utility;
@@ -28,26 +35,38 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.testng.ITestContext;
 import org.testng.ITestResult;
-import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.ProcessingInstruction;
 
+/**
+ * Writes one XML log file per test context. The public methods only queue the work: a single writer thread owns the files and
+ * appends the queued tests in batches, so the TestNG callback threads never wait for the disk (unless
+ * <code>reports.logs.queueSize</code> tests are already waiting to be written) and parallel tests cannot interleave their output.
+ */
 public class XmlLogWritter
 {
     public static Logger LOG = LogFactory.getLogger();
 
     Properties tasProperties = new Properties();
     private String logPath;
-    private String fullPath;
     private final String dateFormat = "yyyy-MM-dd HH:mm:ss";
+    private int queueSize = 1024;
+
+    private static final byte[] TESTS_END = "</tests>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLASS_SUITE_END = "</class></suite>".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_BATCH = 256;
+
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final BlockingQueue<LogEvent> queue;
+    private final AtomicLong blockedCount = new AtomicLong();
+    private Thread writer;
+    /** open log files by test context, only used by the writer thread */
+    private final Map<ITestContext, LogFile> files = new HashMap<ITestContext, LogFile>();
 
     public XmlLogWritter()
     {
         try
         {
             tasProperties = Utility.getProperties(getClass(), "default.properties");
+            queueSize = Integer.parseInt(tasProperties.getProperty("reports.logs.queueSize", "1024"));
             logPath = tasProperties.getProperty("reports.path");
             if (StringUtils.isEmpty(logPath))
                 logPath = "./target/reports";
@@ -69,249 +88,398 @@ public class XmlLogWritter
         {
             LOG.error("Cannot initialize Log Management Settings:" + e1.getMessage());
         }
-
+        queue = new ArrayBlockingQueue<LogEvent>(Math.max(1, queueSize));
     }
 
+    /**
+     * Start a new log file for <context>. The file is kept open and tests are appended to it, the closing tags are
+     * rewritten after every batch so the file is always a valid XML document.
+     */
     public void generateXmlFile(ITestContext context)
     {
-        try
-        {
-            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-
-            // suite element
-            Document doc = docBuilder.newDocument();
-            doc.setXmlStandalone(true);
-            ProcessingInstruction pi = doc.createProcessingInstruction("xml-stylesheet", "type=\"text/xsl\" href=\"TransformLog.xsl\"");
-
-            Element rootElement = doc.createElement("suite");
-            doc.appendChild(rootElement);
-            doc.insertBefore(pi, rootElement);
-
-            // set attribute to suite element
-            Attr suiteName = doc.createAttribute("name");
-            suiteName.setValue(context.getCurrentXmlTest().getSuite().getName());
-            rootElement.setAttributeNode(suiteName);
-
-            // class element
-            Element className = doc.createElement("class");
-            rootElement.appendChild(className);
-
-            // set attribute class name
-            Attr classValue = doc.createAttribute("name");
-            classValue.setValue(context.getCurrentXmlTest().getSuite().getName());
-            className.setAttributeNode(classValue);
-
-            // start time
-            Element start = doc.createElement("start");
-            className.appendChild(start);
-
-            Element end = doc.createElement("end");
-            className.appendChild(end);
-
-            Element duration = doc.createElement("duration");
-            className.appendChild(duration);
-
-            Element total = doc.createElement("total");
-            className.appendChild(total);
-
-            Element passed = doc.createElement("passed");
-            className.appendChild(passed);
-
-            Element failed = doc.createElement("failed");
-            className.appendChild(failed);
-
-            Element skipped = doc.createElement("skipped");
-            className.appendChild(skipped);
-
-            Element rate = doc.createElement("rate");
-            className.appendChild(rate);
-
-            Element tests = doc.createElement("tests");
-            className.appendChild(tests);
-
-            // write the content into xml file
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            DOMSource source = new DOMSource(doc);
-            fullPath = logPath + File.separator + context.getCurrentXmlTest().getClasses().get(0).getName() + "-"
-                    + new SimpleDateFormat("yyyy-MM-dd_HHmmss").format(context.getStartDate()) + ".xml";
-
-            StreamResult result = new StreamResult(new File(fullPath));
-            transformer.transform(source, result);
-        }
-        catch (Exception e)
-        {
-            LOG.error("Cannot create the xml file log. Error: {}", e.getMessage());
-        }
+        String fileName = context.getCurrentXmlTest().getClasses().get(0).getName() + "-"
+                + new SimpleDateFormat("yyyy-MM-dd_HHmmss").format(context.getStartDate()) + ".xml";
+        String suiteName = context.getCurrentXmlTest().getSuite().getName();
+        enqueue(new LogEvent(context, () -> openFile(context, Paths.get(logPath, fileName), suiteName)));
     }
 
+    /**
+     * Complete the log file of <context> with the run summary. Returns once everything queued for it is on disk.
+     */
     public void setFinish(ITestContext context)
     {
-        Document doc = getLogFile(fullPath);
-
-        Node startTime = doc.getElementsByTagName("start").item(0);
-        startTime.setTextContent(new SimpleDateFormat(dateFormat).format(context.getStartDate()));
-        Node endTime = doc.getElementsByTagName("end").item(0);
-        endTime.setTextContent(new SimpleDateFormat(dateFormat).format(context.getEndDate()));
-
-        Node duration = doc.getElementsByTagName("duration").item(0);
-        duration.setTextContent(getDuration(context.getEndDate().getTime(), context.getStartDate().getTime()));
-
         int passed = context.getPassedTests().size();
         int failed = context.getFailedTests().size();
         int skipped = context.getSkippedTests().size();
         int total = passed + failed + skipped;
+        String rateValue = String.format("%.2f", ((double) passed * 100 / ((double) total)));
+        String start = new SimpleDateFormat(dateFormat).format(context.getStartDate());
+        String end = new SimpleDateFormat(dateFormat).format(context.getEndDate());
+        String duration = getDuration(context.getEndDate().getTime(), context.getStartDate().getTime());
 
-        Node totalTests = doc.getElementsByTagName("total").item(0);
-        totalTests.setTextContent(Integer.toString(total));
-
-        Node passedNode = doc.getElementsByTagName("passed").item(0);
-        passedNode.setTextContent(Integer.toString(passed));
+        awaitEvent(new LogEvent(context, () -> {
+            LogFile file = files.remove(context);
+            if (file != null)
+            {
+                file.finish(summary(start, end, duration, Integer.toString(total), Integer.toString(passed), Integer.toString(failed),
+                        Integer.toString(skipped), rateValue + "%"));
+            }
+        }));
+    }
 
-        Node failedNode = doc.getElementsByTagName("failed").item(0);
-        failedNode.setTextContent(Integer.toString(failed));
+    /**
+     * Queue <result> to be appended to the log file of its test context. The result is copied on the calling thread.
+     */
+    public void addTestExecution(ITestResult result)
+    {
+        enqueue(new LogEvent(result.getTestContext(), TestRecord.of(result)));
+    }
 
-        Node skippedNode = doc.getElementsByTagName("skipped").item(0);
-        skippedNode.setTextContent(Integer.toString(skipped));
+    /**
+     * Wait until everything queued so far is written to disk
+     */
+    public void flush()
+    {
+        awaitEvent(new LogEvent(null, () -> {
+        }));
+    }
 
-        Node rateNode = doc.getElementsByTagName("rate").item(0);
-        String rateValue = String.format("%.2f", ((double) passed * 100 / ((double) total)));
-        rateNode.setTextContent(rateValue + "%");
-        updateLog(doc);
+    /**
+     * @return number of times a caller had to wait because the queue was full
+     */
+    public long getBlockedCount()
+    {
+        return blockedCount.get();
     }
 
-    public void addTestExecution(ITestResult result, Map<String, ArrayList<String>> testSteps)
+    private void enqueue(LogEvent event)
     {
-        Document doc = getLogFile(fullPath);
-        Node tests = doc.getElementsByTagName("tests").item(0);
-        Node test = doc.createElement("test");
-        tests.appendChild(test);
-
-        Node name = doc.createElement("name");
-        name.appendChild(doc.createTextNode(result.getMethod().getMethodName()));
-        test.appendChild(name);
-
-        Node nodeStatus = doc.createElement("status");
-        nodeStatus.appendChild(doc.createTextNode(setStatus(result)));
-        test.appendChild(nodeStatus);
-
-        Node start = doc.createElement("start");
-        long startTime = result.getStartMillis();
-        start.appendChild(doc.createTextNode(new SimpleDateFormat(dateFormat).format(startTime)));
-        test.appendChild(start);
-
-        Node end = doc.createElement("end");
-        long endTime = result.getEndMillis();
-        end.appendChild(doc.createTextNode(new SimpleDateFormat(dateFormat).format(endTime)));
-        test.appendChild(end);
-
-        Node duration = doc.createElement("duration");
-        duration.appendChild(doc.createTextNode(getDuration(endTime, startTime)));
-        test.appendChild(duration);
-        
-        Node pres = doc.createElement("pres");
-        test.appendChild(pres);
-        Node preNode = null;
-        List<String> methodPres = testSteps.get(result.getTestClass().getName());
-        if(methodPres != null && methodPres.size() != 0){
-            for (String step : methodPres)
+        startWriter();
+        if (!queue.offer(event))
+        {
+            blockedCount.incrementAndGet();
+            try
+            {
+                queue.put(event);
+            }
+            catch (InterruptedException e)
             {
-                preNode = doc.createElement("pre");
-                preNode.appendChild(doc.createTextNode(step));
-                pres.appendChild(preNode);
+                Thread.currentThread().interrupt();
+                LOG.error("Interrupted while queueing for the xml file log, the event is lost");
+                event.done.countDown();
             }
         }
+    }
 
-        Node steps = doc.createElement("steps");
-        test.appendChild(steps);
-        Node stepNode = null;
-        List<String> methodSteps = testSteps.get(result.getMethod().getMethodName());
-        if (methodSteps != null && methodSteps.size() != 0)
+    private void awaitEvent(LogEvent event)
+    {
+        enqueue(event);
+        try
         {
-            for (String step : methodSteps)
-            {
-                stepNode = doc.createElement("step");
-                stepNode.appendChild(doc.createTextNode(step));
-                steps.appendChild(stepNode);
-            }
+            event.done.await();
         }
-        if (!result.isSuccess())
+        catch (InterruptedException e)
         {
-            if (result.getThrowable() != null)
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startWriter()
+    {
+        if (writer == null)
+        {
+            writer = new Thread(this::writeLoop, "tas-xml-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Takes whatever is queued, appends the tests of each file with one write and runs the other events in order.
+     * Errors are logged and the loop goes on: nothing else would take the queued events or release the callers waiting for them.
+     */
+    private void writeLoop()
+    {
+        List<LogEvent> batch = new ArrayList<LogEvent>(MAX_BATCH);
+        Map<LogFile, ByteArrayOutputStream> pending = new LinkedHashMap<LogFile, ByteArrayOutputStream>();
+        while (true)
+        {
+            try
+            {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (LogEvent event : batch)
+                {
+                    if (event.record != null)
+                    {
+                        LogFile file = files.get(event.context);
+                        if (file != null)
+                        {
+                            try
+                            {
+                                pending.computeIfAbsent(file, f -> new ByteArrayOutputStream(4096)).writeBytes(toXml(event.record));
+                            }
+                            catch (XMLStreamException | RuntimeException e)
+                            {
+                                LOG.error("Cannot add test {} to the xml file log. Error: {}", event.record.getName(), e.getMessage());
+                            }
+                        }
+                        continue;
+                    }
+                    writePending(pending);
+                    try
+                    {
+                        event.action.run();
+                    }
+                    catch (Exception e)
+                    {
+                        LOG.error("Cannot update the xml file log. Error: {}", e.getMessage());
+                    }
+                    finally
+                    {
+                        event.done.countDown();
+                    }
+                }
+                writePending(pending);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            catch (RuntimeException e)
             {
-                if (result.getThrowable().getStackTrace() != null)
+                LOG.error("Cannot update the xml file log, the rest of the batch is dropped. Error: {}", e.getMessage(), e);
+            }
+            finally
+            {
+                for (LogEvent event : batch)
                 {
-                    StringWriter sw = new StringWriter();
-                    result.getThrowable().printStackTrace(new PrintWriter(sw));
-                    Node error = doc.createElement("error");
-                    error.appendChild(doc.createTextNode(sw.toString()));
-                    test.appendChild(error);
+                    event.done.countDown();
                 }
+                batch.clear();
+                pending.clear();
             }
         }
-        updateLog(doc);
     }
 
-    private String setStatus(ITestResult result)
+    private void writePending(Map<LogFile, ByteArrayOutputStream> pending)
     {
-        String status = "";
-        switch (result.getStatus())
+        for (Map.Entry<LogFile, ByteArrayOutputStream> tests : pending.entrySet())
         {
-            case ITestResult.SUCCESS:
-                status = "PASSED";
-                break;
-            case ITestResult.FAILURE:
-                status = "FAILED";
-                break;
-            case ITestResult.SKIP:
-                status = "SKIPPED";
-                break;
-            case ITestResult.SUCCESS_PERCENTAGE_FAILURE:
-                status = "PASSED";
-                break;
-            default:
-                break;
+            try
+            {
+                tests.getKey().appendTests(tests.getValue().toByteArray());
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOG.error("Cannot update the xml file log. Error: {}", e.getMessage());
+            }
         }
-        return status;
+        pending.clear();
     }
 
-    private void updateLog(Document document)
+    private void openFile(ITestContext context, Path path, String suiteName) throws IOException, XMLStreamException
     {
+        LogFile previous = files.remove(context);
+        if (previous != null)
+        {
+            previous.close();
+        }
+        byte[] header = toXml(writer -> {
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeProcessingInstruction("xml-stylesheet", "type=\"text/xsl\" href=\"TransformLog.xsl\"");
+            writer.writeStartElement("suite");
+            writer.writeAttribute("name", suiteName);
+            writer.writeStartElement("class");
+            writer.writeAttribute("name", suiteName);
+            writer.writeStartElement("tests");
+            // closes the start tag of <tests>
+            writer.writeCharacters("");
+        });
+        LogFile file = new LogFile(path);
         try
         {
-            // write the content into xml file
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            DOMSource source = new DOMSource(document);
-            StreamResult streamResult = new StreamResult(fullPath);
-            transformer.transform(source, streamResult);
+            file.append(header, summary("", "", "", "", "", "", "", ""));
         }
-        catch (Exception e)
+        catch (IOException e)
         {
-            LOG.error("Cannot update the xml file log. Error: {}", e.getMessage());
+            file.close();
+            throw e;
         }
+        files.put(context, file);
     }
 
-    private Document getLogFile(String path)
+    private byte[] toXml(TestRecord record) throws XMLStreamException
     {
-        Document doc = null;
-        try
+        return toXml(writer -> {
+            writer.writeStartElement("test");
+            writeElement(writer, "name", record.getName());
+            writeElement(writer, "status", record.getStatus());
+            writeElement(writer, "start", new SimpleDateFormat(dateFormat).format(record.getStartMillis()));
+            writeElement(writer, "end", new SimpleDateFormat(dateFormat).format(record.getEndMillis()));
+            writeElement(writer, "duration", getDuration(record.getEndMillis(), record.getStartMillis()));
+
+            writer.writeStartElement("pres");
+            for (String step : record.getPreSteps())
+            {
+                writeElement(writer, "pre", step);
+            }
+            writer.writeEndElement();
+
+            writer.writeStartElement("steps");
+            for (String step : record.getSteps())
+            {
+                writeElement(writer, "step", step);
+            }
+            writer.writeEndElement();
+
+            String error = record.getError();
+            if (error != null)
+            {
+                writeElement(writer, "error", error);
+            }
+            writer.writeEndElement();
+        });
+    }
+
+    /**
+     * @return closing tags of the log with the run summary
+     */
+    private byte[] summary(String start, String end, String duration, String total, String passed, String failed, String skipped, String rate)
+            throws XMLStreamException
+    {
+        byte[] summary = toXml(writer -> {
+            writeElement(writer, "start", start);
+            writeElement(writer, "end", end);
+            writeElement(writer, "duration", duration);
+            writeElement(writer, "total", total);
+            writeElement(writer, "passed", passed);
+            writeElement(writer, "failed", failed);
+            writeElement(writer, "skipped", skipped);
+            writeElement(writer, "rate", rate);
+        });
+        ByteBuffer tail = ByteBuffer.allocate(TESTS_END.length + summary.length + CLASS_SUITE_END.length);
+        tail.put(TESTS_END).put(summary).put(CLASS_SUITE_END);
+        return tail.array();
+    }
+
+    private byte[] toXml(XmlFragment fragment) throws XMLStreamException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+        fragment.writeTo(writer);
+        writer.flush();
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value) throws XMLStreamException
+    {
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private String getDuration(long endTime, long startTime)
+    {
+        return new SimpleDateFormat("mm:ss:SSS").format(new Date(endTime - startTime));
+    }
+
+    @FunctionalInterface
+    private interface XmlFragment
+    {
+        void writeTo(XMLStreamWriter writer) throws XMLStreamException;
+    }
+
+    @FunctionalInterface
+    private interface LogAction
+    {
+        void run() throws IOException, XMLStreamException;
+    }
+
+    /**
+     * Work for the writer thread: a test record to append or an action to run
+     */
+    private static final class LogEvent
+    {
+        private final ITestContext context;
+        private final TestRecord record;
+        private final LogAction action;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        LogEvent(ITestContext context, TestRecord record)
         {
-            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = docFactory.newDocumentBuilder();
-            doc = db.parse(fullPath);
+            this.context = context;
+            this.record = record;
+            this.action = null;
         }
-        catch (Exception e)
+
+        LogEvent(ITestContext context, LogAction action)
         {
-            LOG.error("Unable to parse xml file. Error: {}", e.getMessage());
+            this.context = context;
+            this.record = null;
+            this.action = action;
         }
-        return doc;
     }
 
-    private String getDuration(long endTime, long startTime)
+    /**
+     * Log file of one test context, only used by the writer thread
+     */
+    private static final class LogFile
     {
-        return new SimpleDateFormat("mm:ss:SSS").format(new Date(endTime - startTime));
-    }
+        private final FileChannel channel;
+        private long tailPosition;
+        private byte[] tail = new byte[0];
 
+        LogFile(Path path) throws IOException
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void appendTests(byte[] tests) throws IOException
+        {
+            append(tests, tail);
+        }
+
+        void finish(byte[] summary) throws IOException
+        {
+            try
+            {
+                append(new byte[0], summary);
+            }
+            finally
+            {
+                close();
+            }
+        }
+
+        /**
+         * Write <record> where the closing tags currently are, followed by <newTail>
+         */
+        void append(byte[] record, byte[] newTail) throws IOException
+        {
+            channel.position(tailPosition);
+            ByteBuffer buffer = ByteBuffer.allocate(record.length + newTail.length);
+            buffer.put(record).put(newTail).flip();
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            tailPosition += record.length;
+            channel.truncate(tailPosition + newTail.length);
+            tail = newTail;
+        }
+
+        void close()
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                LOG.error("Cannot close the xml file log. Error: {}", e.getMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package org.alfresco.utility.report.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.alfresco.utility.report.metrics.MetricsRegistry.MetricKey;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the content of a {@link MetricsRegistry} as JSON or as Prometheus text exposition format.
+ * Histograms are exported with their p50, p95 and p99 values (a Prometheus "summary" in seconds), counters as they are.
+ */
+public class MetricsExporter
+{
+    public static final double[] PERCENTILES = { 50, 95, 99 };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final MetricsRegistry registry;
+
+    public MetricsExporter(MetricsRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    public void writeJson(OutputStream out) throws IOException
+    {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8))
+        {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("generatedAt", Instant.now().toString());
+
+            generator.writeArrayFieldStart("histograms");
+            for (Entry<MetricKey, LatencyHistogram> histogram : registry.getHistograms().entrySet())
+            {
+                LatencyHistogram values = histogram.getValue();
+                generator.writeStartObject();
+                writeKey(generator, histogram.getKey());
+                generator.writeNumberField("count", values.getCount());
+                generator.writeNumberField("totalMillis", values.getTotalMillis());
+                generator.writeNumberField("meanMillis", values.getMeanMillis());
+                generator.writeNumberField("minMillis", values.getMinMillis());
+                generator.writeNumberField("maxMillis", values.getMaxMillis());
+                for (double percentile : PERCENTILES)
+                {
+                    generator.writeNumberField(String.format("p%dMillis", (int) percentile), values.getPercentileMillis(percentile));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("counters");
+            for (Entry<MetricKey, LongAdder> counter : registry.getCounters().entrySet())
+            {
+                generator.writeStartObject();
+                writeKey(generator, counter.getKey());
+                generator.writeNumberField("value", counter.getValue().sum());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    public void writePrometheus(Writer out) throws IOException
+    {
+        String lastName = null;
+        for (Entry<MetricKey, LatencyHistogram> histogram : registry.getHistograms().entrySet())
+        {
+            MetricKey key = histogram.getKey();
+            LatencyHistogram values = histogram.getValue();
+            String name = key.getName() + "_seconds";
+            if (!name.equals(lastName))
+            {
+                out.write(String.format("# TYPE %s summary%n", name));
+                lastName = name;
+            }
+            for (double percentile : PERCENTILES)
+            {
+                out.write(String.format("%s%s %s%n", name, labels(key.getLabels(), String.valueOf(percentile / 100)),
+                        seconds(values.getPercentileMillis(percentile))));
+            }
+            out.write(String.format("%s_sum%s %s%n", name, labels(key.getLabels(), null), seconds(values.getTotalMillis())));
+            out.write(String.format("%s_count%s %d%n", name, labels(key.getLabels(), null), values.getCount()));
+        }
+        for (Entry<MetricKey, LongAdder> counter : registry.getCounters().entrySet())
+        {
+            MetricKey key = counter.getKey();
+            if (!key.getName().equals(lastName))
+            {
+                out.write(String.format("# TYPE %s counter%n", key.getName()));
+                lastName = key.getName();
+            }
+            out.write(String.format("%s%s %d%n", key.getName(), labels(key.getLabels(), null), counter.getValue().sum()));
+        }
+        out.flush();
+    }
+
+    private static void writeKey(JsonGenerator generator, MetricKey key) throws IOException
+    {
+        generator.writeStringField("name", key.getName());
+        generator.writeObjectFieldStart("labels");
+        for (Entry<String, String> label : key.getLabels().entrySet())
+        {
+            generator.writeStringField(label.getKey(), label.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private static String labels(Map<String, String> labels, String quantile)
+    {
+        if (labels.isEmpty() && quantile == null)
+        {
+            return "";
+        }
+        StringBuilder text = new StringBuilder("{");
+        for (Entry<String, String> label : labels.entrySet())
+        {
+            if (text.length() > 1)
+            {
+                text.append(',');
+            }
+            text.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+        }
+        if (quantile != null)
+        {
+            if (text.length() > 1)
+            {
+                text.append(',');
+            }
+            text.append("quantile=\"").append(quantile).append('"');
+        }
+        return text.append('}').toString();
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(double millis)
+    {
+        return String.valueOf(millis / 1000);
+    }
+}
@@ -0,0 +1,174 @@
+package org.alfresco.utility.report.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.Utility;
+import org.alfresco.utility.exception.TestConfigurationException;
+import org.alfresco.utility.report.log.Step;
+import org.alfresco.utility.wait.Wait;
+import org.slf4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * Records timing distributions of the executed tests in {@link MetricsRegistry#getDefault()}:
+ * <ul>
+ * <li><code>tas_test_duration</code>: duration of each test, overall and per test class</li>
+ * <li><code>tas_group_duration</code>: duration of each test per TestNG group</li>
+ * <li><code>tas_dataprep_step_duration</code>: time from each "DATAPREP" {@link Step#STEP(String)} to the next step (or to the end of
+ * the test)</li>
+ * <li><code>tas_test_dataprep_time</code> and <code>tas_test_wait_time</code>: time each test spent in data preparation and in
+ * {@link Wait}</li>
+ * <li><code>tas_tests_total</code>: number of tests per status</li>
+ * </ul>
+ * The registry is cleared when a suite starts. When a suite finishes, p50/p95/p99 summaries of that suite are written to
+ * <code>reports.path/metrics</code> as JSON and Prometheus text, and the
+ * durations of the passed tests and of the REST endpoints are stored in the {@link PerformanceBaseline} used to flag regressions.
+ * Add it in your suite xml file:
+ * <listeners>
+ * <listener class-name="org.alfresco.utility.report.metrics.MetricsListener"></listener>
+ * </listeners>
+ */
+public class MetricsListener implements ITestListener, ISuiteListener
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    private static final String WAIT_START_ATTRIBUTE = "metricsWaitStartMillis";
+    private static final String DATAPREP_STEP_PREFIX = "DATAPREP";
+
+    private final MetricsRegistry registry = MetricsRegistry.getDefault();
+
+    @Override
+    public void onTestStart(ITestResult result)
+    {
+        result.setAttribute(WAIT_START_ATTRIBUTE, Wait.getThreadTotalWaitedMillis());
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result)
+    {
+        record(result, "PASSED");
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result)
+    {
+        record(result, "FAILED");
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result)
+    {
+        record(result, "SKIPPED");
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result)
+    {
+        record(result, "PASSED");
+    }
+
+    @Override
+    public void onStart(ITestContext context)
+    {
+        // nothing to do here
+    }
+
+    @Override
+    public void onFinish(ITestContext context)
+    {
+        // nothing to do here
+    }
+
+    @Override
+    public void onStart(ISuite suite)
+    {
+        // the exports of each suite only contain its own metrics, the REST endpoints of the previous suites stay in the baseline of this run
+        PerformanceBaseline.getDefault().recordEndpoints(registry);
+        registry.clear();
+    }
+
+    @Override
+    public void onFinish(ISuite suite)
+    {
+        try
+        {
+            String reportsPath = Utility.getProperties(getClass(), Utility.getEnvironmentPropertyFile()).getProperty("reports.path", "./target/reports");
+            Path metricsFolder = Files.createDirectories(Paths.get(reportsPath, "metrics"));
+            String fileName = suite.getName().replaceAll("[^A-Za-z0-9._-]", "_") + "-metrics";
+
+            MetricsExporter exporter = new MetricsExporter(registry);
+            try (OutputStream json = Files.newOutputStream(metricsFolder.resolve(fileName + ".json")))
+            {
+                exporter.writeJson(json);
+            }
+            try (Writer prometheus = Files.newBufferedWriter(metricsFolder.resolve(fileName + ".prom"), StandardCharsets.UTF_8))
+            {
+                exporter.writePrometheus(prometheus);
+            }
+            LOG.info("Suite {} metrics: tests {}, data preparation steps {}", suite.getName(), registry.histogram("tas_test_duration"),
+                    registry.histogram("tas_dataprep_step_duration"));
+
+            PerformanceBaseline baseline = PerformanceBaseline.getDefault();
+            for (Regression regression : baseline.getRegressions(""))
+            {
+                LOG.warn("Performance regression: {}", regression);
+            }
+            baseline.save();
+        }
+        catch (TestConfigurationException | IOException e)
+        {
+            LOG.error("Cannot write the metrics of suite {}: {}", suite.getName(), e.getMessage());
+        }
+    }
+
+    private void record(ITestResult result, String status)
+    {
+        long endNanos = System.nanoTime();
+        long duration = result.getEndMillis() - result.getStartMillis();
+        registry.histogram("tas_test_duration").recordMillis(duration);
+        registry.histogram("tas_test_duration", "class", result.getTestClass().getName()).recordMillis(duration);
+        for (String group : result.getMethod().getGroups())
+        {
+            registry.histogram("tas_group_duration", "group", group).recordMillis(duration);
+        }
+        registry.counter("tas_tests_total", "status", status).increment();
+        if ("PASSED".equals(status))
+        {
+            PerformanceBaseline.getDefault().record(PerformanceBaseline.testKey(result), duration);
+        }
+
+        List<String> steps = Step.getSteps(result);
+        List<Long> stepStarts = Step.getStepStartNanos(result);
+        long dataPrepNanos = 0;
+        for (int i = 0; i < stepStarts.size() && i < steps.size(); i++)
+        {
+            if (steps.get(i).startsWith(DATAPREP_STEP_PREFIX))
+            {
+                long stepEnd = i + 1 < stepStarts.size() ? stepStarts.get(i + 1) : endNanos;
+                long stepNanos = Math.max(0, stepEnd - stepStarts.get(i));
+                registry.histogram("tas_dataprep_step_duration").record(stepNanos, TimeUnit.NANOSECONDS);
+                dataPrepNanos += stepNanos;
+            }
+        }
+        registry.histogram("tas_test_dataprep_time").record(dataPrepNanos, TimeUnit.NANOSECONDS);
+
+        Object waitStart = result.getAttribute(WAIT_START_ATTRIBUTE);
+        if (waitStart != null)
+        {
+            registry.histogram("tas_test_wait_time").recordMillis(Math.max(0, Wait.getThreadTotalWaitedMillis() - (Long) waitStart));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.alfresco.utility.report.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms and counters, optionally split by labels, shared by all the metrics producers of a run.
+ * <code>
+ * MetricsRegistry.getDefault().histogram("tas_test_duration", "group", "sanity").recordMillis(elapsed);
+ * MetricsRegistry.getDefault().counter("tas_tests_total", "status", "PASSED").increment();
+ * </code>
+ * Use {@link MetricsExporter} to write them as JSON or Prometheus text.
+ */
+public class MetricsRegistry
+{
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<MetricKey, LatencyHistogram> histograms = new ConcurrentHashMap<MetricKey, LatencyHistogram>();
+    private final Map<MetricKey, LongAdder> counters = new ConcurrentHashMap<MetricKey, LongAdder>();
+
+    /**
+     * @return the registry used by the listeners and clients of this library
+     */
+    public static MetricsRegistry getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * @param name
+     * @param labels pairs of label name and value
+     * @return the histogram of <name> with <labels>, created if needed
+     */
+    public LatencyHistogram histogram(String name, String... labels)
+    {
+        return histograms.computeIfAbsent(new MetricKey(name, labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * @param name
+     * @param labels pairs of label name and value
+     * @return the counter of <name> with <labels>, created if needed
+     */
+    public LongAdder counter(String name, String... labels)
+    {
+        return counters.computeIfAbsent(new MetricKey(name, labels), key -> new LongAdder());
+    }
+
+    /**
+     * @return all histograms sorted by name and labels
+     */
+    public Map<MetricKey, LatencyHistogram> getHistograms()
+    {
+        return Collections.unmodifiableMap(new TreeMap<MetricKey, LatencyHistogram>(histograms));
+    }
+
+    /**
+     * @return all counters sorted by name and labels
+     */
+    public Map<MetricKey, LongAdder> getCounters()
+    {
+        return Collections.unmodifiableMap(new TreeMap<MetricKey, LongAdder>(counters));
+    }
+
+    public void clear()
+    {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Name and labels of a metric
+     */
+    public static final class MetricKey implements Comparable<MetricKey>
+    {
+        private final String name;
+        private final Map<String, String> labels;
+        private final String id;
+
+        MetricKey(String name, String... labels)
+        {
+            if (labels.length % 2 != 0)
+            {
+                throw new IllegalArgumentException("Labels must be pairs of name and value: " + String.join(",", labels));
+            }
+            Map<String, String> labelMap = new LinkedHashMap<String, String>();
+            for (int i = 0; i < labels.length; i += 2)
+            {
+                labelMap.put(labels[i], labels[i + 1] == null ? "" : labels[i + 1]);
+            }
+            this.name = name;
+            this.labels = Collections.unmodifiableMap(labelMap);
+            this.id = name + labelMap;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Map<String, String> getLabels()
+        {
+            return labels;
+        }
+
+        @Override
+        public int compareTo(MetricKey other)
+        {
+            return id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof MetricKey && id.equals(((MetricKey) other).id);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(id);
+        }
+
+        @Override
+        public String toString()
+        {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package org.alfresco.utility.report.metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.Utility;
+import org.alfresco.utility.exception.TestConfigurationException;
+import org.alfresco.utility.report.metrics.MetricsRegistry.MetricKey;
+import org.slf4j.Logger;
+import org.testng.ITestResult;
+
+/**
+ * Median durations of the tests and REST endpoints over the last <code>reports.baseline.runs</code> runs, kept in
+ * <code>reports.baseline.file</code> so that nightly runs can be compared with each other.
+ * A value of the current run is a {@link Regression} if it is above
+ * <code>median + max(reports.baseline.threshold * sigma, median * reports.baseline.minSlowdownPercent / 100, reports.baseline.minSlowdownMillis)</code>,
+ * where sigma is estimated from the median absolute deviation of the previous runs, so a single slow night does not widen the baseline.
+ * Nothing is reported until <code>reports.baseline.minRuns</code> runs are stored.
+ * The file is columnar: the list of keys followed by one column of float values per run, oldest first.
+ */
+public class PerformanceBaseline
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    public static final String TEST_PREFIX = "test:";
+    public static final String ENDPOINT_PREFIX = "endpoint:";
+
+    private static final int MAGIC = 0x54415342;
+    private static final int VERSION = 1;
+    private static final double MAD_TO_SIGMA = 1.4826;
+
+    private static PerformanceBaseline defaultBaseline;
+
+    private final Path file;
+    private final int maxRuns;
+    private final int minRuns;
+    private final double threshold;
+    private final double minSlowdownPercent;
+    private final double minSlowdownMillis;
+
+    private final List<Long> runTimestamps = new ArrayList<Long>();
+    private final Map<String, float[]> history = new HashMap<String, float[]>();
+    private final Map<String, LatencyHistogram> currentRun = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final long runTimestamp = System.currentTimeMillis();
+
+    /**
+     * @return the baseline configured in the environment properties, loaded once per JVM
+     */
+    public static synchronized PerformanceBaseline getDefault()
+    {
+        if (defaultBaseline == null)
+        {
+            Properties properties;
+            try
+            {
+                properties = Utility.getProperties(PerformanceBaseline.class, Utility.getEnvironmentPropertyFile());
+            }
+            catch (TestConfigurationException e)
+            {
+                LOG.warn("Cannot read environment properties, using default baseline settings: {}", e.getMessage());
+                properties = new Properties();
+            }
+            defaultBaseline = new PerformanceBaseline(properties);
+        }
+        return defaultBaseline;
+    }
+
+    public PerformanceBaseline(Properties properties)
+    {
+        file = Paths.get(properties.getProperty("reports.baseline.file", "tas-baseline.bin"));
+        maxRuns = Integer.parseInt(properties.getProperty("reports.baseline.runs", "10"));
+        minRuns = Integer.parseInt(properties.getProperty("reports.baseline.minRuns", "3"));
+        threshold = Double.parseDouble(properties.getProperty("reports.baseline.threshold", "3"));
+        minSlowdownPercent = Double.parseDouble(properties.getProperty("reports.baseline.minSlowdownPercent", "20"));
+        minSlowdownMillis = Double.parseDouble(properties.getProperty("reports.baseline.minSlowdownMillis", "100"));
+        try
+        {
+            load();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Cannot read performance baseline {}, starting a new one: {}", file.toAbsolutePath(), e.getMessage());
+            runTimestamps.clear();
+            history.clear();
+        }
+    }
+
+    /**
+     * @return <code>test:</code> key of <result>, the first parameter is part of the key for tests with a data provider
+     */
+    public static String testKey(ITestResult result)
+    {
+        String key = TEST_PREFIX + result.getTestClass().getName() + "#" + result.getMethod().getMethodName();
+        Object[] parameters = result.getParameters();
+        if (parameters != null && parameters.length > 0)
+        {
+            key += "[" + parameters[0] + "]";
+        }
+        return key;
+    }
+
+    /**
+     * Add a duration of <key> to the current run
+     */
+    public void record(String key, long millis)
+    {
+        currentRun.computeIfAbsent(key, k -> new LatencyHistogram()).recordMillis(millis);
+    }
+
+    /**
+     * Add the REST endpoint durations of <registry> to the current run, so they are kept once the registry is cleared for the next suite
+     */
+    public void recordEndpoints(MetricsRegistry registry)
+    {
+        for (Map.Entry<MetricKey, LatencyHistogram> endpoint : registry.getHistograms().entrySet())
+        {
+            if (isEndpoint(endpoint.getKey(), endpoint.getValue()))
+            {
+                currentRun.computeIfAbsent(endpointKey(endpoint.getKey()), k -> new LatencyHistogram()).add(endpoint.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the regression if <millis> is significantly above the baseline of <key>, null otherwise
+     */
+    public Regression check(String key, double millis)
+    {
+        float[] values;
+        synchronized (this)
+        {
+            values = history.get(key);
+        }
+        if (values == null)
+        {
+            return null;
+        }
+        double[] previous = Arrays.stream(toDoubles(values)).filter(value -> !Double.isNaN(value)).sorted().toArray();
+        if (previous.length < minRuns)
+        {
+            return null;
+        }
+        double median = median(previous);
+        double[] deviations = Arrays.stream(previous).map(value -> Math.abs(value - median)).sorted().toArray();
+        double sigma = MAD_TO_SIGMA * median(deviations);
+        double limit = median + Math.max(threshold * sigma, Math.max(median * minSlowdownPercent / 100, minSlowdownMillis));
+        return millis > limit ? new Regression(key, millis, median, limit, previous.length) : null;
+    }
+
+    /**
+     * @param prefix {@link #TEST_PREFIX}, {@link #ENDPOINT_PREFIX} or empty for all
+     * @return regressions of the current run so far, the most significant first
+     */
+    public List<Regression> getRegressions(String prefix)
+    {
+        List<Regression> regressions = new ArrayList<Regression>();
+        for (Map.Entry<String, Double> value : getCurrentValues().entrySet())
+        {
+            if (value.getKey().startsWith(prefix))
+            {
+                Regression regression = check(value.getKey(), value.getValue());
+                if (regression != null)
+                {
+                    regressions.add(regression);
+                }
+            }
+        }
+        Collections.sort(regressions);
+        return regressions;
+    }
+
+    /**
+     * @return number of previous runs in the baseline file
+     */
+    public synchronized int getRunCount()
+    {
+        return runTimestamps.size();
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Store the medians of the current run (tests recorded with {@link #record(String, long)} and the REST endpoints of
+     * {@link MetricsRegistry#getDefault()} and of {@link #recordEndpoints(MetricsRegistry)}) as the newest run, dropping the oldest runs above <code>reports.baseline.runs</code>.
+     * It can be called several times, e.g. once per suite: the current run is replaced, not added again.
+     */
+    public synchronized void save() throws IOException
+    {
+        Map<String, Double> current = getCurrentValues();
+        int previousRuns = Math.min(runTimestamps.size(), Math.max(0, maxRuns - 1));
+        int dropped = runTimestamps.size() - previousRuns;
+        TreeSet<String> keys = new TreeSet<String>(current.keySet());
+        for (Map.Entry<String, float[]> entry : history.entrySet())
+        {
+            // keys that were not seen in any of the kept runs are forgotten
+            for (int run = dropped; run < entry.getValue().length; run++)
+            {
+                if (!Float.isNaN(entry.getValue()[run]))
+                {
+                    keys.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+
+        Path temp = file.toAbsolutePath().resolveSibling(file.getFileName() + ".tmp");
+        if (temp.getParent() != null)
+        {
+            Files.createDirectories(temp.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(previousRuns + 1);
+            for (int run = dropped; run < runTimestamps.size(); run++)
+            {
+                out.writeLong(runTimestamps.get(run));
+            }
+            out.writeLong(runTimestamp);
+            out.writeInt(keys.size());
+            for (String key : keys)
+            {
+                out.writeUTF(key);
+            }
+            for (int run = dropped; run < runTimestamps.size(); run++)
+            {
+                for (String key : keys)
+                {
+                    float[] values = history.get(key);
+                    out.writeFloat(values == null ? Float.NaN : values[run]);
+                }
+            }
+            for (String key : keys)
+            {
+                Double value = current.get(key);
+                out.writeFloat(value == null ? Float.NaN : value.floatValue());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Performance baseline {} updated with {} values, {} runs", file.toAbsolutePath(), current.size(), previousRuns + 1);
+    }
+
+    /**
+     * @return median of the current run for each test and REST endpoint
+     */
+    private Map<String, Double> getCurrentValues()
+    {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>(currentRun);
+        for (Map.Entry<MetricKey, LatencyHistogram> endpoint : MetricsRegistry.getDefault().getHistograms().entrySet())
+        {
+            if (isEndpoint(endpoint.getKey(), endpoint.getValue()))
+            {
+                // durations of the suites already finished (see recordEndpoints) plus the ones of the running suite
+                LatencyHistogram histogram = new LatencyHistogram();
+                LatencyHistogram previous = histograms.get(endpointKey(endpoint.getKey()));
+                if (previous != null)
+                {
+                    histogram.add(previous);
+                }
+                histogram.add(endpoint.getValue());
+                histograms.put(endpointKey(endpoint.getKey()), histogram);
+            }
+        }
+
+        Map<String, Double> values = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+        {
+            values.put(entry.getKey(), entry.getValue().getPercentileMillis(50));
+        }
+        return values;
+    }
+
+    private static boolean isEndpoint(MetricKey key, LatencyHistogram histogram)
+    {
+        return "tas_http_request_duration".equals(key.getName()) && histogram.getCount() > 0;
+    }
+
+    private static String endpointKey(MetricKey key)
+    {
+        return ENDPOINT_PREFIX + key.getLabels().get("method") + " " + key.getLabels().get("endpoint");
+    }
+
+    private synchronized void load() throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("not a performance baseline file");
+            }
+            int runs = in.readInt();
+            for (int run = 0; run < runs; run++)
+            {
+                runTimestamps.add(in.readLong());
+            }
+            String[] keys = new String[in.readInt()];
+            for (int i = 0; i < keys.length; i++)
+            {
+                keys[i] = in.readUTF();
+                history.put(keys[i], new float[runs]);
+            }
+            for (int run = 0; run < runs; run++)
+            {
+                for (String key : keys)
+                {
+                    history.get(key)[run] = in.readFloat();
+                }
+            }
+            LOG.info("Loaded performance baseline {}: {} values, {} runs", file.toAbsolutePath(), keys.length, runs);
+        }
+        catch (NoSuchFileException e)
+        {
+            LOG.info("No performance baseline yet, it will be created in {}", file.toAbsolutePath());
+        }
+    }
+
+    private static double[] toDoubles(float[] values)
+    {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    private static double median(double[] sorted)
+    {
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
@@ -0,0 +1,85 @@
+package org.alfresco.utility.report.metrics;
+
+/**
+ * A test or REST endpoint that is significantly slower than its {@link PerformanceBaseline}
+ */
+public class Regression implements Comparable<Regression>
+{
+    private final String key;
+    private final double currentMillis;
+    private final double baselineMillis;
+    private final double thresholdMillis;
+    private final int runs;
+
+    public Regression(String key, double currentMillis, double baselineMillis, double thresholdMillis, int runs)
+    {
+        this.key = key;
+        this.currentMillis = currentMillis;
+        this.baselineMillis = baselineMillis;
+        this.thresholdMillis = thresholdMillis;
+        this.runs = runs;
+    }
+
+    /**
+     * @return baseline key, like <code>test:org.alfresco.MyTest#myTest</code> or <code>endpoint:POST nodes/{id}/children</code>
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return the key without its <code>test:</code> or <code>endpoint:</code> prefix
+     */
+    public String getName()
+    {
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    public double getCurrentMillis()
+    {
+        return currentMillis;
+    }
+
+    /**
+     * @return median of the previous runs
+     */
+    public double getBaselineMillis()
+    {
+        return baselineMillis;
+    }
+
+    /**
+     * @return duration above which the current value is reported as a regression
+     */
+    public double getThresholdMillis()
+    {
+        return thresholdMillis;
+    }
+
+    /**
+     * @return number of previous runs the baseline is computed from
+     */
+    public int getRuns()
+    {
+        return runs;
+    }
+
+    public double getSlowdownPercent()
+    {
+        return baselineMillis <= 0 ? 100.0 : (currentMillis - baselineMillis) * 100.0 / baselineMillis;
+    }
+
+    @Override
+    public int compareTo(Regression other)
+    {
+        return Double.compare(other.getSlowdownPercent(), getSlowdownPercent());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s took %.0fms, %.0f%% slower than the baseline of %.0fms (threshold %.0fms, %d runs)", getName(), currentMillis,
+                getSlowdownPercent(), baselineMillis, thresholdMillis, runs);
+    }
+}
@@ -1,12 +1,7 @@
 package org.alfresco.utility.testrail;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.alfresco.utility.Utility;
-import org.alfresco.utility.report.log.Step;
 import org.alfresco.utility.testrail.annotation.TestRail;
-import org.alfresco.utility.testrail.core.TestCaseDetail;
 import org.alfresco.utility.testrail.core.TestRailExecutor;
 import org.testng.ISuite;
 import org.testng.ISuiteListener;
@@ -24,14 +19,14 @@ import org.testng.ITestResult;
  * in memory.
  * - when the test is executed if the test is not in temporary collection we add it (make a post request to /add_case)
  * - after test execution, for our test object we define the status and other details from ITestResult
- * - after the entire tests are executed, we traverse the list of all tests executed and bulk upload their results in TestRail with just one query command.
+ * - after the entire tests are executed, we bulk upload their results in TestRail in chunks (or periodically if testManagement.resultsFlushIntervalSeconds
+ * is set), see {@link org.alfresco.utility.testrail.core.TestRailResultUploader}.
  * 
  * @author Paul Brodner
  */
 public class TestRailExecutorListener implements ISuiteListener, ITestListener
 {
     private static TestRailExecutor testRailExecutor = new TestRailExecutor();
-    private static List<TestCaseDetail> currentTestCases = new ArrayList<TestCaseDetail>();
 
     @Override
     public void onStart(ISuite suite)
@@ -58,7 +53,7 @@ public class TestRailExecutorListener implements ISuiteListener, ITestListener
     {
         try
         {
-            testRailExecutor.addResultsForCases(currentTestCases);
+            testRailExecutor.finishCurrentSuiteRun();
         }
         catch (Exception e)
         {
@@ -69,7 +64,7 @@ public class TestRailExecutorListener implements ISuiteListener, ITestListener
     @Override
     public void onTestStart(ITestResult currentTest)
     {
-        Step.testSteps.clear();
+        // nothing to do here
     }
 
     @Override
@@ -99,7 +94,7 @@ public class TestRailExecutorListener implements ISuiteListener, ITestListener
     @Override
     public void onStart(ITestContext context)
     {
-        Step.testSteps.clear();
+        // nothing to do here
     }
 
     @Override
@@ -115,7 +110,7 @@ public class TestRailExecutorListener implements ISuiteListener, ITestListener
         {
             if (testRailExecutor.isEnabled())
             {
-                currentTestCases.add(testRailExecutor.uploadTestCase(result));
+                testRailExecutor.addResult(testRailExecutor.uploadTestCase(result));
             }
         }
     }
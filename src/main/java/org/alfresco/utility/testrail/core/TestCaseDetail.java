@@ -54,14 +54,16 @@ public class TestCaseDetail
         setElapsed(currentTest.getEndMillis() - currentTest.getStartMillis());
 
         StringBuilder notesSB = new StringBuilder("");
-        if (Step.testSteps.get(getResult().getTestClass().getName()) != null)
+        List<String> classSteps = Step.getClassSteps(result);
+        if (!classSteps.isEmpty())
         {
-            notesSB.append("Dataprep\n========\n* ").append(String.join("\n* ", Step.testSteps.get(result.getTestClass().getName())));
+            notesSB.append("Dataprep\n========\n* ").append(String.join("\n* ", classSteps));
         }
 
-        if (Step.testSteps.get(result.getMethod().getMethodName()) != null)
+        List<String> testSteps = Step.getSteps(result);
+        if (!testSteps.isEmpty())
         {
-            notesSB.append("\n\nTestCase Steps\n=========\n* ").append(String.join("\n* ", Step.testSteps.get(result.getMethod().getMethodName())));
+            notesSB.append("\n\nTestCase Steps\n=========\n* ").append(String.join("\n* ", testSteps));
         }
         notes = notesSB.toString();
     }
@@ -96,7 +98,7 @@ public class TestCaseDetail
         return getTestRailAnnotation() != null;
     }
 
-    public boolean hasSectionCreatedIn(List<Section> allSections)
+    public boolean hasSectionCreatedIn(TestRailCatalogue catalogue)
     {
         /*
          * root section has depth='0'
@@ -104,42 +106,25 @@ public class TestCaseDetail
          * Based on this id get the child section and continue until the last child
          * Save the last child section because this will be the destination section
          */
-        for (Section tmpSection : allSections)
+        Section root = catalogue.getRootSection(getTestCaseDestination().getRootSectionName());
+        if (root == null)
         {
-            if (tmpSection.getDepth() == 0 && tmpSection.getName().equals(getTestCaseDestination().getRootSectionName()))
-            {
-                getTestCaseDestination().setRootSection(tmpSection);
-                break;
-            }
-        }
-
-        if (getTestCaseDestination().hasRootSection())
-        {
-            Section parent = getTestCaseDestination().getRootSection();
-            int depth = 0;
-            for (String destinationSection : getTestCaseDestination().getChildDestinationSection())
-            {
-                depth += 1;
-                for (Section s : allSections)
-                {
-                    if (s.getName().equals(destinationSection) && s.getDepth() == depth && s.getParent_id() == parent.getId())
-                    {
-                        parent = s;
-                        if (depth == getTestCaseDestination().getChildDestinationSection().size())
-                        {
-                            getTestCaseDestination().setDestination(s);
-                            return true;
-                        }
-                    }
-                }
-            }
+            // if we didn't find the root then we can consider the destination section is not created.
             return false;
         }
-        else
+        getTestCaseDestination().setRootSection(root);
+
+        Section parent = root;
+        int depth = 0;
+        for (String destinationSection : getTestCaseDestination().getChildDestinationSection())
         {
-            // if we didn't find the root then we can consider the destination section is not created.
-            return false;
+            depth += 1;
+            parent = catalogue.getSection(depth, parent.getId(), destinationSection);
+            if (parent == null)
+                return false;
         }
+        getTestCaseDestination().setDestination(parent);
+        return true;
     }
 
     public TestCase getTestRailObject()
@@ -1,39 +1,25 @@
 package org.alfresco.utility.testrail.core;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-
-import javax.xml.bind.DatatypeConverter;
+import java.util.Set;
 
 import org.alfresco.utility.Utility;
 import org.alfresco.utility.testrail.ExecutionType;
-import org.alfresco.utility.testrail.model.Result;
 import org.alfresco.utility.testrail.model.Run;
 import org.alfresco.utility.testrail.model.RunTestCase;
 import org.alfresco.utility.testrail.model.Section;
 import org.alfresco.utility.testrail.model.TestCase;
-import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.JsonNode;
 
 /**
  * TestRail Interaction
@@ -66,6 +52,16 @@ public class TestRailAPI
 
     private int waitRateLimitBetweenRequests = 0;
 
+    private TestRailTransport transport;
+    private Set<Integer> currentRunCaseIds = null;
+
+    private int resultsBatchSize = 250;
+    private int resultsUploadThreads = 2;
+    private int resultsUploadRetries = 3;
+    private int resultsFlushIntervalSeconds = 0;
+    private int maxStackTraceFrames = 30;
+    private int maxCommentLength = 10000;
+
     public TestRailAPI()
     {
         readTestRailManagementSection();
@@ -81,11 +77,50 @@ public class TestRailAPI
         return waitRateLimitBetweenRequests;
     }
 
+    /**
+     * @deprecated every request already waits for {@link TestRailRateLimiter}, see {@link #getTransport()}
+     */
+    @Deprecated
     public void waitForRateLimit()
     {
         Utility.waitToLoopTime(getWateRateLimit(), "Based on Rate Limit defined in current *.properties file.");
     }
 
+    public TestRailTransport getTransport()
+    {
+        return transport;
+    }
+
+    public int getResultsBatchSize()
+    {
+        return resultsBatchSize;
+    }
+
+    public int getResultsUploadThreads()
+    {
+        return resultsUploadThreads;
+    }
+
+    public int getResultsUploadRetries()
+    {
+        return resultsUploadRetries;
+    }
+
+    public int getResultsFlushIntervalSeconds()
+    {
+        return resultsFlushIntervalSeconds;
+    }
+
+    public int getMaxStackTraceFrames()
+    {
+        return maxStackTraceFrames;
+    }
+
+    public int getMaxCommentLength()
+    {
+        return maxCommentLength;
+    }
+
     private boolean readTestRailManagementSection()
     {
         boolean configurationError = true;
@@ -102,7 +137,7 @@ public class TestRailAPI
                 this.password = Utility.getSystemOrFileProperty("testManagement.apiKey", properties);
                 Utility.checkObjectIsInitialized(password, "password");
 
-                this.endPointApiPath = Utility.getSystemOrFileProperty("testManagement.endPoint", properties) + "index.php?/api/v2/";
+                this.endPointApiPath = Utility.getSystemOrFileProperty("testManagement.endPoint", properties);
                 Utility.checkObjectIsInitialized(endPointApiPath, "endPointApiPath");
 
                 this.currentProjectID = Integer.parseInt(Utility.getSystemOrFileProperty("testManagement.project", properties));
@@ -118,6 +153,24 @@ public class TestRailAPI
                     this.waitRateLimitBetweenRequests = 1;
                 else
                     this.waitRateLimitBetweenRequests = Integer.valueOf(Utility.getSystemOrFileProperty("testManagement.rateLimitInSeconds", properties));
+
+                /*
+                 * testManagement.requestsPerMinute overrides the old testManagement.rateLimitInSeconds (one request every X seconds)
+                 * testManagement.rateLimitBurst - how many requests can be sent at once before waiting for the rate limit
+                 */
+                double requestsPerMinute = waitRateLimitBetweenRequests > 0 ? 60.0 / waitRateLimitBetweenRequests : 0;
+                if (Utility.getSystemOrFileProperty("testManagement.requestsPerMinute", properties) != null)
+                    requestsPerMinute = Double.parseDouble(Utility.getSystemOrFileProperty("testManagement.requestsPerMinute", properties));
+                TestRailRateLimiter rateLimiter = new TestRailRateLimiter(requestsPerMinute, getIntProperty("testManagement.rateLimitBurst", 5));
+                this.transport = new TestRailTransport(endPointApiPath, username, password, rateLimiter, getIntProperty("testManagement.maxConnections", 4),
+                        getIntProperty("testManagement.maxRetries", 5));
+
+                this.resultsBatchSize = getIntProperty("testManagement.resultsBatchSize", resultsBatchSize);
+                this.resultsUploadThreads = getIntProperty("testManagement.resultsUploadThreads", resultsUploadThreads);
+                this.resultsUploadRetries = getIntProperty("testManagement.resultsUploadRetries", resultsUploadRetries);
+                this.resultsFlushIntervalSeconds = getIntProperty("testManagement.resultsFlushIntervalSeconds", resultsFlushIntervalSeconds);
+                this.maxStackTraceFrames = getIntProperty("testManagement.maxStackTraceFrames", maxStackTraceFrames);
+                this.maxCommentLength = getIntProperty("testManagement.maxCommentLength", maxCommentLength);
                 /*
                  * alfresco.scheme=http
                  * alfresco.server=localhost
@@ -140,14 +193,18 @@ public class TestRailAPI
         return configurationError;
     }
 
+    private int getIntProperty(String key, int defaultValue)
+    {
+        String value = Utility.getSystemOrFileProperty(key, properties);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
     public List<Section> getSections(int projectID)
     {
         LOG.info("Query: Test Rail for all Section of currentProject [{}] defined in *.properties file", currentProjectID);
-        Object response;
         try
         {
-            response = getRequest("get_sections/" + projectID + "&suite_id=" + currentSuiteID);
-            return toCollection(response, Section.class);
+            return transport.getAll("get_sections/" + projectID + "&suite_id=" + currentSuiteID, "sections", Section.class);
         }
         catch (Exception e)
         {
@@ -159,11 +216,9 @@ public class TestRailAPI
     public List<TestCase> getAllTestCases(int projectID)
     {
         LOG.info("Query: Test Rail for all TestCases of currentProject [{}] defined in *.properties file", currentProjectID);
-        Object response;
         try
         {
-            response = getRequest("get_cases/" + projectID + "&suite_id=" + currentSuiteID);
-            List<TestCase> tcs = toCollection(response, TestCase.class);
+            List<TestCase> tcs = transport.getAll("get_cases/" + projectID + "&suite_id=" + currentSuiteID, "cases", TestCase.class);
             LOG.info("Found #{} testcases in TestRail.", tcs.size());
             return tcs;
         }
@@ -176,12 +231,10 @@ public class TestRailAPI
 
     public List<Run> getRuns(int projectID)
     {
-        Object response;
-        LOG.info("Query: Test Rail for all Runs of currentProject [{}] defined in *.properties file", currentProjectID);
+        LOG.info("Query: Test Rail for all active Runs of currentProject [{}] defined in *.properties file", currentProjectID);
         try
         {
-            response = getRequest("get_runs/" + projectID);
-            return toCollection(response, Run.class);
+            return transport.getAll("get_runs/" + projectID + "&is_completed=0", "runs", Run.class);
         }
         catch (Exception e)
         {
@@ -190,134 +243,14 @@ public class TestRailAPI
         return new ArrayList<Run>();
     }
 
-    protected Object getRequest(String path) throws Exception
+    protected JsonNode getRequest(String path) throws Exception
     {
-        URL endPointURL = new URL(endPointApiPath + path);
-        LOG.info("TestRAILAPI: GetRequest: {}", endPointURL.toURI().toString());
-        HttpURLConnection conn = (HttpURLConnection) endPointURL.openConnection();
-        conn.addRequestProperty("Content-Type", "application/json");
-
-        conn.addRequestProperty("Authorization", "Basic " + DatatypeConverter.printBase64Binary(String.format("%s:%s", username, password).getBytes()));
-
-        return parseRespose(conn);
+        return transport.get(path, JsonNode.class);
     }
 
-    protected Object postRequest(String path, Object data) throws Exception
+    protected JsonNode postRequest(String path, Object data) throws Exception
     {
-        LOG.debug("TestRAILAPI: PostRequest: {}", path);
-        URL endPointURL = new URL(endPointApiPath + path);
-        HttpURLConnection conn = (HttpURLConnection) endPointURL.openConnection();
-        conn.addRequestProperty("Content-Type", "application/json");
-
-        conn.addRequestProperty("Authorization", "Basic " + DatatypeConverter.printBase64Binary(String.format("%s:%s", username, password).getBytes()));
-        if (data != null)
-        {
-            byte[] block = JSONValue.toJSONString(data).getBytes("UTF-8");
-            conn.setDoOutput(true);
-            OutputStream ostream = conn.getOutputStream();
-            ostream.write(block);
-            ostream.flush();
-        }
-
-        return parseRespose(conn);
-    }
-
-    /**
-     * Parse the response and transform the JSON into object class.
-     * 
-     * @param conn
-     * @return
-     * @throws Exception
-     * @throws IOException
-     * @throws UnsupportedEncodingException
-     */
-    private Object parseRespose(HttpURLConnection conn) throws Exception, IOException, UnsupportedEncodingException
-    {
-        int status = conn.getResponseCode();
-        InputStream istream;
-        if (status != 200)
-        {
-            istream = conn.getErrorStream();
-            if (istream == null)
-            {
-                throw new Exception("TestRail API return HTTP " + status + " (No additional error message received)");
-            }
-        }
-        else
-        {
-            istream = conn.getInputStream();
-        }
-
-        String text = "";
-        if (istream != null)
-        {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(istream, "UTF-8"));
-
-            String line;
-            while ((line = reader.readLine()) != null)
-            {
-                text += line;
-                text += System.getProperty("line.separator");
-            }
-            reader.close();
-        }
-
-        Object result;
-        if (text != "")
-        {
-            result = JSONValue.parse(text);
-        }
-        else
-        {
-            result = new JSONObject();
-        }
-
-        if (status != 200)
-        {
-            String error = "No additional error message received";
-            if (result != null && result instanceof JSONObject)
-            {
-                JSONObject obj = (JSONObject) result;
-                if (obj.containsKey("error"))
-                {
-                    error = '"' + (String) obj.get("error") + '"';
-                }
-            }
-
-            throw new Exception("TestRail API returned HTTP " + status + "(" + error + ")");
-        }
-        return result;
-    }
-
-    /**
-     * Parse the response received and convert it to <Class<T>> passed as parameter
-     * 
-     * @param response
-     * @param classz
-     * @return
-     */
-    @SuppressWarnings("unchecked")
-    protected <T> List<T> toCollection(Object response, Class<T> classz)
-    {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Section> list = null;
-        try
-        {
-            list = mapper.readValue(response.toString(), TypeFactory.defaultInstance().constructCollectionType(List.class, classz));
-        }
-        catch (JsonParseException e)
-        {
-            LOG.error(e.getMessage());
-        }
-        catch (JsonMappingException e)
-        {
-            LOG.error(e.getMessage());
-        }
-        catch (IOException e)
-        {
-            LOG.error(e.getMessage());
-        }
-        return (List<T>) list;
+        return transport.post(path, data, JsonNode.class);
     }
 
     /**
@@ -337,11 +270,9 @@ public class TestRailAPI
             data.put("description", "**Server:** " + serverUrl);
 
             LOG.info("Add new RUN [{}]", currentTestRunName);
-            Object response;
             try
             {
-                response = postRequest("add_run/" + currentProjectID, data);
-                r = toClass(response, Run.class);
+                r = transport.post("add_run/" + currentProjectID, data, Run.class);
             }
             catch (Exception e)
             {
@@ -369,29 +300,6 @@ public class TestRailAPI
         return null;
     }
 
-    protected <T> T toClass(Object response, Class<T> classz)
-    {
-        ObjectMapper mapper = new ObjectMapper();
-
-        try
-        {
-            return mapper.readValue(response.toString(), classz);
-        }
-        catch (JsonParseException e)
-        {
-            LOG.error(e.getMessage());
-        }
-        catch (JsonMappingException e)
-        {
-            LOG.error(e.getMessage());
-        }
-        catch (IOException e)
-        {
-            LOG.error(e.getMessage());
-        }
-        return null;
-    }
-
     /**
      * @return all {@link Section} from TestRail from current project
      */
@@ -411,100 +319,109 @@ public class TestRailAPI
      * @param currentTestCases
      * @throws Exception
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     public void updateTestRunWithSelectedTestCases(List<TestCaseDetail> currentTestCases) throws Exception
     {
-        Map testCasesData = new HashMap();
-        testCasesData.put("include_all", false); //we don't want to include all tests from Test Run, just the ones that we run now
-        List cases = new ArrayList();
-
-        /*
-         * 1. now save all test cases that exists in current test run
-         */
-        Object response = getRequest("get_tests/" + currentRun.getId());
-        List<RunTestCase> runCases = toCollection(response, RunTestCase.class);
-        for (RunTestCase runCase : runCases)
+        Set<Integer> caseIds = new LinkedHashSet<Integer>();
+        for (TestCaseDetail tc : currentTestCases)
         {
-            cases.add(runCase.getCase_id());
+            if (tc.getTestRailObject() != null)
+                caseIds.add(tc.getTestRailObject().getId());
         }
+        addCasesToCurrentRun(caseIds);
+    }
 
+    /**
+     * Add <caseIds> to the test cases already selected in current test run.
+     * The test cases of the run are queried only once, update_run is called only if there are new test cases.
+     * 
+     * @param caseIds
+     * @throws Exception if the run cannot be updated; the new test cases are then sent again by the next call
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public synchronized void addCasesToCurrentRun(Collection<Integer> caseIds) throws Exception
+    {
+        Run run = getCurrentRun();
         /*
-         * 2. save first the results that already exists in current test run
+         * 1. now save all test cases that exists in current test run
          */
-        if (!runCases.isEmpty())
+        if (currentRunCaseIds == null)
         {
-            response = getRequest("get_results_for_run/" + currentRun.getId());
-            List<Result> results = toCollection(response, Result.class);
-            if (!results.isEmpty())
-            {
-                for (Result result : results)
-                {
-                    cases.add(result.getTest_id());
-                }
-            }
+            currentRunCaseIds = getCaseIdsOfRun(run);
         }
+        if (currentRunCaseIds.containsAll(caseIds))
+            return;
 
         /*
-         * 3. now update the test run with ONLY the test cases that are executed in this run
+         * 2. now update the test run with the test cases that are executed in this run
          */
+        Set<Integer> runCaseIds = new LinkedHashSet<Integer>(currentRunCaseIds);
+        runCaseIds.addAll(caseIds);
 
-        for (TestCaseDetail tc : currentTestCases)
-        {
-            cases.add(tc.getTestRailObject().getId());
-        }
-
-        testCasesData.put("case_ids", cases);
+        Map testCasesData = new HashMap();
+        testCasesData.put("include_all", false); //we don't want to include all tests from Test Run, just the ones that we run now
+        testCasesData.put("case_ids", new ArrayList<Integer>(runCaseIds));
         LOG.info("TestRAILAPI: Update Test Run: {} with only selected Test Cases of this run #{} + existing test cases already executed #{} ",
-                currentRun.getName(), currentTestCases.size(), runCases.size());
+                run.getName(), runCaseIds.size() - currentRunCaseIds.size(), currentRunCaseIds.size());
         try
         {
-            response = postRequest("update_run/" + currentRun.getId(), testCasesData);
+            postRequest("update_run/" + run.getId(), testCasesData);
         }
         catch (Exception e1)
         {
-            LOG.error("Cannot update RUN {} with curent test cases executed. Error: {}", currentRun.getName(), e1.getMessage());
+            LOG.error("Cannot update RUN {} with curent test cases executed. Error: {}", run.getName(), e1.getMessage());
+            throw e1;
         }
+        // only now the results of the new test cases are accepted by TestRail
+        currentRunCaseIds = runCaseIds;
+    }
 
+    /**
+     * @return the ids of the test cases selected in <run>
+     */
+    protected Set<Integer> getCaseIdsOfRun(Run run) throws Exception
+    {
+        Set<Integer> caseIds = new LinkedHashSet<Integer>();
+        for (RunTestCase runCase : transport.getAll("get_tests/" + run.getId(), "tests", RunTestCase.class))
+        {
+            caseIds.add((int) runCase.getCase_id());
+        }
+        return caseIds;
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
+    /**
+     * Upload the results of <currentTestCases> in chunks, see {@link TestRailResultUploader}
+     * 
+     * @return the responses of all uploaded chunks
+     */
     public Object addResultsForCases(List<TestCaseDetail> currentTestCases) throws Exception
     {
-        Map data = new HashMap();
-        List results = new ArrayList();
-
-        for (TestCaseDetail tc : currentTestCases)
+        TestRailResultUploader uploader = new TestRailResultUploader(this, false);
+        try
         {
-            Map result = new HashMap();
-            result.put("case_id", tc.getTestRailObject().getId());
-            result.put("status_id", tc.getStatusId());
-            result.put("comment", "Executed by awesome TAS project");
-            result.put("elapsed", tc.getElapsedString());
-
-            if (tc.getBugDetails() != null)
+            for (TestCaseDetail tc : currentTestCases)
             {
-                result.put("defects", tc.getBugDetails().id());
-                result.put("comment", tc.getBugDetails().description());
+                uploader.add(tc);
             }
-
-            /*
-             * adding stack trace of failed test
-             */
-            if (tc.getResult().getThrowable() != null)
-            {
-                if (tc.getResult().getThrowable().getStackTrace() != null)
-                {
-                    StringWriter sw = new StringWriter();
-                    tc.getResult().getThrowable().printStackTrace(new PrintWriter(sw));
-                    result.put("comment", sw.toString());
-                }
-            }
-            results.add(result);
+            return uploader.flush();
+        }
+        finally
+        {
+            uploader.close();
         }
+    }
 
+    /**
+     * Post one add_results_for_cases request on current run
+     * 
+     * @param results
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public JsonNode addResults(List<Map<String, Object>> results) throws Exception
+    {
+        Map data = new HashMap();
         data.put("results", results);
 
-        LOG.info("TestRAILAPI: Bulk Upload [{} # total test cases] on Run: {} ", currentTestCases.size(), currentRun.getName());
+        LOG.info("TestRAILAPI: Bulk Upload [{} # total test cases] on Run: {} ", results.size(), currentRun.getName());
         return postRequest("add_results_for_cases/" + currentRun.getId(), data);
     }
 
@@ -526,11 +443,9 @@ public class TestRailAPI
         else
             LOG.info("Add missing section [{}] as child of parent section with ID: {}", name, parent_id);
 
-        Object response;
         try
         {
-            response = postRequest("add_section/" + projectID, data);
-            s = toClass(response, Section.class);
+            s = transport.post("add_section/" + projectID, data, Section.class);
         }
         catch (Exception e)
         {
@@ -580,8 +495,7 @@ public class TestRailAPI
             data.put("custom_platform", 1);
 
             LOG.info("TestRAILAPI: Upload TestCase: {} to {}", currentTest.getId(), currentTest.getTestCaseDestination().toString());
-            Object response = postRequest("add_case/" + currentTest.getTestCaseDestination().getDestination().getId(), data);
-            return toClass(response, TestCase.class);
+            return transport.post("add_case/" + currentTest.getTestCaseDestination().getDestination().getId(), data, TestCase.class);
         }
         catch (Exception e)
         {
@@ -591,67 +505,53 @@ public class TestRailAPI
         return null;
     }
 
-    public void createNewSection(TestCaseDetail currentTestCase, List<Section> allSections)
+    /**
+     * Create the missing sections of <currentTestCase> destination and add them in <catalogue>.
+     * Parallel listeners are serialized on <catalogue>, so the same section is not created twice.
+     * 
+     * @param currentTestCase
+     * @param catalogue
+     */
+    public void createNewSection(TestCaseDetail currentTestCase, TestRailCatalogue catalogue)
     {
-        if (!currentTestCase.getTestCaseDestination().hasRootSection())
+        synchronized (catalogue)
         {
-            Section root = addNewSection(currentTestCase.getTestCaseDestination().getRootSectionName(), null, currentProjectID, currentSuiteID);
-            if (root.getName()==null)
+            // another thread might have created the sections in the meantime
+            if (currentTestCase.hasSectionCreatedIn(catalogue))
+                return;
+
+            if (!currentTestCase.getTestCaseDestination().hasRootSection())
             {
-             LOG.error("Cannot add a new Section. Please check previous log WARN/ERROR !!!");
-             return;
+                Section root = addNewSection(currentTestCase.getTestCaseDestination().getRootSectionName(), null, currentProjectID, currentSuiteID);
+                if (root == null || root.getName() == null)
+                {
+                    LOG.error("Cannot add a new Section. Please check previous log WARN/ERROR !!!");
+                    return;
+                }
+                currentTestCase.getTestCaseDestination().setRootSection(root);
+                catalogue.addSection(root);
             }
-            currentTestCase.getTestCaseDestination().setRootSection(root);
-            allSections.add(root);
-        }
 
-        int depth = 0;
-        Section parent = currentTestCase.getTestCaseDestination().getRootSection();
-        if(currentTestCase.getTestCaseDestination().getChildDestinationSection().size() == 0)
-        {
-            currentTestCase.getTestCaseDestination().setDestination(parent);
-        } else {
+            int depth = 0;
+            Section parent = currentTestCase.getTestCaseDestination().getRootSection();
             for (String childSection : currentTestCase.getTestCaseDestination().getChildDestinationSection())
             {
                 depth += 1;
-                if (!isSectionInList(depth, parent.getId(), childSection, allSections))
-                {
-                    Section child = addNewSection(childSection, parent.getId(), currentProjectID, currentSuiteID);
-                    allSections.add(child);
-                    parent = child;
-                    currentTestCase.getTestCaseDestination().setDestination(child);
-                }
-                else
+                Section child = catalogue.getSection(depth, parent.getId(), childSection);
+                if (child == null)
                 {
-                    parent = getSectionInList(depth, parent.getId(), childSection, allSections);
+                    child = addNewSection(childSection, parent.getId(), currentProjectID, currentSuiteID);
+                    if (child == null || child.getName() == null)
+                    {
+                        LOG.error("Cannot add a new Section. Please check previous log WARN/ERROR !!!");
+                        return;
+                    }
+                    catalogue.addSection(child);
                 }
+                parent = child;
             }
+            currentTestCase.getTestCaseDestination().setDestination(parent);
         }
-
-    }
-
-    private boolean isSectionInList(int depth, int parent_id, String name, List<Section> allSections)
-    {
-        boolean exists = false;
-        for (Section s : allSections)
-        {
-            if (s.getName().equals(name) && s.getDepth() == depth && s.getParent_id() == parent_id)
-            {
-                return true;
-            }
-        }
-        return exists;
-    }
-    
-    private Section getSectionInList(int depth, int parent_id, String name, List<Section> allSections){
-        for (Section s : allSections)
-        {
-            if (s.getName().equals(name) && s.getDepth() == depth && s.getParent_id() == parent_id)
-            {
-                return s;
-            }
-        }
-        return null;
     }
 
 }
@@ -0,0 +1,201 @@
+package org.alfresco.utility.testrail.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.alfresco.utility.testrail.model.Section;
+import org.alfresco.utility.testrail.model.TestCase;
+
+/**
+ * In-memory copy of the Sections and Test Cases of the current TestRail project.
+ * It is loaded once before the suite starts (see {@link TestRailExecutor#prepareCurrentSuiteRun()}) and then
+ * kept up to date with every Section or Test Case that we create while tests are executed.
+ * -
+ * Lookups are hash based:
+ * - sections by (depth, parent_id, name) - root sections have depth 0 and no parent
+ * - test cases by (custom_auto_ref, section_id)
+ * All methods are safe to be called from parallel listeners.
+ */
+public class TestRailCatalogue
+{
+    private final Map<Integer, Section> sectionsById = new ConcurrentHashMap<Integer, Section>();
+    private final Map<String, Section> sectionsByPath = new ConcurrentHashMap<String, Section>();
+    private final Map<String, TestCase> testCasesByRef = new ConcurrentHashMap<String, TestCase>();
+    private final Queue<TestCase> testCases = new ConcurrentLinkedQueue<TestCase>();
+
+    /**
+     * @param sections
+     * @param testCases
+     * @return a new catalogue with all <sections> and <testCases> indexed
+     */
+    public static TestRailCatalogue of(Collection<Section> sections, Collection<TestCase> testCases)
+    {
+        TestRailCatalogue catalogue = new TestRailCatalogue();
+        catalogue.addSections(sections);
+        catalogue.addTestCases(testCases);
+        return catalogue;
+    }
+
+    /**
+     * Replace the content of this catalogue with <sections> and <testCases>
+     */
+    public synchronized void load(Collection<Section> sections, Collection<TestCase> testCases)
+    {
+        clear();
+        addSections(sections);
+        addTestCases(testCases);
+    }
+
+    public synchronized void clear()
+    {
+        sectionsById.clear();
+        sectionsByPath.clear();
+        testCasesByRef.clear();
+        testCases.clear();
+    }
+
+    /**
+     * Index a new section. Sections without name (i.e. not created in TestRail) are ignored.
+     *
+     * @param section
+     * @return false if the section was already known
+     */
+    public boolean addSection(Section section)
+    {
+        if (section == null || section.getName() == null)
+            return false;
+
+        if (sectionsById.putIfAbsent(section.getId(), section) != null)
+            return false;
+
+        sectionsByPath.putIfAbsent(sectionKey(section.getDepth(), section.getParent_id(), section.getName()), section);
+        return true;
+    }
+
+    public void addSections(Collection<Section> sections)
+    {
+        if (sections == null)
+            return;
+
+        for (Section section : sections)
+        {
+            addSection(section);
+        }
+    }
+
+    /**
+     * Index a new test case. Test cases without <custom_auto_ref> are kept, but cannot be found with {@link #getTestCase(String, int)}
+     *
+     * @param testCase
+     */
+    public void addTestCase(TestCase testCase)
+    {
+        if (testCase == null)
+            return;
+
+        if (testCase.getCustom_auto_ref() != null)
+        {
+            if (testCasesByRef.putIfAbsent(testCaseKey(testCase.getCustom_auto_ref(), testCase.getSection_id()), testCase) != null)
+                return;
+        }
+        testCases.add(testCase);
+    }
+
+    public void addTestCases(Collection<TestCase> testCases)
+    {
+        if (testCases == null)
+            return;
+
+        for (TestCase testCase : testCases)
+        {
+            addTestCase(testCase);
+        }
+    }
+
+    public boolean containsSection(int sectionId)
+    {
+        return sectionsById.containsKey(sectionId);
+    }
+
+    /**
+     * @param depth
+     * @param parentId
+     * @param name
+     * @return the {@link Section} with <name> under <parentId>, or null if is not created yet
+     */
+    public Section getSection(int depth, int parentId, String name)
+    {
+        if (name == null)
+            return null;
+        return sectionsByPath.get(sectionKey(depth, parentId, name));
+    }
+
+    /**
+     * @param name
+     * @return the root {@link Section} (depth 0) with <name>, or null if is not created yet
+     */
+    public Section getRootSection(String name)
+    {
+        return getSection(0, 0, name);
+    }
+
+    /**
+     * @param autoRef
+     * @param sectionId
+     * @return the {@link TestCase} uploaded with <custom_auto_ref> in section <sectionId>, or null if is not uploaded yet
+     */
+    public TestCase getTestCase(String autoRef, int sectionId)
+    {
+        if (autoRef == null)
+            return null;
+        return testCasesByRef.get(testCaseKey(autoRef, sectionId));
+    }
+
+    /**
+     * @return a snapshot of all known sections
+     */
+    public List<Section> getSections()
+    {
+        return Collections.unmodifiableList(new ArrayList<Section>(sectionsById.values()));
+    }
+
+    /**
+     * @return a snapshot of all known test cases
+     */
+    public List<TestCase> getTestCases()
+    {
+        return Collections.unmodifiableList(new ArrayList<TestCase>(testCases));
+    }
+
+    public int getSectionCount()
+    {
+        return sectionsById.size();
+    }
+
+    public int getTestCaseCount()
+    {
+        return testCases.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("TestRailCatalogue[sections=%d, testCases=%d]", getSectionCount(), getTestCaseCount());
+    }
+
+    private static String sectionKey(int depth, int parentId, String name)
+    {
+        return depth + "/" + parentId + "/" + name;
+    }
+
+    private static String testCaseKey(String autoRef, int sectionId)
+    {
+        return sectionId + "/" + autoRef;
+    }
+}
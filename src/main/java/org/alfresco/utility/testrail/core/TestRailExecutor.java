@@ -1,6 +1,5 @@
 package org.alfresco.utility.testrail.core;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.alfresco.utility.Utility;
@@ -21,46 +20,42 @@ public class TestRailExecutor
     private boolean includeOnlyTestCasesExecuted = Utility.isPropertyEnabled("testManagement.includeOnlyTestCasesExecuted");
 
     private static TestRailAPI testRailAPI = new TestRailAPI();
+    private TestRailResultUploader resultUploader;
 
     /*
-     * all section from current project
+     * all sections and test cases from current project
      */
-    private static List<Section> allServerSections = new ArrayList<Section>();
-    private static List<TestCase> allServerTestCases = new ArrayList<TestCase>();
+    private static TestRailCatalogue catalogue = new TestRailCatalogue();
 
+    public static TestRailCatalogue getCatalogue()
+    {
+        return catalogue;
+    }
+
+    /**
+     * @return a snapshot of all sections from current project, use {@link #addSections(List)} to add new ones
+     */
     public static List<Section> getAllSection()
     {
-        return allServerSections;
+        return catalogue.getSections();
     }
 
     public static boolean existsInAllSection(Section section)
     {
-        boolean exist = false;
-
-        for (Section oldS : getAllSection())
-        {
-            if (section.getId() == oldS.getId())
-            {
-                exist = true;
-                break;
-            }
-
-        }
-        return exist;
+        return catalogue.containsSection(section.getId());
     }
 
     public static void addSections(List<Section> sections)
     {
-        for (Section s : sections)
-        {
-            if (!existsInAllSection(s))
-                getAllSection().add(s);
-        }
+        catalogue.addSections(sections);
     }
 
+    /**
+     * @return a snapshot of all test cases from current project
+     */
     public static List<TestCase> getAllTestCases()
     {
-        return allServerTestCases;
+        return catalogue.getTestCases();
     }
 
     /**
@@ -84,36 +79,23 @@ public class TestRailExecutor
          */
         TestCaseDetail currentTestCase = new TestCaseDetail(currentTest);
 
-        if (!currentTestCase.hasSectionCreatedIn(getAllSection()) && currentTestCase.isMarkForUpload())
+        if (!currentTestCase.hasSectionCreatedIn(catalogue) && currentTestCase.isMarkForUpload())
         {
-            testRailAPI.createNewSection(currentTestCase, getAllSection());
+            testRailAPI.createNewSection(currentTestCase, catalogue);
         }
 
         // check from already queried test cases
-
-        for (TestCase tmpTC : getAllTestCases())
+        if (currentTestCase.getTestCaseDestination().hasDestination())
         {
-            if(tmpTC.getCustom_auto_ref() != null)
-            {
-                if (tmpTC.getCustom_auto_ref().equals(currentTestCase.getId())
-                        && tmpTC.getSection_id() == currentTestCase.getTestCaseDestination().getDestination().getId())
-                {
-                    newTestCase = tmpTC;
-                    break;
-                }
-            }
+            newTestCase = catalogue.getTestCase(currentTestCase.getId(), currentTestCase.getTestCaseDestination().getDestination().getId());
         }
 
         /* if is not created already */
         if (newTestCase == null)
         {
-            /*
-             * call the Rate Limit wait loop method;
-             */
-            if (currentTestCase.getElapsed() < testRailAPI.getWateRateLimit())
-                testRailAPI.waitForRateLimit();
-
+            // the rate limit is applied by TestRailTransport on each request
             newTestCase = testRailAPI.uploadTestCase(currentTestCase);
+            catalogue.addTestCase(newTestCase);
         }
 
         // correlation between ITestResult object and TestRail object
@@ -123,13 +105,43 @@ public class TestRailExecutor
     }
 
     /**
-     * read all sections created
+     * read all sections and test cases created in current project
      */
     public void prepareCurrentSuiteRun()
     {
-        TestRailExecutor.addSections(testRailAPI.getSectionsOfCurrentProject());
-        TestRailExecutor.allServerTestCases = testRailAPI.getAllTestCasesFromCurrentProject();
+        catalogue.load(testRailAPI.getSectionsOfCurrentProject(), testRailAPI.getAllTestCasesFromCurrentProject());
+        LOG.info("Loaded {}", catalogue);
         testRailAPI.getRunOfCurrentProject();
+
+        resultUploader = new TestRailResultUploader(testRailAPI, includeOnlyTestCasesExecuted);
+        resultUploader.startPeriodicFlush(testRailAPI.getResultsFlushIntervalSeconds());
+    }
+
+    /**
+     * Queue the result of <currentTestCase> for upload, the results are uploaded in chunks periodically (if
+     * testManagement.resultsFlushIntervalSeconds is set) and when {@link #finishCurrentSuiteRun()} is called
+     */
+    public void addResult(TestCaseDetail currentTestCase)
+    {
+        if (resultUploader == null)
+        {
+            LOG.warn("Current suite run is not prepared, the result of {} is ignored.", currentTestCase.getId());
+            return;
+        }
+        resultUploader.add(currentTestCase);
+    }
+
+    /**
+     * Upload all pending results of current suite
+     */
+    public void finishCurrentSuiteRun() throws Exception
+    {
+        if (resultUploader != null)
+        {
+            resultUploader.close();
+            LOG.info("Uploaded #{} test results in TestRail, #{} failed.", resultUploader.getUploadedCount(), resultUploader.getFailedCount());
+            resultUploader = null;
+        }
     }
 
     public Object addResultsForCases(List<TestCaseDetail> currentTestCases) throws Exception
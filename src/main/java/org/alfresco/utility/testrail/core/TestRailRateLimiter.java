@@ -0,0 +1,97 @@
+package org.alfresco.utility.testrail.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by all requests sent to TestRail.
+ * The bucket holds at most <burst> tokens and is refilled with <requestsPerMinute>; each request takes one token and
+ * waits if none is available. When TestRail answers with HTTP 429 the whole bucket is paused for the <Retry-After> period
+ * (see {@link #pauseFor(long)}), so the threads that are uploading in parallel back off together.
+ */
+public class TestRailRateLimiter
+{
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = lastRefill;
+
+    /**
+     * @param requestsPerMinute if <= 0 the requests are not limited (they are still paused on HTTP 429)
+     * @param burst maximum number of requests that can be sent without waiting
+     */
+    public TestRailRateLimiter(double requestsPerMinute, int burst)
+    {
+        this.tokensPerNano = requestsPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+    }
+
+    /**
+     * Wait until a new request can be sent
+     */
+    public void acquire() throws InterruptedException
+    {
+        long waitNanos = reserve();
+        if (waitNanos > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Do not let any request through for the next <millis>, i.e. after HTTP 429 with <Retry-After> header
+     */
+    public synchronized void pauseFor(long millis)
+    {
+        long now = System.nanoTime();
+        pausedUntil = Math.max(pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(millis));
+        refill(now);
+        // the server told us to slow down, so don't burst again right after the pause
+        tokens = Math.min(tokens, 0);
+        lastRefill = Math.max(lastRefill, pausedUntil);
+    }
+
+    public boolean isLimited()
+    {
+        return tokensPerNano > 0;
+    }
+
+    /**
+     * @return nanoseconds the caller has to wait before sending the request
+     */
+    synchronized long reserve()
+    {
+        long now = System.nanoTime();
+        long wait = Math.max(0, pausedUntil - now);
+        if (!isLimited())
+        {
+            return wait;
+        }
+
+        refill(now);
+        tokens -= 1;
+        if (tokens < 0)
+        {
+            // tokens are refilled only after the pause
+            wait = Math.max(wait, Math.max(0, lastRefill - now) + (long) Math.ceil(-tokens / tokensPerNano));
+        }
+        return wait;
+    }
+
+    private void refill(long now)
+    {
+        if (now > lastRefill)
+        {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("TestRailRateLimiter[requestsPerMinute=%.1f, burst=%d]", tokensPerNano * TimeUnit.MINUTES.toNanos(1), (int) capacity);
+    }
+}
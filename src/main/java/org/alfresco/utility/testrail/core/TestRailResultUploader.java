@@ -0,0 +1,352 @@
+package org.alfresco.utility.testrail.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.utility.exception.TestRailApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Uploads the results of executed test cases to the current TestRail run.
+ * <ul>
+ * <li>each {@link TestCaseDetail} is converted to a small result object as soon as it is added, so the {@link org.testng.ITestResult}
+ * is not kept in memory until the end of the suite</li>
+ * <li>stack traces are truncated to <code>testManagement.maxStackTraceFrames</code> frames per exception and
+ * <code>testManagement.maxCommentLength</code> characters; identical failures are rendered only once</li>
+ * <li>results are posted in chunks of <code>testManagement.resultsBatchSize</code>, by <code>testManagement.resultsUploadThreads</code>
+ * threads (all of them still going through the {@link TestRailRateLimiter}); a failed chunk is sent again up to
+ * <code>testManagement.resultsUploadRetries</code> times without affecting the other chunks</li>
+ * <li>if <code>testManagement.resultsFlushIntervalSeconds</code> is set, the pending results are also uploaded periodically while tests are
+ * running</li>
+ * </ul>
+ */
+public class TestRailResultUploader implements Closeable
+{
+    static Logger LOG = LoggerFactory.getLogger("testrail");
+
+    private static final String DEFAULT_COMMENT = "Executed by awesome TAS project";
+
+    private final TestRailAPI testRailAPI;
+    private final boolean includeOnlyTestCasesExecuted;
+    private final int batchSize;
+    private final int retries;
+    private final int maxStackTraceFrames;
+    private final int maxCommentLength;
+
+    private final Queue<Map<String, Object>> pending = new ConcurrentLinkedQueue<Map<String, Object>>();
+    private final Map<String, String> renderedStackTraces = new ConcurrentHashMap<String, String>();
+    private final ExecutorService uploadExecutor;
+    private ScheduledExecutorService flushScheduler;
+
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public TestRailResultUploader(TestRailAPI testRailAPI, boolean includeOnlyTestCasesExecuted)
+    {
+        this.testRailAPI = testRailAPI;
+        this.includeOnlyTestCasesExecuted = includeOnlyTestCasesExecuted;
+        this.batchSize = Math.max(1, testRailAPI.getResultsBatchSize());
+        this.retries = Math.max(0, testRailAPI.getResultsUploadRetries());
+        this.maxStackTraceFrames = testRailAPI.getMaxStackTraceFrames();
+        this.maxCommentLength = testRailAPI.getMaxCommentLength();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(Math.max(1, testRailAPI.getResultsUploadThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "tas-testrail-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Upload the pending results every <seconds> until this uploader is closed
+     */
+    public synchronized void startPeriodicFlush(long seconds)
+    {
+        if (seconds <= 0 || flushScheduler != null)
+            return;
+
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tas-testrail-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(() -> {
+            try
+            {
+                flush();
+            }
+            catch (Exception e)
+            {
+                LOG.error("Cannot upload test results in TestRail: {}", e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue the result of <testCase> for upload
+     */
+    public void add(TestCaseDetail testCase)
+    {
+        if (testCase.getTestRailObject() == null)
+        {
+            LOG.warn("Test case {} was not uploaded in TestRail, its result is ignored.", testCase.getId());
+            return;
+        }
+        add(toResult(testCase));
+    }
+
+    void add(Map<String, Object> result)
+    {
+        pending.add(result);
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    public int getUploadedCount()
+    {
+        return uploaded.get();
+    }
+
+    public int getFailedCount()
+    {
+        return failed.get();
+    }
+
+    /**
+     * Upload all pending results and wait until all chunks are posted
+     *
+     * @return the responses of all chunks that were uploaded
+     */
+    public synchronized List<JsonNode> flush() throws Exception
+    {
+        List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+        Map<String, Object> result;
+        while ((result = pending.poll()) != null)
+        {
+            results.add(result);
+        }
+        // the results hold their stack traces now, only failures repeated until the next flush share them
+        renderedStackTraces.clear();
+        List<JsonNode> responses = new ArrayList<JsonNode>();
+        if (results.isEmpty())
+            return responses;
+
+        if (includeOnlyTestCasesExecuted)
+        {
+            // the results can be added only for the test cases that are part of the current run
+            Set<Integer> caseIds = new LinkedHashSet<Integer>();
+            for (Map<String, Object> r : results)
+            {
+                caseIds.add((Integer) r.get("case_id"));
+            }
+            try
+            {
+                testRailAPI.addCasesToCurrentRun(caseIds);
+            }
+            catch (Exception e)
+            {
+                // keep the results for the next flush, the run could not be updated so none of them was uploaded
+                pending.addAll(results);
+                throw e;
+            }
+        }
+
+        List<Future<JsonNode>> chunks = new ArrayList<Future<JsonNode>>();
+        for (int from = 0; from < results.size(); from += batchSize)
+        {
+            List<Map<String, Object>> chunk = results.subList(from, Math.min(results.size(), from + batchSize));
+            chunks.add(uploadExecutor.submit(() -> upload(chunk)));
+        }
+        for (Future<JsonNode> chunk : chunks)
+        {
+            try
+            {
+                JsonNode response = chunk.get();
+                if (response != null)
+                    responses.add(response);
+            }
+            catch (ExecutionException e)
+            {
+                LOG.error("Cannot upload test results in TestRail: {}", e.getCause().getMessage());
+            }
+        }
+        LOG.info("TestRAILAPI: Uploaded [{} # test results] in {} chunks on Run: {} (total uploaded: {}, failed: {})", results.size(), chunks.size(),
+                testRailAPI.getCurrentRun() != null ? testRailAPI.getCurrentRun().getName() : null, uploaded.get(), failed.get());
+        return responses;
+    }
+
+    /**
+     * Upload the pending results and release the upload threads
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this)
+        {
+            if (flushScheduler != null)
+            {
+                // a flush that is already running is not interrupted, close will wait for it
+                flushScheduler.shutdown();
+                flushScheduler = null;
+            }
+        }
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            throw new IOException(e);
+        }
+        finally
+        {
+            uploadExecutor.shutdown();
+        }
+    }
+
+    private JsonNode upload(List<Map<String, Object>> chunk) throws Exception
+    {
+        for (int attempt = 0;; attempt++)
+        {
+            try
+            {
+                JsonNode response = testRailAPI.addResults(chunk);
+                uploaded.addAndGet(chunk.size());
+                return response;
+            }
+            catch (Exception e)
+            {
+                boolean retryable = e instanceof IOException || (e instanceof TestRailApiException && ((TestRailApiException) e).isRetryable());
+                if (!retryable || attempt >= retries)
+                {
+                    failed.addAndGet(chunk.size());
+                    LOG.error("Cannot upload chunk of {} test results after {} attempt(s): {}", chunk.size(), attempt + 1, e.getMessage());
+                    throw e;
+                }
+                long backoff = 1000L << Math.min(attempt, 5);
+                LOG.warn("Cannot upload chunk of {} test results, retrying in {} ms: {}", chunk.size(), backoff, e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    Map<String, Object> toResult(TestCaseDetail testCase)
+    {
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("case_id", testCase.getTestRailObject().getId());
+        result.put("status_id", testCase.getStatusId());
+        result.put("comment", DEFAULT_COMMENT);
+        result.put("elapsed", testCase.getElapsedString());
+
+        if (testCase.getBugDetails() != null)
+        {
+            result.put("defects", testCase.getBugDetails().id());
+            result.put("comment", testCase.getBugDetails().description());
+        }
+
+        /*
+         * adding stack trace of failed test
+         */
+        Throwable throwable = testCase.getResult().getThrowable();
+        if (throwable != null && throwable.getStackTrace() != null)
+        {
+            result.put("comment", formatStackTrace(throwable));
+        }
+        return result;
+    }
+
+    /**
+     * @return the stack trace of <throwable> with at most <maxStackTraceFrames> frames for each cause, truncated to <maxCommentLength>.
+     *         Identical stack traces are rendered only once between two flushes and the same String is shared.
+     */
+    String formatStackTrace(Throwable throwable)
+    {
+        return renderedStackTraces.computeIfAbsent(fingerprint(throwable), key -> {
+            StringBuilder sb = new StringBuilder();
+            appendThrowable(sb, throwable, null, "", new LinkedHashSet<Throwable>());
+            if (maxCommentLength > 0 && sb.length() > maxCommentLength)
+            {
+                sb.setLength(maxCommentLength);
+                sb.append("\n\t... [truncated]");
+            }
+            return sb.toString();
+        });
+    }
+
+    private void appendThrowable(StringBuilder sb, Throwable throwable, StackTraceElement[] enclosingTrace, String caption, Set<Throwable> seen)
+    {
+        if (!seen.add(throwable))
+        {
+            sb.append(caption).append("[CIRCULAR REFERENCE: ").append(throwable).append("]\n");
+            return;
+        }
+        StackTraceElement[] trace = throwable.getStackTrace();
+
+        // frames in common with the enclosing exception are printed only once, like Throwable.printStackTrace does
+        int unique = trace.length;
+        if (enclosingTrace != null)
+        {
+            int e = enclosingTrace.length - 1;
+            while (unique > 0 && e >= 0 && trace[unique - 1].equals(enclosingTrace[e]))
+            {
+                unique--;
+                e--;
+            }
+        }
+        int printed = maxStackTraceFrames > 0 ? Math.min(unique, maxStackTraceFrames) : unique;
+
+        sb.append(caption).append(throwable).append('\n');
+        for (int i = 0; i < printed; i++)
+        {
+            sb.append("\tat ").append(trace[i]).append('\n');
+        }
+        if (printed < trace.length)
+        {
+            sb.append("\t... ").append(trace.length - printed).append(" more\n");
+        }
+        for (Throwable suppressed : throwable.getSuppressed())
+        {
+            appendThrowable(sb, suppressed, trace, "Suppressed: ", seen);
+        }
+        if (throwable.getCause() != null)
+        {
+            appendThrowable(sb, throwable.getCause(), trace, "Caused by: ", seen);
+        }
+    }
+
+    private static String fingerprint(Throwable throwable)
+    {
+        StringBuilder sb = new StringBuilder();
+        Set<Throwable> seen = new LinkedHashSet<Throwable>();
+        for (Throwable t = throwable; t != null && seen.add(t); t = t.getCause())
+        {
+            sb.append(t.getClass().getName()).append(':').append(t.getMessage()).append('@').append(Arrays.hashCode(t.getStackTrace()))
+                    .append('#').append(t.getSuppressed().length).append('|');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,306 @@
+package org.alfresco.utility.testrail.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.utility.exception.TestRailApiException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * HTTP transport used by {@link TestRailAPI}.
+ * <ul>
+ * <li>connections are pooled and kept alive between requests</li>
+ * <li>responses are decoded by Jackson straight from the response stream into the model classes</li>
+ * <li>bulk GET requests (get_cases, get_sections, get_runs, etc) follow the <code>_links.next</code> pagination of TestRail 6.7+, older
+ * servers that return a plain JSON array are supported too</li>
+ * <li>every request takes a token from {@link TestRailRateLimiter}; on HTTP 429 the limiter is paused for the <code>Retry-After</code>
+ * period and the request is sent again</li>
+ * </ul>
+ */
+public class TestRailTransport implements Closeable
+{
+    static Logger LOG = LoggerFactory.getLogger("testrail");
+
+    private static final String API_PATH = "index.php?/api/v2/";
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 5000;
+
+    static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String endPointApiPath;
+    private final String authorization;
+    private final TestRailRateLimiter rateLimiter;
+    private final int maxRetries;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param endPoint TestRail server, i.e. https://alfresco.testrail.com/
+     * @param username
+     * @param apiKey
+     * @param rateLimiter
+     * @param maxConnections size of the connection pool
+     * @param maxRetries how many times a request is sent again after HTTP 429
+     */
+    public TestRailTransport(String endPoint, String username, String apiKey, TestRailRateLimiter rateLimiter, int maxConnections, int maxRetries)
+    {
+        this.endPointApiPath = (endPoint.endsWith("/") ? endPoint : endPoint + "/") + API_PATH;
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(String.format("%s:%s", username, apiKey).getBytes(StandardCharsets.UTF_8));
+        this.rateLimiter = rateLimiter;
+        this.maxRetries = maxRetries;
+
+        connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(Math.max(1, maxConnections));
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, maxConnections));
+        connectionManager.setValidateAfterInactivity(10000);
+
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(30000).setSocketTimeout(120000).build();
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(requestConfig).build();
+    }
+
+    public String getEndPointApiPath()
+    {
+        return endPointApiPath;
+    }
+
+    public TestRailRateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    /**
+     * @param path i.e. get_run/1
+     * @param type the class of the response, use {@link JsonNode} for a generic tree
+     * @return the response of GET <path>
+     */
+    public <T> T get(String path, Class<T> type) throws Exception
+    {
+        LOG.info("TestRAILAPI: GetRequest: {}", path);
+        return execute(new HttpGet(endPointApiPath + path), in -> MAPPER.readValue(in, type));
+    }
+
+    /**
+     * Perform GET <path> and follow all the pages of the response
+     *
+     * @param path i.e. get_cases/1&suite_id=2
+     * @param collection name of the array in a paginated response, i.e. "cases"
+     * @param type the class of the array items
+     * @return the items of all pages
+     */
+    public <T> List<T> getAll(String path, String collection, Class<T> type) throws Exception
+    {
+        List<T> items = new ArrayList<T>();
+        String next = path;
+        while (next != null)
+        {
+            LOG.info("TestRAILAPI: GetRequest: {}", next);
+            next = execute(new HttpGet(endPointApiPath + next), in -> readPage(in, collection, type, items));
+        }
+        return items;
+    }
+
+    /**
+     * @param path i.e. add_case/1
+     * @param data request body, serialized as JSON
+     * @param type the class of the response, use {@link JsonNode} for a generic tree
+     * @return the response of POST <path>
+     */
+    public <T> T post(String path, Object data, Class<T> type) throws Exception
+    {
+        LOG.debug("TestRAILAPI: PostRequest: {}", path);
+        HttpPost post = new HttpPost(endPointApiPath + path);
+        if (data != null)
+        {
+            post.setEntity(new ByteArrayEntity(MAPPER.writeValueAsBytes(data), ContentType.APPLICATION_JSON));
+        }
+        return execute(post, in -> MAPPER.readValue(in, type));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        httpClient.close();
+    }
+
+    private <R> R execute(HttpRequestBase request, ResponseReader<R> reader) throws Exception
+    {
+        request.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType());
+        request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+
+        for (int attempt = 0;; attempt++)
+        {
+            rateLimiter.acquire();
+            try (CloseableHttpResponse response = httpClient.execute(request))
+            {
+                int status = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (status == 200)
+                {
+                    if (entity == null)
+                    {
+                        return null;
+                    }
+                    try (InputStream in = entity.getContent())
+                    {
+                        return reader.read(in);
+                    }
+                }
+
+                String error = readError(entity);
+                if (status == 429 && attempt < maxRetries)
+                {
+                    long retryAfter = getRetryAfterMillis(response);
+                    LOG.warn("TestRail API rate limit reached, retrying {} in {} ms (attempt {} of {})", request.getURI(), retryAfter, attempt + 1, maxRetries);
+                    rateLimiter.pauseFor(retryAfter);
+                    continue;
+                }
+                throw new TestRailApiException(status, error);
+            }
+        }
+    }
+
+    /**
+     * Read one page of a bulk response into <items>
+     *
+     * @return the path of the next page or null if this is the last one
+     */
+    private <T> String readPage(InputStream in, String collection, Class<T> type, List<T> items) throws IOException
+    {
+        try (JsonParser parser = MAPPER.getFactory().createParser(in))
+        {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY)
+            {
+                // TestRail before 6.7 returns all the items without pagination
+                readArray(parser, type, items);
+                return null;
+            }
+
+            String next = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME)
+            {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                if (field.equals(collection) && token == JsonToken.START_ARRAY)
+                {
+                    readArray(parser, type, items);
+                }
+                else if ("_links".equals(field) && token == JsonToken.START_OBJECT)
+                {
+                    JsonNode nextLink = parser.<JsonNode> readValueAsTree().get("next");
+                    if (nextLink != null && !nextLink.isNull())
+                    {
+                        next = toApiPath(nextLink.asText());
+                    }
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+            return next;
+        }
+    }
+
+    private <T> void readArray(JsonParser parser, Class<T> type, List<T> items) throws IOException
+    {
+        while (parser.nextToken() == JsonToken.START_OBJECT)
+        {
+            items.add(parser.readValueAs(type));
+        }
+    }
+
+    /**
+     * @param link i.e. /api/v2/get_cases/1&suite_id=2&limit=250&offset=250
+     * @return the path relative to the API end point, i.e. get_cases/1&suite_id=2&limit=250&offset=250
+     */
+    static String toApiPath(String link)
+    {
+        int index = link.indexOf("api/v2/");
+        return index < 0 ? link : link.substring(index + "api/v2/".length());
+    }
+
+    private String readError(HttpEntity entity)
+    {
+        String error = "No additional error message received";
+        if (entity == null)
+        {
+            return error;
+        }
+        try
+        {
+            String body = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+            JsonNode node = MAPPER.readTree(body);
+            if (node != null && node.hasNonNull("error"))
+            {
+                error = '"' + node.get("error").asText() + '"';
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Cannot read TestRail error response: {}", e.getMessage());
+        }
+        return error;
+    }
+
+    /**
+     * @return the <code>Retry-After</code> header in milliseconds (it can be either seconds or a HTTP date)
+     */
+    static long getRetryAfterMillis(CloseableHttpResponse response)
+    {
+        Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null || header.getValue() == null)
+        {
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+        String value = header.getValue().trim();
+        try
+        {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        }
+        catch (NumberFormatException e)
+        {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? DEFAULT_RETRY_AFTER_MILLIS : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("TestRailTransport[endPoint=%s, %s, pool=%s]", endPointApiPath, rateLimiter, connectionManager.getTotalStats());
+    }
+
+    private interface ResponseReader<R>
+    {
+        R read(InputStream in) throws IOException;
+    }
+}
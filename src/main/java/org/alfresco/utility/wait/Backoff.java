@@ -0,0 +1,80 @@
+package org.alfresco.utility.wait;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff policy with optional jitter.
+ * The delay before attempt <i>n</i> (starting from 0) is <code>min(max, initial * multiplier^n)</code>, randomly
+ * spread by +/- <code>jitter</code> percent so that parallel waiters do not hit the server at the same time.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class Backoff
+{
+    private final Duration initial;
+    private final Duration max;
+    private final double multiplier;
+    private final double jitter;
+
+    private Backoff(Duration initial, Duration max, double multiplier, double jitter)
+    {
+        if (initial.isNegative() || max.compareTo(initial) < 0)
+        {
+            throw new IllegalArgumentException(String.format("Invalid backoff interval [%s, %s]", initial, max));
+        }
+        if (multiplier < 1 || jitter < 0 || jitter > 1)
+        {
+            throw new IllegalArgumentException(String.format("Invalid backoff multiplier %s or jitter %s", multiplier, jitter));
+        }
+        this.initial = initial;
+        this.max = max;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return backoff doubling the delay from <initial> up to <max>, with 20% jitter
+     */
+    public static Backoff exponential(Duration initial, Duration max)
+    {
+        return new Backoff(initial, max, 2, 0.2);
+    }
+
+    /**
+     * @return backoff always waiting <delay>, without jitter
+     */
+    public static Backoff fixed(Duration delay)
+    {
+        return new Backoff(delay, delay, 1, 0);
+    }
+
+    public Backoff withMultiplier(double multiplier)
+    {
+        return new Backoff(initial, max, multiplier, jitter);
+    }
+
+    public Backoff withJitter(double jitter)
+    {
+        return new Backoff(initial, max, multiplier, jitter);
+    }
+
+    /**
+     * @param attempt number of attempts already done, starting from 0
+     * @return the delay to wait before next attempt
+     */
+    public Duration delay(int attempt)
+    {
+        double nanos = Math.min(max.toNanos(), initial.toNanos() * Math.pow(multiplier, attempt));
+        if (jitter > 0)
+        {
+            nanos = nanos * (1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter));
+        }
+        return Duration.ofNanos((long) Math.max(0, Math.min(max.toNanos(), nanos)));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Backoff[initial=%s, max=%s, multiplier=%s, jitter=%s]", initial, max, multiplier, jitter);
+    }
+}
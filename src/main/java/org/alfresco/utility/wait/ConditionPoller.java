@@ -0,0 +1,158 @@
+package org.alfresco.utility.wait;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.alfresco.utility.LogFactory;
+import org.alfresco.utility.report.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+
+/**
+ * Polls a condition until it is met or a timeout is reached.
+ * The first checks are only milliseconds apart and the interval grows exponentially up to one second, so fast operations
+ * are detected almost immediately while slow ones (e.g. indexing) do not flood the server.
+ * Unless a {@link Backoff} is given, the first interval adapts to the median time-to-visible already observed for the
+ * same operation type. Every successful poll records its time-to-visible in a histogram per operation type,
+ * see {@link #getTimeToVisible(String)}.
+ * <code>
+ * new ConditionPoller("content-created", Duration.ofSeconds(15)).await(() -> !contentService.getNodeRefByPath(session, path).isEmpty());
+ * </code>
+ */
+public class ConditionPoller
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    private static final Duration MIN_INTERVAL = Duration.ofMillis(5);
+    private static final Duration MAX_INTERVAL = Duration.ofSeconds(1);
+
+    private static final Map<String, LatencyHistogram> timeToVisible = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private final String operation;
+    private final Duration timeout;
+    private final Backoff backoff;
+
+    public ConditionPoller(String operation, Duration timeout)
+    {
+        this(operation, timeout, null);
+    }
+
+    /**
+     * @param operation the operation type used to group the time-to-visible statistics
+     * @param timeout
+     * @param backoff the interval between checks, or null for an adaptive interval
+     */
+    public ConditionPoller(String operation, Duration timeout, Backoff backoff)
+    {
+        this.operation = operation;
+        this.timeout = timeout;
+        this.backoff = backoff;
+    }
+
+    /**
+     * @param condition
+     * @return true if <condition> was met before the timeout
+     */
+    public boolean await(BooleanSupplier condition)
+    {
+        long start = System.nanoTime();
+        boolean met = Wait.until(condition, timeout, getBackoff());
+        if (met)
+        {
+            getTimeToVisible(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        else
+        {
+            LOG.warn("Condition for '{}' was not met in {}ms", operation, timeout.toMillis());
+        }
+        return met;
+    }
+
+    /**
+     * Poll many items at once: <batchCheck> receives the items still pending and returns the ones that are now done.
+     * Use it when the state of many items can be fetched with a single request.
+     * 
+     * @param items
+     * @param batchCheck
+     * @return the items still pending when the timeout was reached, empty if all items are done
+     */
+    public <T> Set<T> awaitAll(Collection<T> items, Function<Set<T>, Set<T>> batchCheck)
+    {
+        long start = System.nanoTime();
+        Set<T> pending = new LinkedHashSet<T>(items);
+        Deadline deadline = Deadline.after(timeout);
+        Backoff interval = getBackoff();
+        int attempt = 0;
+        while (!pending.isEmpty())
+        {
+            Set<T> done = batchCheck.apply(Collections.unmodifiableSet(new LinkedHashSet<T>(pending)));
+            if (!done.isEmpty())
+            {
+                long elapsed = System.nanoTime() - start;
+                for (T item : done)
+                {
+                    if (pending.remove(item))
+                    {
+                        getTimeToVisible(operation).record(elapsed, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+            if (pending.isEmpty() || deadline.isExpired())
+            {
+                break;
+            }
+            Duration delay = interval.delay(attempt++);
+            Duration remaining = deadline.remaining();
+            if (!Wait.sleep(delay.compareTo(remaining) < 0 ? delay : remaining))
+            {
+                break;
+            }
+        }
+        if (!pending.isEmpty())
+        {
+            LOG.warn("{} item(s) still pending for '{}' after {}ms: {}", pending.size(), operation, timeout.toMillis(), pending);
+        }
+        return pending;
+    }
+
+    private Backoff getBackoff()
+    {
+        if (backoff != null)
+        {
+            return backoff;
+        }
+        Duration initial = MIN_INTERVAL;
+        LatencyHistogram observed = timeToVisible.get(operation);
+        if (observed != null && observed.getCount() > 0)
+        {
+            // start close to the usual time-to-visible, but keep polling quickly enough to notice faster operations
+            long median = (long) (observed.getPercentileMillis(50) / 2);
+            initial = Duration.ofMillis(Math.max(MIN_INTERVAL.toMillis(), Math.min(median, MAX_INTERVAL.toMillis() / 2)));
+        }
+        return Backoff.exponential(initial, MAX_INTERVAL);
+    }
+
+    /**
+     * @param operation
+     * @return the time-to-visible histogram of <operation>
+     */
+    public static LatencyHistogram getTimeToVisible(String operation)
+    {
+        return timeToVisible.computeIfAbsent(operation, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return the time-to-visible histograms of all operation types polled so far
+     */
+    public static Map<String, LatencyHistogram> getTimeToVisibleHistograms()
+    {
+        return Collections.unmodifiableMap(timeToVisible);
+    }
+}
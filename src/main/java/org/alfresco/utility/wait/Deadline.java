@@ -0,0 +1,51 @@
+package org.alfresco.utility.wait;
+
+import java.time.Duration;
+
+/**
+ * A point in time after which waiting should stop
+ * <code>
+ * Deadline deadline = Deadline.after(Duration.ofSeconds(15));
+ * while (!deadline.isExpired()) { ... }
+ * </code>
+ */
+public final class Deadline
+{
+    private final long endNanos;
+
+    private Deadline(long endNanos)
+    {
+        this.endNanos = endNanos;
+    }
+
+    public static Deadline after(Duration timeout)
+    {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static Deadline afterSeconds(long seconds)
+    {
+        return after(Duration.ofSeconds(seconds));
+    }
+
+    public boolean isExpired()
+    {
+        return remainingNanos() <= 0;
+    }
+
+    public long remainingNanos()
+    {
+        return endNanos - System.nanoTime();
+    }
+
+    public Duration remaining()
+    {
+        return Duration.ofNanos(Math.max(0, remainingNanos()));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Deadline[remaining=%dms]", remaining().toMillis());
+    }
+}
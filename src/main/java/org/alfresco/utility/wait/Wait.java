@@ -0,0 +1,154 @@
+package org.alfresco.utility.wait;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import org.alfresco.utility.LogFactory;
+import org.slf4j.Logger;
+
+/**
+ * Waiting helpers that park the current thread instead of spinning, so waiting threads do not use CPU.
+ * All time spent waiting is recorded per thread (see {@link #getWaitedMillis()}) and globally (see {@link #getTotalWaitedMillis()}),
+ * {@link WaitMetricsListener} uses it to report the waiting time of each test.
+ * If the waiting thread is interrupted the wait ends early and the interrupted flag is kept.
+ */
+public final class Wait
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    /*
+     * [0] is reset by resetWaitedMillis, [1] is never reset
+     */
+    private static final ThreadLocal<long[]> threadWaitedNanos = ThreadLocal.withInitial(() -> new long[2]);
+    private static final LongAdder totalWaitedNanos = new LongAdder();
+
+    private Wait()
+    {
+    }
+
+    /**
+     * Park current thread for <duration>
+     * 
+     * @param duration
+     * @return false if the wait was interrupted
+     */
+    public static boolean sleep(Duration duration)
+    {
+        return sleepUntil(Deadline.after(duration));
+    }
+
+    public static boolean sleepSeconds(long seconds)
+    {
+        return sleep(Duration.ofSeconds(seconds));
+    }
+
+    /**
+     * Park current thread until <deadline> expires
+     * 
+     * @param deadline
+     * @return false if the wait was interrupted
+     */
+    public static boolean sleepUntil(Deadline deadline)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            long remaining;
+            while ((remaining = deadline.remainingNanos()) > 0)
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    return false;
+                }
+                LockSupport.parkNanos(remaining);
+            }
+            return true;
+        }
+        finally
+        {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Check <condition> until it is true or <timeout> is reached, waiting between checks as defined by <backoff>
+     * <code>
+     * Wait.until(() -> file.exists(), Duration.ofSeconds(15), Backoff.exponential(Duration.ofMillis(50), Duration.ofSeconds(1)));
+     * </code>
+     * 
+     * @param condition
+     * @param timeout
+     * @param backoff
+     * @return true if the condition was met before the timeout
+     */
+    public static boolean until(BooleanSupplier condition, Duration timeout, Backoff backoff)
+    {
+        Deadline deadline = Deadline.after(timeout);
+        int attempt = 0;
+        while (true)
+        {
+            if (condition.getAsBoolean())
+            {
+                return true;
+            }
+            if (deadline.isExpired())
+            {
+                LOG.info("Condition not met after {} attempt(s) in {}ms", attempt + 1, timeout.toMillis());
+                return false;
+            }
+            Duration delay = backoff.delay(attempt++);
+            Duration remaining = deadline.remaining();
+            if (!sleep(delay.compareTo(remaining) < 0 ? delay : remaining))
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return time spent waiting by current thread since last {@link #resetWaitedMillis()}
+     */
+    public static long getWaitedMillis()
+    {
+        return threadWaitedNanos.get()[0] / 1_000_000;
+    }
+
+    /**
+     * Reset the waiting time of current thread, returning the previous value
+     * 
+     * @return time spent waiting by current thread since previous reset
+     */
+    public static long resetWaitedMillis()
+    {
+        long[] waited = threadWaitedNanos.get();
+        long millis = waited[0] / 1_000_000;
+        waited[0] = 0;
+        return millis;
+    }
+
+    /**
+     * @return time spent waiting by current thread since it started, not affected by {@link #resetWaitedMillis()}
+     */
+    public static long getThreadTotalWaitedMillis()
+    {
+        return threadWaitedNanos.get()[1] / 1_000_000;
+    }
+
+    /**
+     * @return time spent waiting by all threads
+     */
+    public static long getTotalWaitedMillis()
+    {
+        return totalWaitedNanos.sum() / 1_000_000;
+    }
+
+    private static void record(long nanos)
+    {
+        long[] waited = threadWaitedNanos.get();
+        waited[0] += nanos;
+        waited[1] += nanos;
+        totalWaitedNanos.add(nanos);
+    }
+}
@@ -0,0 +1,64 @@
+package org.alfresco.utility.wait;
+
+import org.alfresco.utility.LogFactory;
+import org.slf4j.Logger;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * Records the time each test spent in {@link Wait} and stores it in the <code>waitTimeMillis</code> attribute of the test result.
+ * Add it in your suite xml file:
+ * <listeners>
+ * <listener class-name="org.alfresco.utility.wait.WaitMetricsListener"></listener>
+ * </listeners>
+ */
+public class WaitMetricsListener implements ITestListener
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    public static final String WAIT_TIME_ATTRIBUTE = "waitTimeMillis";
+
+    @Override
+    public void onTestStart(ITestResult result)
+    {
+        Wait.resetWaitedMillis();
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result)
+    {
+        record(result);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result)
+    {
+        record(result);
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result)
+    {
+        record(result);
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result)
+    {
+        record(result);
+    }
+
+    @Override
+    public void onFinish(ITestContext context)
+    {
+        LOG.info("Total time spent waiting in {}: {}ms", context.getName(), Wait.getTotalWaitedMillis());
+    }
+
+    private void record(ITestResult result)
+    {
+        long waited = Wait.resetWaitedMillis();
+        result.setAttribute(WAIT_TIME_ATTRIBUTE, waited);
+        LOG.info("Test {} spent {}ms waiting", result.getMethod().getMethodName(), waited);
+    }
+}
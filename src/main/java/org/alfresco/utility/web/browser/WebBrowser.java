@@ -7,6 +7,7 @@ import java.util.stream.Collectors;
 
 import org.alfresco.utility.TasProperties;
 import org.alfresco.utility.exception.PageOperationException;
+import org.alfresco.utility.wait.Wait;
 import org.alfresco.utility.web.common.Parameter;
 import org.apache.commons.httpclient.HttpState;
 import org.openqa.selenium.Alert;
@@ -1109,14 +1110,7 @@ public class WebBrowser extends EventFiringWebDriver
      */
     public void waitInSeconds(int seconds)
     {
-        long time0;
-        long time1;
-        time0 = System.currentTimeMillis();
-        do
-        {
-            time1 = System.currentTimeMillis();
-        }
-        while (time1 - time0 < seconds * 1000);
+        Wait.sleepSeconds(seconds);
     }
 
     /**
@@ -0,0 +1,51 @@
+package org.alfresco.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Rough comparison of the StackWalker based {@link LogFactory#getLogger()} with the previous Thread.getStackTrace() based lookup,
+ * results are only logged.
+ * Run it with <code>mvn test -DskipTests=false -DsuiteXmlFile=src/test/resources/logfactory-benchmark-suite.xml</code>.
+ * Use <code>-Dlogfactory.benchmark.iterations=N</code> to change the number of lookups (100000 by default).
+ */
+public class LogFactoryBenchmark
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    private static final int ITERATIONS = Integer.getInteger("logfactory.benchmark.iterations", 100_000);
+
+    @Test
+    public void compareWithStackTraceLookup()
+    {
+        // warm up both implementations
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            LogFactory.getLogger();
+            getLoggerFromStackTrace();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            LogFactory.getLogger();
+        }
+        long walkerNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            getLoggerFromStackTrace();
+        }
+        long stackTraceNanos = System.nanoTime() - start;
+
+        LOG.info("LogFactory.getLogger: {} ns/call, Thread.getStackTrace lookup: {} ns/call", walkerNanos / ITERATIONS, stackTraceNanos / ITERATIONS);
+    }
+
+    private static Logger getLoggerFromStackTrace()
+    {
+        StackTraceElement myCaller = Thread.currentThread().getStackTrace()[2];
+        return LoggerFactory.getLogger(myCaller.getClassName());
+    }
+}
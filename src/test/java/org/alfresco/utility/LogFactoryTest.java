@@ -0,0 +1,37 @@
+package org.alfresco.utility;
+
+import org.slf4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LogFactoryTest
+{
+    static Logger LOG = LogFactory.getLogger();
+
+    static class BaseWithLogger
+    {
+        protected Logger LOG = LogFactory.getLogger();
+    }
+
+    static class ChildOfBase extends BaseWithLogger
+    {
+    }
+
+    @Test
+    public void staticLoggerIsNamedAfterCallerClass()
+    {
+        Assert.assertEquals(LOG.getName(), LogFactoryTest.class.getName());
+    }
+
+    @Test
+    public void instanceLoggerIsNamedAfterDeclaringClass()
+    {
+        Assert.assertEquals(new ChildOfBase().LOG.getName(), BaseWithLogger.class.getName());
+    }
+
+    @Test
+    public void loggerIsCachedPerClass()
+    {
+        Assert.assertSame(LogFactory.getLogger(), LogFactory.getLogger());
+    }
+}
@@ -0,0 +1,40 @@
+package org.alfresco.utility.data;
+
+import java.util.Arrays;
+
+import org.alfresco.utility.model.FolderModel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Runs {@link TestData#runInBulk(BulkCreationResult, java.util.function.Function, int)} without an Alfresco server
+ */
+public class BulkCreationResultTest
+{
+    @Test
+    public void createdModelsReplaceTheRequestedOnes()
+    {
+        FolderModel first = new FolderModel("first");
+        FolderModel second = new FolderModel("second");
+        FolderModel failing = new FolderModel("failing");
+        BulkCreationResult<FolderModel> result = new BulkCreationResult<FolderModel>(Arrays.asList(first, second, failing));
+
+        new DataContent().runInBulk(result, folder -> {
+            if (folder == failing)
+            {
+                throw new IllegalStateException("cannot create " + folder.getName());
+            }
+            // like the CMIS creation, a new model is returned
+            FolderModel created = new FolderModel(folder.getName());
+            created.setNodeRef("node-" + folder.getName());
+            return created;
+        }, 2);
+
+        Assert.assertEquals(result.getSuccessCount(), 2);
+        Assert.assertEquals(result.getItems().get(0).getNodeRef(), "node-first");
+        Assert.assertEquals(result.getItems().get(1).getNodeRef(), "node-second");
+        Assert.assertSame(result.getItems().get(2), failing, "a failed item keeps the requested model");
+        Assert.assertEquals(result.getCreatedItems().get(1).getNodeRef(), "node-second");
+        Assert.assertTrue(result.getFailures().get(2) instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,99 @@
+package org.alfresco.utility.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.alfresco.dataprep.SiteService.Visibility;
+import org.alfresco.utility.model.SiteModel;
+import org.alfresco.utility.model.UserModel;
+import org.alfresco.utility.report.HtmlReportListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that many threads can create sites with the same {@link DataSite} instance without a global lock
+ * and without corrupting its shared state.
+ * These tests need a running Alfresco server defined in default.properties.
+ */
+@ContextConfiguration("classpath:alfresco-tester-context.xml")
+@Listeners(value = HtmlReportListener.class)
+public class DataSiteConcurrencyTest extends AbstractTestNGSpringContextTests
+{
+    private static final int THREADS = 32;
+
+    @Autowired
+    protected DataSite dataSite;
+
+    private UserModel admin;
+    private Queue<SiteModel> createdSites = new ConcurrentLinkedQueue<SiteModel>();
+    private Queue<SiteModel> bulkSites = new ConcurrentLinkedQueue<SiteModel>();
+
+    @BeforeClass(alwaysRun = true)
+    public void setupUser()
+    {
+        admin = dataSite.getAdminUser();
+        dataSite.usingUser(admin);
+    }
+
+    @Test(threadPoolSize = THREADS, invocationCount = THREADS)
+    public void createSiteFromManyThreads()
+    {
+        SiteModel site = dataSite.createSite(new SiteModel(RandomData.getRandomName("siteConcurrent")));
+        Assert.assertNotNull(site.getGuid(), "Site guid is taken from create response");
+        createdSites.add(site);
+    }
+
+    @Test(dependsOnMethods = "createSiteFromManyThreads")
+    public void sharedStateIsNotCorrupted()
+    {
+        Assert.assertEquals(createdSites.size(), THREADS, "All sites were created");
+
+        Set<String> ids = new HashSet<String>();
+        Set<String> guids = new HashSet<String>();
+        for (SiteModel site : createdSites)
+        {
+            ids.add(site.getId());
+            guids.add(site.getGuid());
+            Assert.assertTrue(dataSite.isSiteCreated(site), String.format("Site %s exists in repository", site.getId()));
+        }
+        Assert.assertEquals(ids.size(), THREADS, "Each thread created its own site");
+        Assert.assertEquals(guids.size(), THREADS, "Each site has its own guid");
+    }
+
+    @Test
+    public void createSitesInBulk()
+    {
+        BulkCreationResult<SiteModel> result = dataSite.usingUser(admin).createSites(THREADS, Visibility.PRIVATE);
+        bulkSites.addAll(result.getCreatedItems());
+
+        Assert.assertFalse(result.hasFailures(), "No site creation failed: " + result.getFailures());
+        Set<String> guids = new HashSet<String>();
+        for (SiteModel site : result.getItems())
+        {
+            Assert.assertEquals(site.getVisibility(), Visibility.PRIVATE);
+            guids.add(site.getGuid());
+        }
+        Assert.assertEquals(guids.size(), THREADS, "Each site has its own guid");
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteSites()
+    {
+        List<SiteModel> sites = new ArrayList<SiteModel>(createdSites);
+        sites.addAll(bulkSites);
+        for (SiteModel site : sites)
+        {
+            dataSite.usingUser(admin).deleteSite(site);
+        }
+    }
+}
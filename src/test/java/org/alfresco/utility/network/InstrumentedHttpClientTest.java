@@ -0,0 +1,33 @@
+package org.alfresco.utility.network;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class InstrumentedHttpClientTest
+{
+    @Test
+    public void v1NodeIdsAreReplaced()
+    {
+        Assert.assertEquals(InstrumentedHttpClient.toEndpointTemplate(
+                "http://localhost:8080/alfresco/api/-default-/public/alfresco/versions/1/nodes/2f1e2c3a-8b9d-4c2e-9f3a-1b2c3d4e5f60/children?maxItems=10"),
+                "nodes/{id}/children");
+    }
+
+    @Test
+    public void aliasesAndNamedIdsAreHandled()
+    {
+        Assert.assertEquals(InstrumentedHttpClient.toEndpointTemplate("/alfresco/api/-default-/public/alfresco/versions/1/nodes/-my-/children"),
+                "nodes/-my-/children");
+        Assert.assertEquals(InstrumentedHttpClient.toEndpointTemplate("/alfresco/api/-default-/public/alfresco/versions/1/people/user1/sites/site-abc"),
+                "people/{id}/sites/{id}");
+    }
+
+    @Test
+    public void legacyServiceApiIsTemplated()
+    {
+        Assert.assertEquals(InstrumentedHttpClient.toEndpointTemplate("http://localhost:8080/alfresco/service/api/sites/mySite/memberships"),
+                "api/sites/{id}/memberships");
+        Assert.assertEquals(InstrumentedHttpClient.toEndpointTemplate("/alfresco/s/api/node/workspace/SpacesStore/abc/content"),
+                "api/node/{id}/content");
+    }
+}
@@ -0,0 +1,212 @@
+package org.alfresco.utility.network;
+
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.alfresco.utility.TasProperties;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Runs {@link JmxClient} against an RMI connector server started in this JVM
+ */
+public class JmxClientTest
+{
+    private MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    private Registry registry;
+    private JMXServiceURL url;
+    private JMXConnectorServer connectorServer;
+    private JmxClient jmxClient;
+
+    private ObjectName emailName;
+    private ObjectName imapName;
+    private Configuration email = new Configuration();
+    private Configuration imap = new Configuration();
+
+    @BeforeClass
+    public void startConnectorServer() throws Exception
+    {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            port = socket.getLocalPort();
+        }
+        registry = LocateRegistry.createRegistry(port);
+        url = new JMXServiceURL(String.format("service:jmx:rmi:///jndi/rmi://localhost:%d/alfresco/jmxrmi", port));
+        connectorServer = newConnectorServer(url);
+
+        emailName = new ObjectName("Alfresco.Test:Type=Configuration,Category=email,id1=inbound");
+        imapName = new ObjectName("Alfresco.Test:Type=Configuration,Category=imap,id1=default");
+        mBeanServer.registerMBean(new StandardMBean(email, ConfigurationMBean.class), emailName);
+        mBeanServer.registerMBean(new StandardMBean(imap, ConfigurationMBean.class), imapName);
+
+        TasProperties properties = new TasProperties();
+        properties.setServer("localhost");
+        properties.setJmxPort(String.valueOf(port));
+        jmxClient = new JmxClient();
+        jmxClient.properties = properties;
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopConnectorServer() throws Exception
+    {
+        if (jmxClient != null)
+            jmxClient.closeConnection();
+        if (connectorServer != null)
+            connectorServer.stop();
+        for (ObjectName name : Arrays.asList(emailName, imapName))
+        {
+            if (name != null && mBeanServer.isRegistered(name))
+                mBeanServer.unregisterMBean(name);
+        }
+        if (registry != null)
+            UnicastRemoteObject.unexportObject(registry, true);
+    }
+
+    @Test
+    public void readSeveralAttributesOfSeveralObjects() throws Exception
+    {
+        email.setEnabled("true");
+        email.setPort(25);
+        imap.setEnabled("false");
+
+        Map<ObjectName, List<String>> attributes = new LinkedHashMap<ObjectName, List<String>>();
+        attributes.put(emailName, Arrays.asList("Enabled", "Port"));
+        attributes.put(imapName, Arrays.asList("Enabled", "Unknown"));
+        Map<ObjectName, Map<String, Object>> values = jmxClient.readProperties(attributes);
+
+        Assert.assertEquals(values.get(emailName).get("Enabled"), "true");
+        Assert.assertEquals(values.get(emailName).get("Port"), 25);
+        Assert.assertEquals(values.get(imapName).get("Enabled"), "false");
+        Assert.assertFalse(values.get(imapName).containsKey("Unknown"), "attributes that cannot be read are left out");
+    }
+
+    @Test
+    public void eachObjectIsRefreshedOnceAfterAllAttributesAreSet() throws Exception
+    {
+        int stopped = email.stopped;
+        int started = email.started;
+
+        Map<String, Object> emailValues = new HashMap<String, Object>();
+        emailValues.put("Enabled", "false");
+        emailValues.put("Port", 2525);
+        Map<ObjectName, Map<String, Object>> values = jmxClient.writeProperties(Collections.singletonMap(emailName, emailValues));
+
+        Assert.assertEquals(values.get(emailName).get("Enabled"), "false");
+        Assert.assertEquals(values.get(emailName).get("Port"), 2525);
+        Assert.assertEquals(email.stopped, stopped + 1);
+        Assert.assertEquals(email.started, started + 1);
+    }
+
+    @Test
+    public void writePropertyReturnsTheNewValue() throws Exception
+    {
+        Assert.assertEquals(jmxClient.writeProperty(imapName.toString(), "Enabled", "true"), "true");
+        Assert.assertEquals(jmxClient.readProperty(imapName.toString(), "Enabled"), "true");
+    }
+
+    @Test(expectedExceptions = javax.management.AttributeNotFoundException.class)
+    public void writeOfUnknownAttributeFails() throws Exception
+    {
+        jmxClient.writeProperty(imapName.toString(), "Unknown", "true");
+    }
+
+    @Test(dependsOnMethods = { "readSeveralAttributesOfSeveralObjects", "eachObjectIsRefreshedOnceAfterAllAttributesAreSet",
+            "writePropertyReturnsTheNewValue", "writeOfUnknownAttributeFails" })
+    public void reconnectAfterServerRestart() throws Exception
+    {
+        Assert.assertTrue(jmxClient.isJMXEnabled());
+
+        connectorServer.stop();
+        Assert.assertFalse(jmxClient.isJMXEnabled());
+        connectorServer = newConnectorServer(url);
+
+        email.setPort(587);
+        Assert.assertEquals(jmxClient.readProperty(emailName.toString(), "Port"), 587);
+        Assert.assertTrue(jmxClient.isJMXEnabled());
+    }
+
+    private JMXConnectorServer newConnectorServer(JMXServiceURL url) throws Exception
+    {
+        JMXConnectorServer server = JMXConnectorServerFactory.newJMXConnectorServer(url, null, mBeanServer);
+        server.start();
+        return server;
+    }
+
+    public interface ConfigurationMBean
+    {
+        String getEnabled();
+
+        void setEnabled(String enabled);
+
+        int getPort();
+
+        void setPort(int port);
+
+        void stop();
+
+        void start();
+    }
+
+    public static class Configuration implements ConfigurationMBean
+    {
+        private String enabled;
+        private int port;
+        private int stopped;
+        private int started;
+
+        @Override
+        public String getEnabled()
+        {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(String enabled)
+        {
+            this.enabled = enabled;
+        }
+
+        @Override
+        public int getPort()
+        {
+            return port;
+        }
+
+        @Override
+        public void setPort(int port)
+        {
+            this.port = port;
+        }
+
+        @Override
+        public void stop()
+        {
+            stopped++;
+        }
+
+        @Override
+        public void start()
+        {
+            started++;
+        }
+    }
+}
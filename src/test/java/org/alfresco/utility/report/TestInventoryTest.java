@@ -0,0 +1,40 @@
+package org.alfresco.utility.report;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestInventoryTest
+{
+    @Test
+    public void scanFindsTestsAndGroupsFromBytecode() throws IOException
+    {
+        TestInventory inventory = TestInventory.scan("org.alfresco.utility.report.json");
+
+        Assert.assertEquals(inventory.query().inGroups("a").count(), 2);
+        Assert.assertEquals(inventory.query().inGroups("a", "b").count(), 1);
+        Assert.assertEquals(inventory.query().inGroups("a").notInGroups("b").list().get(0).getMethodName(), "testMethodTwo");
+        Assert.assertEquals(inventory.getMethodsByClass("a").get("org.alfresco.utility.report.json.JsonReportTest"),
+                Arrays.asList("testMethodOne", "testMethodTwo"));
+    }
+
+    @Test
+    public void countsByPhase() throws IOException
+    {
+        TestInventory inventory = new TestInventory(Arrays.asList(
+                new TestInventory.TestMethod("A", "one", Arrays.asList("cmis", "sanity"), "ACE-1", "OPENED", null, Collections.<String> emptyList()),
+                new TestInventory.TestMethod("A", "two", Arrays.asList("cmis", "sanity", "core"), null, null, null, Collections.<String> emptyList()),
+                new TestInventory.TestMethod("A", "three", Arrays.asList("cmis", "full"), "ACE-2", "FIXED", null, Collections.<String> emptyList()),
+                new TestInventory.TestMethod("A", "four", Arrays.asList("cmis"), null, null, null, Collections.<String> emptyList())));
+
+        Assert.assertEquals(inventory.countPhases("cmis"), new int[] { 4, 2, 2, 1, 0, 0, 1, 1, 1 });
+
+        StringWriter csv = new StringWriter();
+        inventory.writeCsv(csv, Arrays.asList("cmis", "ftp"));
+        Assert.assertEquals(csv.toString().split("\n")[1], "cmis,4,2,2,1,0,0,1,1");
+    }
+}
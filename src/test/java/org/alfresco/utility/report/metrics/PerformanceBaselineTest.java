@@ -0,0 +1,90 @@
+package org.alfresco.utility.report.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PerformanceBaselineTest
+{
+    private Properties properties;
+
+    @BeforeMethod
+    public void newBaselineFile() throws IOException
+    {
+        File file = File.createTempFile("tas-baseline", ".bin");
+        Files.delete(file.toPath());
+        file.deleteOnExit();
+        properties = new Properties();
+        properties.setProperty("reports.baseline.file", file.getPath());
+        properties.setProperty("reports.baseline.runs", "4");
+    }
+
+    @Test
+    public void regressionIsReportedOnlyAfterMinRuns() throws IOException
+    {
+        long[] runs = { 1000, 1050, 980, 1020 };
+        for (int run = 0; run < runs.length; run++)
+        {
+            PerformanceBaseline baseline = new PerformanceBaseline(properties);
+            Assert.assertEquals(baseline.getRunCount(), run);
+            if (run < 3)
+            {
+                Assert.assertNull(baseline.check("test:A#test", 5000));
+            }
+            baseline.record("test:A#test", runs[run]);
+            baseline.save();
+        }
+
+        PerformanceBaseline baseline = new PerformanceBaseline(properties);
+        Assert.assertNull(baseline.check("test:A#test", 1100), "a small slowdown is within the baseline");
+        Regression regression = baseline.check("test:A#test", 1600);
+        Assert.assertNotNull(regression);
+        Assert.assertEquals(regression.getName(), "A#test");
+        Assert.assertEquals(regression.getRuns(), 4);
+    }
+
+    @Test
+    public void savingTwiceStoresOneRun() throws IOException
+    {
+        PerformanceBaseline baseline = new PerformanceBaseline(properties);
+        baseline.record("test:A#test", 10);
+        baseline.save();
+        baseline.save();
+        Assert.assertEquals(new PerformanceBaseline(properties).getRunCount(), 1);
+    }
+
+    @Test
+    public void endpointsAreKeptWhenTheRegistryIsCleared() throws IOException
+    {
+        for (int run = 0; run < 3; run++)
+        {
+            PerformanceBaseline baseline = new PerformanceBaseline(properties);
+            MetricsRegistry registry = new MetricsRegistry();
+            registry.histogram("tas_http_request_duration", "method", "GET", "endpoint", "nodes/{id}").recordMillis(100);
+            baseline.recordEndpoints(registry);
+            registry.clear();
+            baseline.save();
+        }
+
+        PerformanceBaseline baseline = new PerformanceBaseline(properties);
+        Assert.assertNull(baseline.check(PerformanceBaseline.ENDPOINT_PREFIX + "GET nodes/{id}", 105));
+        Assert.assertNotNull(baseline.check(PerformanceBaseline.ENDPOINT_PREFIX + "GET nodes/{id}", 1000));
+    }
+
+    @Test
+    public void oldestRunsAreDropped() throws IOException
+    {
+        for (int run = 0; run < 6; run++)
+        {
+            PerformanceBaseline baseline = new PerformanceBaseline(properties);
+            baseline.record("test:A#test", 10);
+            baseline.save();
+        }
+        Assert.assertEquals(new PerformanceBaseline(properties).getRunCount(), 4);
+    }
+}
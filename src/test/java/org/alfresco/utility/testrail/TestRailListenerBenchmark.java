@@ -0,0 +1,203 @@
+package org.alfresco.utility.testrail;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.alfresco.utility.testrail.annotation.TestRail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.IClass;
+import org.testng.ISuite;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.internal.ConstructorOrMethod;
+
+/**
+ * Drives synthetic test results through {@link TestRailExecutorListener} against {@link TestRailStandInServer}, to measure the end-to-end
+ * upload throughput of the testrail package without a real TestRail instance.
+ * Run it with <code>mvn test -DskipTests=false -DsuiteXmlFile=src/test/resources/testrail-benchmark-suite.xml</code>; the suite also adds
+ * the MetricsListener, so the duration of each scenario is compared with the performance baseline of previous runs.
+ * -
+ * The TestRail configuration is read once per JVM (see TestRailExecutor), so this class has to run in its own suite.
+ * Use <code>-Dtestrail.benchmark.results=N</code> to change the number of results (10000 by default).
+ */
+public class TestRailListenerBenchmark
+{
+    static Logger LOG = LoggerFactory.getLogger("testrail");
+
+    private static final int RESULTS = Integer.getInteger("testrail.benchmark.results", 10000);
+    private static final Throwable SYNTHETIC_FAILURE = new AssertionError("expected [200] but found [500]");
+
+    private TestRailStandInServer server;
+    private TestRailExecutorListener listener;
+
+    @BeforeClass
+    public void startServer() throws Exception
+    {
+        server = new TestRailStandInServer().start();
+
+        System.setProperty("testManagement.enabled", "true");
+        System.setProperty("testManagement.endPoint", server.getEndPoint());
+        System.setProperty("testManagement.username", "benchmark");
+        System.setProperty("testManagement.apiKey", "benchmark");
+        System.setProperty("testManagement.project", "1");
+        System.setProperty("testManagement.suiteId", "1");
+        System.setProperty("testManagement.testRun", "TestRailListenerBenchmark");
+        System.setProperty("testManagement.includeOnlyTestCasesExecuted", "true");
+        System.setProperty("testManagement.requestsPerMinute", "0");
+        System.setProperty("testManagement.resultsFlushIntervalSeconds", "1");
+
+        listener = new TestRailExecutorListener();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer()
+    {
+        if (server != null)
+            server.stop();
+    }
+
+    @Test
+    public void uploadNewTestCasesAndResults()
+    {
+        long duration = runSuite("case");
+
+        Assert.assertEquals(server.getCaseCount(), RESULTS);
+        Assert.assertEquals(server.getResultCount(), RESULTS);
+        LOG.info("Benchmark [new test cases]: {} results in {} ms ({} results/s, {} requests)", RESULTS, duration, RESULTS * 1000L / Math.max(1, duration),
+                server.getRequestCount());
+    }
+
+    @Test(dependsOnMethods = "uploadNewTestCasesAndResults")
+    public void uploadResultsOfExistingTestCases()
+    {
+        long requests = server.getRequestCount("add_case");
+        long duration = runSuite("case");
+
+        Assert.assertEquals(server.getRequestCount("add_case"), requests, "existing test cases should not be uploaded again");
+        Assert.assertEquals(server.getResultCount(), 2 * RESULTS);
+        LOG.info("Benchmark [existing test cases]: {} results in {} ms ({} results/s)", RESULTS, duration, RESULTS * 1000L / Math.max(1, duration));
+    }
+
+    @Test(dependsOnMethods = "uploadResultsOfExistingTestCases")
+    public void uploadWithLatencyAndRateLimit()
+    {
+        server.setLatencyMillis(2);
+        server.setTooManyRequestsEvery(1000, 1);
+        server.setServerErrorEvery(7);
+        try
+        {
+            int before = server.getResultCount();
+            long duration = runSuite("slow");
+
+            Assert.assertEquals(server.getResultCount() - before, RESULTS);
+            Assert.assertTrue(server.getTooManyRequestsCount() > 0);
+            LOG.info("Benchmark [2ms latency, HTTP 429 every 1000 requests, HTTP 503 every 7 result uploads]: {} results in {} ms ({} results/s)",
+                    RESULTS, duration, RESULTS * 1000L / Math.max(1, duration));
+        }
+        finally
+        {
+            server.setLatencyMillis(0);
+            server.setTooManyRequestsEvery(0, 0);
+            server.setServerErrorEvery(0);
+        }
+    }
+
+    /**
+     * @return milliseconds spent from the start of the suite until all results are uploaded
+     */
+    private long runSuite(String prefix)
+    {
+        ISuite suite = proxy(ISuite.class, "getName", "TestRailListenerBenchmark");
+        long start = System.currentTimeMillis();
+        listener.onStart(suite);
+        for (int i = 0; i < RESULTS; i++)
+        {
+            ITestResult result = syntheticResult(prefix, i);
+            if (result.getStatus() == ITestResult.FAILURE)
+                listener.onTestFailure(result);
+            else
+                listener.onTestSuccess(result);
+        }
+        listener.onFinish(suite);
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * A result of one of the {@link #syntheticTestA()}, {@link #syntheticTestB()}, {@link #syntheticTestC()} methods, with a different data
+     * provider value, so each result is a distinct TestRail test case. Every 10th result is a failure with the same stack trace.
+     */
+    private ITestResult syntheticResult(String prefix, int index)
+    {
+        try
+        {
+            Method method = TestRailListenerBenchmark.class.getDeclaredMethod("syntheticTest" + (char) ('A' + index % 3));
+            ITestNGMethod testMethod = proxy(ITestNGMethod.class, "getConstructorOrMethod", new ConstructorOrMethod(method), "getMethodName",
+                    method.getName());
+            IClass testClass = proxy(IClass.class, "getName", TestRailListenerBenchmark.class.getName());
+            boolean failed = index % 10 == 0;
+            long end = System.currentTimeMillis();
+            return proxy(ITestResult.class, "getMethod", testMethod, "getTestClass", testClass, "getInstanceName", TestRailListenerBenchmark.class.getName(),
+                    "getParameters", new Object[] { prefix + "-" + index }, "getStatus", failed ? ITestResult.FAILURE : ITestResult.SUCCESS,
+                    "getThrowable", failed ? SYNTHETIC_FAILURE : null, "getStartMillis", end - 1500, "getEndMillis", end);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param type
+     * @param values method name, return value pairs; other methods return null, 0 or false
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object... values)
+    {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            for (int i = 0; i < values.length; i += 2)
+            {
+                if (values[i].equals(method.getName()))
+                    return values[i + 1];
+            }
+            switch (method.getName())
+            {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    break;
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class)
+                return false;
+            if (returnType == int.class)
+                return 0;
+            if (returnType == long.class)
+                return 0L;
+            return null;
+        });
+    }
+
+    @TestRail(section = { "benchmark", "listener", "a" }, description = "synthetic benchmark test")
+    private static void syntheticTestA()
+    {
+    }
+
+    @TestRail(section = { "benchmark", "listener", "b" }, description = "synthetic benchmark test")
+    private static void syntheticTestB()
+    {
+    }
+
+    @TestRail(section = { "benchmark", "listener", "b", "c" }, description = "synthetic benchmark test")
+    private static void syntheticTestC()
+    {
+    }
+}
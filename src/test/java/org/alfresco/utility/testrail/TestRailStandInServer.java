@@ -0,0 +1,442 @@
+package org.alfresco.utility.testrail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-memory stand-in for the TestRail API v2 (<code>index.php?/api/v2/...</code>), so the testrail package can be exercised and
+ * benchmarked without network access. It implements the endpoints used by {@link org.alfresco.utility.testrail.core.TestRailAPI}:
+ * get_sections, get_cases, get_runs, get_tests, add_run, add_case, add_section, update_run and add_results_for_cases.
+ * <ul>
+ * <li>bulk GET responses are paginated like TestRail 6.7+ (<code>_links.next</code>), see {@link #setPageSize(int)}</li>
+ * <li>{@link #setLatencyMillis(long)} delays every response</li>
+ * <li>{@link #setTooManyRequestsEvery(int, int)} answers HTTP 429 with <code>Retry-After</code> to every N-th request</li>
+ * <li>{@link #setServerErrorEvery(int)} answers HTTP 503 to every N-th add_results_for_cases request</li>
+ * </ul>
+ * Usage:
+ *
+ * <pre>
+ * TestRailStandInServer server = new TestRailStandInServer().start();
+ * System.setProperty("testManagement.endPoint", server.getEndPoint());
+ * </pre>
+ */
+public class TestRailStandInServer
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private volatile long latencyMillis = 0;
+    private volatile int pageSize = 250;
+    private volatile int tooManyRequestsEvery = 0;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int serverErrorEvery = 0;
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong tooManyRequests = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong resultRequests = new AtomicLong();
+    private final Map<String, AtomicLong> requestsByEndpoint = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final Map<Integer, ObjectNode> sections = new LinkedHashMap<Integer, ObjectNode>();
+    private final Map<Integer, ObjectNode> cases = new LinkedHashMap<Integer, ObjectNode>();
+    private final Map<Integer, ObjectNode> runs = new LinkedHashMap<Integer, ObjectNode>();
+    private final Map<Integer, Set<Integer>> runCases = new HashMap<Integer, Set<Integer>>();
+    private final List<ObjectNode> results = new ArrayList<ObjectNode>();
+
+    public TestRailStandInServer start() throws IOException
+    {
+        // without TCP_NODELAY every keep-alive response waits for the delayed ACK of the client (~40ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/index.php", this::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+    public void stop()
+    {
+        if (server != null)
+        {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the value for <code>testManagement.endPoint</code>
+     */
+    public String getEndPoint()
+    {
+        return String.format("http://localhost:%d/", server.getAddress().getPort());
+    }
+
+    public void setLatencyMillis(long latencyMillis)
+    {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Answer HTTP 429 to every <every>-th request, 0 to disable
+     */
+    public void setTooManyRequestsEvery(int every, int retryAfterSeconds)
+    {
+        this.tooManyRequestsEvery = every;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Answer HTTP 503 to every <every>-th add_results_for_cases request, 0 to disable
+     */
+    public void setServerErrorEvery(int every)
+    {
+        this.serverErrorEvery = every;
+    }
+
+    public long getRequestCount()
+    {
+        return requests.get();
+    }
+
+    public long getRequestCount(String endpoint)
+    {
+        AtomicLong count = requestsByEndpoint.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getTooManyRequestsCount()
+    {
+        return tooManyRequests.get();
+    }
+
+    public long getServerErrorCount()
+    {
+        return serverErrors.get();
+    }
+
+    public synchronized int getSectionCount()
+    {
+        return sections.size();
+    }
+
+    public synchronized int getCaseCount()
+    {
+        return cases.size();
+    }
+
+    public synchronized int getResultCount()
+    {
+        return results.size();
+    }
+
+    /**
+     * @return number of distinct test cases that received at least one result
+     */
+    public synchronized int getCasesWithResultCount()
+    {
+        Set<Integer> caseIds = new LinkedHashSet<Integer>();
+        for (ObjectNode result : results)
+        {
+            caseIds.add(result.get("case_id").asInt());
+        }
+        return caseIds.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            // index.php?/api/v2/get_cases/1&suite_id=2&offset=250
+            String query = exchange.getRequestURI().getRawQuery();
+            String call = query.substring(query.indexOf("api/v2/") + "api/v2/".length());
+            String[] parts = call.split("&");
+            String endpoint = parts[0].contains("/") ? parts[0].substring(0, parts[0].indexOf('/')) : parts[0];
+            int id = parts[0].contains("/") ? Integer.parseInt(parts[0].substring(parts[0].indexOf('/') + 1)) : 0;
+            Map<String, String> parameters = new HashMap<String, String>();
+            for (int i = 1; i < parts.length; i++)
+            {
+                String[] pair = parts[i].split("=", 2);
+                parameters.put(pair[0], pair.length > 1 ? pair[1] : "");
+            }
+
+            long count = requests.incrementAndGet();
+            requestsByEndpoint.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+            if (latencyMillis > 0)
+            {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (tooManyRequestsEvery > 0 && count % tooManyRequestsEvery == 0)
+            {
+                tooManyRequests.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                error(exchange, 429, "API Rate Limit Exceeded");
+                return;
+            }
+
+            JsonNode body = null;
+            if ("POST".equals(exchange.getRequestMethod()))
+            {
+                try (InputStream in = exchange.getRequestBody())
+                {
+                    body = MAPPER.readTree(in);
+                }
+            }
+
+            switch (endpoint)
+            {
+                case "get_sections":
+                    page(exchange, call, "sections", values(sections), parameters);
+                    break;
+                case "get_cases":
+                    page(exchange, call, "cases", values(cases), parameters);
+                    break;
+                case "get_runs":
+                    page(exchange, call, "runs", values(runs), parameters);
+                    break;
+                case "get_tests":
+                    page(exchange, call, "tests", getTests(id), parameters);
+                    break;
+                case "add_run":
+                    respond(exchange, addRun(body));
+                    break;
+                case "add_section":
+                    respond(exchange, addSection(body));
+                    break;
+                case "add_case":
+                    respond(exchange, addCase(id, body));
+                    break;
+                case "update_run":
+                    respond(exchange, updateRun(id, body));
+                    break;
+                case "add_results_for_cases":
+                    if (serverErrorEvery > 0 && resultRequests.incrementAndGet() % serverErrorEvery == 0)
+                    {
+                        serverErrors.incrementAndGet();
+                        error(exchange, 503, "Service Unavailable");
+                        return;
+                    }
+                    addResults(exchange, id, body);
+                    break;
+                default:
+                    error(exchange, 400, "Unknown method '" + endpoint + "'");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            error(exchange, 503, "Interrupted");
+        }
+        catch (RuntimeException e)
+        {
+            error(exchange, 400, e.toString());
+        }
+    }
+
+    private synchronized List<ObjectNode> values(Map<Integer, ObjectNode> items)
+    {
+        return new ArrayList<ObjectNode>(items.values());
+    }
+
+    private synchronized List<ObjectNode> getTests(int runId)
+    {
+        List<ObjectNode> tests = new ArrayList<ObjectNode>();
+        Set<Integer> caseIds = runCases.get(runId);
+        if (caseIds != null)
+        {
+            for (Integer caseId : caseIds)
+            {
+                ObjectNode test = MAPPER.createObjectNode();
+                test.put("id", caseId + 1000000);
+                test.put("case_id", caseId);
+                test.put("run_id", runId);
+                tests.add(test);
+            }
+        }
+        return tests;
+    }
+
+    private synchronized ObjectNode addRun(JsonNode body)
+    {
+        ObjectNode run = MAPPER.createObjectNode();
+        run.put("id", ids.incrementAndGet());
+        run.put("suite_id", body.path("suite_id").asInt());
+        run.put("name", body.path("name").asText());
+        run.put("description", body.path("description").asText(null));
+        run.put("include_all", body.path("include_all").asBoolean(true));
+        run.put("is_completed", false);
+        runs.put(run.get("id").asInt(), run);
+        runCases.put(run.get("id").asInt(), new LinkedHashSet<Integer>());
+        return run;
+    }
+
+    private synchronized ObjectNode addSection(JsonNode body)
+    {
+        ObjectNode section = MAPPER.createObjectNode();
+        section.put("id", ids.incrementAndGet());
+        section.put("suite_id", body.path("suite_id").asInt());
+        section.put("name", body.path("name").asText());
+        int depth = 0;
+        if (body.hasNonNull("parent_id"))
+        {
+            ObjectNode parent = sections.get(body.get("parent_id").asInt());
+            if (parent == null)
+                throw new IllegalArgumentException("Field :parent_id is not a valid section");
+            section.put("parent_id", parent.get("id").asInt());
+            depth = parent.get("depth").asInt() + 1;
+        }
+        else
+        {
+            section.putNull("parent_id");
+        }
+        section.put("depth", depth);
+        sections.put(section.get("id").asInt(), section);
+        return section;
+    }
+
+    private synchronized ObjectNode addCase(int sectionId, JsonNode body)
+    {
+        if (!sections.containsKey(sectionId))
+            throw new IllegalArgumentException("Field :section_id is not a valid section");
+
+        ObjectNode testCase = ((ObjectNode) body).deepCopy();
+        testCase.put("id", ids.incrementAndGet());
+        testCase.put("section_id", sectionId);
+        cases.put(testCase.get("id").asInt(), testCase);
+        return testCase;
+    }
+
+    private synchronized ObjectNode updateRun(int runId, JsonNode body)
+    {
+        ObjectNode run = runs.get(runId);
+        if (run == null)
+            throw new IllegalArgumentException("Field :run_id is not a valid test run");
+
+        if (body.has("include_all"))
+            run.put("include_all", body.get("include_all").asBoolean());
+        Set<Integer> caseIds = new LinkedHashSet<Integer>();
+        for (JsonNode caseId : body.path("case_ids"))
+        {
+            caseIds.add(caseId.asInt());
+        }
+        runCases.put(runId, caseIds);
+        return run;
+    }
+
+    private void addResults(HttpExchange exchange, int runId, JsonNode body) throws IOException
+    {
+        ArrayNode response = MAPPER.createArrayNode();
+        synchronized (this)
+        {
+            ObjectNode run = runs.get(runId);
+            if (run == null)
+            {
+                error(exchange, 400, "Field :run_id is not a valid test run");
+                return;
+            }
+            boolean includeAll = run.get("include_all").asBoolean();
+            for (JsonNode result : body.path("results"))
+            {
+                int caseId = result.path("case_id").asInt();
+                if (!cases.containsKey(caseId) || (!includeAll && !runCases.get(runId).contains(caseId)))
+                {
+                    error(exchange, 400, "Field :results cannot be part of this test run");
+                    return;
+                }
+            }
+            for (JsonNode result : body.path("results"))
+            {
+                ObjectNode stored = ((ObjectNode) result).deepCopy();
+                stored.put("id", ids.incrementAndGet());
+                stored.put("test_id", result.path("case_id").asInt() + 1000000);
+                results.add(stored);
+                response.add(stored);
+            }
+        }
+        respond(exchange, response);
+    }
+
+    /**
+     * Write one page of <items> like TestRail 6.7+ does
+     */
+    private void page(HttpExchange exchange, String call, String collection, List<ObjectNode> items, Map<String, String> parameters) throws IOException
+    {
+        int offset = parameters.containsKey("offset") ? Integer.parseInt(parameters.get("offset")) : 0;
+        int limit = parameters.containsKey("limit") ? Integer.parseInt(parameters.get("limit")) : pageSize;
+        int to = Math.min(items.size(), offset + limit);
+
+        ObjectNode page = MAPPER.createObjectNode();
+        page.put("offset", offset);
+        page.put("limit", limit);
+        page.put("size", Math.max(0, to - offset));
+        ObjectNode links = page.putObject("_links");
+        if (to < items.size())
+        {
+            String base = call.replaceAll("&(offset|limit)=[^&]*", "");
+            links.put("next", String.format("/api/v2/%s&limit=%d&offset=%d", base, limit, to));
+        }
+        else
+        {
+            links.putNull("next");
+        }
+        links.putNull("prev");
+        ArrayNode array = page.putArray(collection);
+        for (int i = offset; i < to; i++)
+        {
+            array.add(items.get(i));
+        }
+        respond(exchange, page);
+    }
+
+    private void respond(HttpExchange exchange, JsonNode node) throws IOException
+    {
+        write(exchange, 200, MAPPER.writeValueAsBytes(node));
+    }
+
+    private void error(HttpExchange exchange, int status, String error) throws IOException
+    {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("error", error);
+        write(exchange, status, MAPPER.writeValueAsBytes(node));
+    }
+
+    private void write(HttpExchange exchange, int status, byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+}
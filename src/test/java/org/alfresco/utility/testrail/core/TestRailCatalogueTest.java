@@ -0,0 +1,65 @@
+package org.alfresco.utility.testrail.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.alfresco.utility.testrail.model.Section;
+import org.alfresco.utility.testrail.model.TestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestRailCatalogueTest
+{
+    @Test
+    public void findsSectionsByPathAndTestCasesByReference()
+    {
+        Section root = section(1, 0, 0, "demo");
+        Section child = section(2, 1, 1, "a");
+        Section otherChild = section(3, 1, 7, "a");
+        TestCase testCase = testCase(10, 2, "MyTest#one");
+
+        TestRailCatalogue catalogue = TestRailCatalogue.of(Arrays.asList(root, child, otherChild), Arrays.asList(testCase, testCase(11, 2, null)));
+
+        Assert.assertSame(catalogue.getRootSection("demo"), root);
+        Assert.assertSame(catalogue.getSection(1, 1, "a"), child);
+        Assert.assertNull(catalogue.getSection(1, 2, "a"));
+        Assert.assertSame(catalogue.getTestCase("MyTest#one", 2), testCase);
+        Assert.assertNull(catalogue.getTestCase("MyTest#one", 3));
+        Assert.assertEquals(catalogue.getTestCaseCount(), 2);
+    }
+
+    @Test
+    public void acceptsNewSectionsAndTestCasesOnlyOnce()
+    {
+        TestRailCatalogue catalogue = TestRailCatalogue.of(Collections.<Section> emptyList(), Collections.<TestCase> emptyList());
+
+        Assert.assertTrue(catalogue.addSection(section(1, 0, 0, "demo")));
+        Assert.assertFalse(catalogue.addSection(section(1, 0, 0, "demo")));
+        Assert.assertFalse(catalogue.addSection(new Section()));
+        catalogue.addTestCase(testCase(10, 1, "MyTest#one"));
+        catalogue.addTestCase(testCase(10, 1, "MyTest#one"));
+
+        Assert.assertEquals(catalogue.getSectionCount(), 1);
+        Assert.assertEquals(catalogue.getTestCaseCount(), 1);
+        Assert.assertTrue(catalogue.containsSection(1));
+    }
+
+    private Section section(int id, int depth, int parentId, String name)
+    {
+        Section section = new Section();
+        section.setId(id);
+        section.setDepth(depth);
+        section.setParent_id(parentId);
+        section.setName(name);
+        return section;
+    }
+
+    private TestCase testCase(int id, int sectionId, String autoRef)
+    {
+        TestCase testCase = new TestCase();
+        testCase.setId(id);
+        testCase.setSection_id(sectionId);
+        testCase.setCustom_auto_ref(autoRef);
+        return testCase;
+    }
+}
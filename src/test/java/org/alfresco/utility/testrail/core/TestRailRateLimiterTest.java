@@ -0,0 +1,37 @@
+package org.alfresco.utility.testrail.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestRailRateLimiterTest
+{
+    @Test
+    public void burstIsFreeThenRequestsAreSpacedByRate()
+    {
+        TestRailRateLimiter limiter = new TestRailRateLimiter(60, 2);
+
+        Assert.assertEquals(limiter.reserve(), 0);
+        Assert.assertEquals(limiter.reserve(), 0);
+        long wait = limiter.reserve();
+        Assert.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(900) && wait <= TimeUnit.SECONDS.toNanos(1), "waited " + wait);
+    }
+
+    @Test
+    public void pauseAppliesEvenWithoutLimit()
+    {
+        TestRailRateLimiter limiter = new TestRailRateLimiter(0, 1);
+        Assert.assertEquals(limiter.reserve(), 0);
+
+        limiter.pauseFor(2000);
+        long wait = limiter.reserve();
+        Assert.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(1900), "waited " + wait);
+    }
+
+    @Test
+    public void nextLinkIsRelativeToApiEndPoint()
+    {
+        Assert.assertEquals(TestRailTransport.toApiPath("/api/v2/get_cases/1&suite_id=2&limit=250&offset=250"), "get_cases/1&suite_id=2&limit=250&offset=250");
+    }
+}
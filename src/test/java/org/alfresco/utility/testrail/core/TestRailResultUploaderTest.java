@@ -0,0 +1,195 @@
+package org.alfresco.utility.testrail.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.utility.exception.TestRailApiException;
+import org.alfresco.utility.testrail.model.Run;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class TestRailResultUploaderTest
+{
+    @Test
+    public void resultsAreUploadedInChunksAndFailedChunksAreRetried() throws Exception
+    {
+        List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        AtomicInteger calls = new AtomicInteger();
+        TestRailAPI api = new TestRailAPI()
+        {
+            @Override
+            public JsonNode addResults(List<Map<String, Object>> results) throws Exception
+            {
+                if (calls.incrementAndGet() == 1)
+                    throw new TestRailApiException(503, "Service Unavailable");
+                chunkSizes.add(results.size());
+                return null;
+            }
+
+            @Override
+            public int getResultsBatchSize()
+            {
+                return 100;
+            }
+        };
+
+        TestRailResultUploader uploader = new TestRailResultUploader(api, false);
+        for (int i = 0; i < 250; i++)
+        {
+            Map<String, Object> result = new HashMap<String, Object>();
+            result.put("case_id", i);
+            uploader.add(result);
+        }
+        uploader.close();
+
+        Collections.sort(chunkSizes);
+        Assert.assertEquals(chunkSizes, Arrays.asList(50, 100, 100));
+        Assert.assertEquals(uploader.getUploadedCount(), 250);
+        Assert.assertEquals(uploader.getFailedCount(), 0);
+        Assert.assertEquals(uploader.getPendingCount(), 0);
+    }
+
+    @Test
+    public void resultsAreKeptWhenTheRunCannotBeUpdated() throws Exception
+    {
+        AtomicInteger runUpdates = new AtomicInteger();
+        AtomicInteger uploaded = new AtomicInteger();
+        TestRailAPI api = new TestRailAPI()
+        {
+            @Override
+            public synchronized void addCasesToCurrentRun(Collection<Integer> caseIds) throws Exception
+            {
+                if (runUpdates.incrementAndGet() == 1)
+                    throw new TestRailApiException(503, "Service Unavailable");
+            }
+
+            @Override
+            public JsonNode addResults(List<Map<String, Object>> results) throws Exception
+            {
+                uploaded.addAndGet(results.size());
+                return null;
+            }
+        };
+
+        TestRailResultUploader uploader = new TestRailResultUploader(api, true);
+        for (int i = 0; i < 10; i++)
+        {
+            Map<String, Object> result = new HashMap<String, Object>();
+            result.put("case_id", i);
+            uploader.add(result);
+        }
+        try
+        {
+            uploader.flush();
+            Assert.fail("the failure to update the run is reported");
+        }
+        catch (TestRailApiException e)
+        {
+            Assert.assertEquals(e.getStatus(), 503);
+        }
+        Assert.assertEquals(uploader.getPendingCount(), 10);
+        Assert.assertEquals(uploaded.get(), 0);
+
+        uploader.close();
+        Assert.assertEquals(uploader.getPendingCount(), 0);
+        Assert.assertEquals(uploaded.get(), 10);
+        Assert.assertEquals(uploader.getUploadedCount(), 10);
+    }
+
+    @Test
+    public void resultsAreKeptWhenUpdateRunFails() throws Exception
+    {
+        Run run = new Run();
+        run.setId(1);
+        run.setName("run");
+        List<List<Integer>> runUpdates = new ArrayList<List<Integer>>();
+        AtomicInteger uploaded = new AtomicInteger();
+        TestRailAPI api = new TestRailAPI()
+        {
+            @Override
+            public Run getCurrentRun()
+            {
+                return run;
+            }
+
+            @Override
+            protected Set<Integer> getCaseIdsOfRun(Run run)
+            {
+                return new LinkedHashSet<Integer>(Arrays.asList(100));
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected JsonNode postRequest(String path, Object data) throws Exception
+            {
+                Assert.assertEquals(path, "update_run/1");
+                runUpdates.add(new ArrayList<Integer>((List<Integer>) ((Map<String, Object>) data).get("case_ids")));
+                if (runUpdates.size() == 1)
+                    throw new TestRailApiException(503, "Service Unavailable");
+                return null;
+            }
+
+            @Override
+            public JsonNode addResults(List<Map<String, Object>> results) throws Exception
+            {
+                uploaded.addAndGet(results.size());
+                return null;
+            }
+        };
+
+        TestRailResultUploader uploader = new TestRailResultUploader(api, true);
+        for (int i = 1; i <= 3; i++)
+        {
+            Map<String, Object> result = new HashMap<String, Object>();
+            result.put("case_id", i);
+            uploader.add(result);
+        }
+        try
+        {
+            uploader.flush();
+            Assert.fail("the failure of update_run is reported");
+        }
+        catch (TestRailApiException e)
+        {
+            Assert.assertEquals(uploader.getPendingCount(), 3);
+        }
+
+        uploader.close();
+        Assert.assertEquals(runUpdates.size(), 2, "the run is updated again with the same test cases");
+        Assert.assertEquals(runUpdates.get(1), Arrays.asList(100, 1, 2, 3));
+        Assert.assertEquals(uploaded.get(), 3);
+    }
+
+    @Test
+    public void stackTracesAreTruncatedAndRenderedOnce() throws Exception
+    {
+        TestRailResultUploader uploader = new TestRailResultUploader(new TestRailAPI(), false);
+        Throwable failure = new IllegalStateException("boom", deepCause(200));
+
+        String trace = uploader.formatStackTrace(failure);
+        Assert.assertTrue(trace.startsWith("java.lang.IllegalStateException: boom"));
+        Assert.assertTrue(trace.contains("Caused by: java.lang.RuntimeException: deep"));
+        Assert.assertTrue(trace.length() <= new TestRailAPI().getMaxCommentLength() + 20, "length " + trace.length());
+        Assert.assertSame(uploader.formatStackTrace(failure), trace);
+
+        uploader.flush();
+        Assert.assertNotSame(uploader.formatStackTrace(failure), trace, "the rendered stack traces are released by flush");
+    }
+
+    private RuntimeException deepCause(int depth)
+    {
+        if (depth == 0)
+            return new RuntimeException("deep");
+        return deepCause(depth - 1);
+    }
+}